@@ -0,0 +1,286 @@
+package com.subtitler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+// ASS/SSA：按 [Events] 段的 Format 行确定 Start、End、Text 所在的列，Text 是最后一列，可以包含逗号。
+// 读取时去掉 {...} 覆盖标签，\N 转为换行；写出时统一写 ASS（v4.00+），只有一个 Default 样式。
+public class AssFormat implements SubtitleFormat {
+    private static final List<String> EXTENSIONS = List.of("ass", "ssa");
+
+    // 写出时 Default 样式的字体与外观，尺寸以 1920x1080 的画布为准，libass 会按视频分辨率缩放
+    public static class Style {
+        private String fontName = "Microsoft YaHei";
+        private int fontSize = 48;
+        private boolean bold = false;
+        // 颜色为 0xRRGGBB
+        private int primaryColour = 0xFFFFFF;
+        private int outlineColour = 0x000000;
+        private double outline = 2;
+        private double shadow = 1;
+        private int marginV = 40;
+
+        public String getFontName() { return fontName; }
+        public Style setFontName(String fontName) { this.fontName = fontName; return this; }
+
+        public int getFontSize() { return fontSize; }
+        public Style setFontSize(int fontSize) { this.fontSize = fontSize; return this; }
+
+        public boolean isBold() { return bold; }
+        public Style setBold(boolean bold) { this.bold = bold; return this; }
+
+        public int getPrimaryColour() { return primaryColour; }
+        public Style setPrimaryColour(int primaryColour) { this.primaryColour = primaryColour; return this; }
+
+        public int getOutlineColour() { return outlineColour; }
+        public Style setOutlineColour(int outlineColour) { this.outlineColour = outlineColour; return this; }
+
+        public double getOutline() { return outline; }
+        public Style setOutline(double outline) { this.outline = outline; return this; }
+
+        public double getShadow() { return shadow; }
+        public Style setShadow(double shadow) { this.shadow = shadow; return this; }
+
+        public int getMarginV() { return marginV; }
+        public Style setMarginV(int marginV) { this.marginV = marginV; return this; }
+    }
+
+    private final Style style;
+
+    public AssFormat() {
+        this(new Style());
+    }
+
+    public AssFormat(String fontName, int fontSize) {
+        this(new Style().setFontName(fontName).setFontSize(fontSize));
+    }
+
+    public AssFormat(Style style) {
+        this.style = style;
+    }
+
+    @Override
+    public String getName() {
+        return "ASS/SSA字幕";
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return EXTENSIONS;
+    }
+
+    @Override
+    public SubtitleReader newReader(Reader reader) {
+        return new AssReader(reader);
+    }
+
+    @Override
+    public SubtitleWriter newWriter(Writer writer) {
+        return new AssWriter(writer);
+    }
+
+    private static class AssReader implements SubtitleReader {
+        private final BufferedReader reader;
+        private final StringBuilder content = new StringBuilder();
+        private boolean inEvents = false;
+        // 没有 Format 行时按 ASS 默认的列顺序
+        private int fieldCount = 10;
+        private int startField = 1;
+        private int endField = 2;
+        private int textField = 9;
+
+        AssReader(Reader reader) {
+            this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 64 * 1024);
+        }
+
+        @Override
+        public Subtitle read() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                    line = line.substring(1);
+                }
+                line = line.trim();
+                if (line.startsWith("[")) {
+                    inEvents = line.equalsIgnoreCase("[Events]");
+                    continue;
+                }
+                if (!inEvents) {
+                    continue;
+                }
+                if (line.regionMatches(true, 0, "Format:", 0, 7)) {
+                    parseFormat(line.substring(7));
+                } else if (line.regionMatches(true, 0, "Dialogue:", 0, 9)) {
+                    Subtitle subtitle = parseDialogue(line, 9);
+                    if (subtitle != null) {
+                        return subtitle;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void parseFormat(String format) {
+            String[] names = format.split(",");
+            fieldCount = names.length;
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i].trim();
+                if (name.equalsIgnoreCase("Start")) {
+                    startField = i;
+                } else if (name.equalsIgnoreCase("End")) {
+                    endField = i;
+                } else if (name.equalsIgnoreCase("Text")) {
+                    textField = i;
+                }
+            }
+        }
+
+        private Subtitle parseDialogue(String line, int from) {
+            int start = SubtitleTime.NONE;
+            int end = SubtitleTime.NONE;
+            int field = 0;
+            int fieldStart = from;
+            // 最后一列之前按逗号切分，最后一列取到行尾
+            while (field < fieldCount - 1) {
+                int comma = line.indexOf(',', fieldStart);
+                if (comma < 0) {
+                    return null;
+                }
+                if (field == startField) {
+                    start = SubtitleTime.parse(line, fieldStart, comma);
+                } else if (field == endField) {
+                    end = SubtitleTime.parse(line, fieldStart, comma);
+                }
+                field++;
+                fieldStart = comma + 1;
+            }
+            if (field != textField) {
+                return null;
+            }
+            content.setLength(0);
+            appendPlainText(content, line, fieldStart);
+            return new Subtitle(content.toString(), start, end);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private class AssWriter implements SubtitleWriter {
+        private final Writer writer;
+        private final StringBuilder block = new StringBuilder(256);
+
+        AssWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void writeHeader() throws IOException {
+            writer.write("[Script Info]\n"
+                + "ScriptType: v4.00+\n"
+                + "WrapStyle: 0\n"
+                + "ScaledBorderAndShadow: yes\n"
+                + "PlayResX: 1920\n"
+                + "PlayResY: 1080\n"
+                + "\n"
+                + "[V4+ Styles]\n"
+                + "Format: Name, Fontname, Fontsize, PrimaryColour, SecondaryColour, OutlineColour, BackColour, "
+                + "Bold, Italic, Underline, StrikeOut, ScaleX, ScaleY, Spacing, Angle, BorderStyle, Outline, Shadow, "
+                + "Alignment, MarginL, MarginR, MarginV, Encoding\n"
+                + "Style: Default," + style.getFontName().replace(',', ' ') + "," + style.getFontSize() + ","
+                + colour(style.getPrimaryColour(), 0) + ",&H000000FF," + colour(style.getOutlineColour(), 0) + ",&H80000000,"
+                + (style.isBold() ? -1 : 0) + ",0,0,0,100,100,0,0,1," + style.getOutline() + "," + style.getShadow() + ","
+                + "2,20,20," + style.getMarginV() + ",1\n"
+                + "\n"
+                + "[Events]\n"
+                + "Format: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text\n");
+        }
+
+        @Override
+        public void write(Subtitle subtitle) throws IOException {
+            block.setLength(0);
+            block.append("Dialogue: 0,");
+            appendTime(block, subtitle.getStartMillis()).append(',');
+            appendTime(block, subtitle.getEndMillis()).append(",Default,,0,0,0,,");
+            appendEscaped(block, subtitle.getContent().trim());
+            block.append('\n');
+            writer.append(block);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    // ASS 颜色为 &HAABBGGRR，alpha 为 0 表示不透明
+    static String colour(int rgb, int alpha) {
+        int bgr = ((rgb & 0xFF) << 16) | (rgb & 0xFF00) | ((rgb >> 16) & 0xFF);
+        return String.format("&H%02X%06X", alpha & 0xFF, bgr);
+    }
+
+    // ASS 时间为 H:mm:ss.cc，精确到百分之一秒
+    static StringBuilder appendTime(StringBuilder sb, int millis) {
+        int centis = (Math.max(millis, 0) + 5) / 10;
+        int seconds = centis / 100;
+        sb.append(seconds / 3600).append(':');
+        appendTwoDigits(sb, seconds / 60 % 60).append(':');
+        appendTwoDigits(sb, seconds % 60).append('.');
+        return appendTwoDigits(sb, centis % 100);
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder sb, int value) {
+        return sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    static void appendEscaped(StringBuilder sb, String content) {
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '\n') {
+                sb.append("\\N");
+            } else if (c != '\r') {
+                sb.append(c);
+            }
+        }
+    }
+
+    // 去掉 {...} 覆盖标签，\N、\n 转为换行，\h 转为空格
+    static void appendPlainText(StringBuilder sb, String text, int from) {
+        int i = from;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '{') {
+                int close = text.indexOf('}', i);
+                if (close > i) {
+                    i = close + 1;
+                    continue;
+                }
+            }
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(i + 1);
+                if (next == 'N' || next == 'n') {
+                    sb.append('\n');
+                    i += 2;
+                    continue;
+                }
+                if (next == 'h') {
+                    sb.append(' ');
+                    i += 2;
+                    continue;
+                }
+            }
+            sb.append(c);
+            i++;
+        }
+    }
+}
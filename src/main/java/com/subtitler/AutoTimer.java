@@ -0,0 +1,123 @@
+package com.subtitler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 自动打轴：把检测到的语音片段按顺序分配给没有时间的字幕。
+// 已有时间的字幕作为分界，相邻两条已打轴字幕之间的一组未打轴字幕只使用这段时间内的语音片段：
+// 片段多于字幕时反复合并停顿最短的相邻片段，少于字幕时把最长的片段对半拆开，
+// 最后按最短时长、最长时长和最小间隔调整。只设置了开始或结束时间之一的字幕保持不变。
+public final class AutoTimer {
+    public static class Rules {
+        private int minDurationMillis = 700;
+        private int maxDurationMillis = 7000;
+        private int minGapMillis = 100;
+
+        public int getMinDurationMillis() { return minDurationMillis; }
+        public Rules setMinDurationMillis(int minDurationMillis) { this.minDurationMillis = minDurationMillis; return this; }
+
+        public int getMaxDurationMillis() { return maxDurationMillis; }
+        public Rules setMaxDurationMillis(int maxDurationMillis) { this.maxDurationMillis = maxDurationMillis; return this; }
+
+        public int getMinGapMillis() { return minGapMillis; }
+        public Rules setMinGapMillis(int minGapMillis) { this.minGapMillis = minGapMillis; return this; }
+    }
+
+    private AutoTimer() {
+    }
+
+    // 为 cues 中没有时间的字幕设置时间，返回设置了时间的字幕数。
+    // durationMillis 为视频时长，用作最后一组字幕的上界
+    public static int assign(List<Subtitle> cues, List<SpeechDetector.Segment> speech, Rules rules, int durationMillis) {
+        int assigned = 0;
+        int lowerBound = 0;
+        int i = 0;
+        while (i < cues.size()) {
+            Subtitle cue = cues.get(i);
+            if (cue.hasStartTime() || cue.hasEndTime()) {
+                lowerBound = Math.max(lowerBound, Math.max(cue.getStartMillis(), cue.getEndMillis()) + rules.getMinGapMillis());
+                i++;
+                continue;
+            }
+            int first = i;
+            while (i < cues.size() && !cues.get(i).hasStartTime() && !cues.get(i).hasEndTime()) {
+                i++;
+            }
+            int upperBound = durationMillis > 0 ? durationMillis : Integer.MAX_VALUE;
+            if (i < cues.size()) {
+                Subtitle next = cues.get(i);
+                upperBound = (next.hasStartTime() ? next.getStartMillis() : next.getEndMillis()) - rules.getMinGapMillis();
+            }
+            assigned += assignRun(cues.subList(first, i), speech, rules, lowerBound, upperBound);
+        }
+        return assigned;
+    }
+
+    // 在 [lowerBound, upperBound) 内为一组连续的未打轴字幕分配时间
+    private static int assignRun(List<Subtitle> run, List<SpeechDetector.Segment> speech, Rules rules,
+                                 int lowerBound, int upperBound) {
+        List<int[]> spans = new ArrayList<>();
+        for (SpeechDetector.Segment segment : speech) {
+            int start = Math.max(segment.getStartMillis(), lowerBound);
+            int end = Math.min(segment.getEndMillis(), upperBound);
+            if (end > start) {
+                spans.add(new int[] {start, end});
+            }
+        }
+        if (spans.isEmpty()) {
+            return 0;
+        }
+        while (spans.size() > run.size()) {
+            mergeAtShortestGap(spans);
+        }
+        while (spans.size() < run.size()) {
+            if (!splitLongest(spans, rules.getMinDurationMillis())) {
+                break;
+            }
+        }
+
+        for (int k = 0; k < run.size() && k < spans.size(); k++) {
+            int[] span = spans.get(k);
+            int limit = k + 1 < spans.size() ? spans.get(k + 1)[0] - rules.getMinGapMillis() : upperBound;
+            int end = Math.max(span[1], span[0] + rules.getMinDurationMillis());
+            end = Math.min(end, span[0] + rules.getMaxDurationMillis());
+            end = Math.max(Math.min(end, limit), span[0] + 1);
+            run.get(k).setStartMillis(span[0]);
+            run.get(k).setEndMillis(end);
+        }
+        return Math.min(run.size(), spans.size());
+    }
+
+    // 合并停顿最短的两个相邻片段，使片段数减一
+    private static void mergeAtShortestGap(List<int[]> spans) {
+        int best = 0;
+        int bestGap = Integer.MAX_VALUE;
+        for (int k = 0; k + 1 < spans.size(); k++) {
+            int gap = spans.get(k + 1)[0] - spans.get(k)[1];
+            if (gap < bestGap) {
+                bestGap = gap;
+                best = k;
+            }
+        }
+        spans.get(best)[1] = spans.get(best + 1)[1];
+        spans.remove(best + 1);
+    }
+
+    // 对半拆开最长的片段；最长的片段也短于两倍最短时长时不再拆分，返回 false
+    private static boolean splitLongest(List<int[]> spans, int minDurationMillis) {
+        int best = 0;
+        for (int k = 1; k < spans.size(); k++) {
+            if (spans.get(k)[1] - spans.get(k)[0] > spans.get(best)[1] - spans.get(best)[0]) {
+                best = k;
+            }
+        }
+        int[] span = spans.get(best);
+        if (span[1] - span[0] < 2 * minDurationMillis) {
+            return false;
+        }
+        int middle = (span[0] + span[1]) / 2;
+        spans.add(best + 1, new int[] {middle, span[1]});
+        span[1] = middle;
+        return true;
+    }
+}
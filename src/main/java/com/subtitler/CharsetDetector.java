@@ -0,0 +1,118 @@
+package com.subtitler;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// 根据文件开头的一段字节判断字幕文件的编码：
+// BOM -> 纯 ASCII / 合法 UTF-8 -> Big5 与 GB18030 二选一。
+public final class CharsetDetector {
+    public static final Charset GB18030 = Charset.forName("GB18030");
+    public static final Charset BIG5 = Charset.forName("Big5");
+
+    public static final class Result {
+        private final Charset charset;
+        private final int bomLength;
+
+        Result(Charset charset, int bomLength) {
+            this.charset = charset;
+            this.bomLength = bomLength;
+        }
+
+        public Charset getCharset() {
+            return charset;
+        }
+
+        // 需要跳过的 BOM 字节数
+        public int getBomLength() {
+            return bomLength;
+        }
+    }
+
+    private CharsetDetector() {
+    }
+
+    public static Result detect(byte[] sample, int length) {
+        if (length >= 3 && (sample[0] & 0xFF) == 0xEF && (sample[1] & 0xFF) == 0xBB && (sample[2] & 0xFF) == 0xBF) {
+            return new Result(StandardCharsets.UTF_8, 3);
+        }
+        if (length >= 2 && (sample[0] & 0xFF) == 0xFF && (sample[1] & 0xFF) == 0xFE) {
+            return new Result(StandardCharsets.UTF_16LE, 2);
+        }
+        if (length >= 2 && (sample[0] & 0xFF) == 0xFE && (sample[1] & 0xFF) == 0xFF) {
+            return new Result(StandardCharsets.UTF_16BE, 2);
+        }
+        if (isValidUtf8(sample, length)) {
+            return new Result(StandardCharsets.UTF_8, 0);
+        }
+        return new Result(looksLikeBig5(sample, length) ? BIG5 : GB18030, 0);
+    }
+
+    // 严格检查 UTF-8，样本末尾被截断的多字节字符不算错误
+    static boolean isValidUtf8(byte[] data, int length) {
+        int i = 0;
+        while (i < length) {
+            int b = data[i] & 0xFF;
+            int continuation;
+            if (b < 0x80) {
+                i++;
+                continue;
+            } else if (b >= 0xC2 && b <= 0xDF) {
+                continuation = 1;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                continuation = 2;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                continuation = 3;
+            } else {
+                return false;
+            }
+            for (int k = 1; k <= continuation; k++) {
+                if (i + k >= length) {
+                    return true;
+                }
+                if ((data[i + k] & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+            i += continuation + 1;
+        }
+        return true;
+    }
+
+    // GBK 中常用汉字（GB2312 区）的第二个字节都在 0xA1 以上，
+    // 而 Big5 常用字有大量第二个字节落在 0x40-0x7E。样本不能按 Big5 严格解码时直接判为 GB18030。
+    static boolean looksLikeBig5(byte[] data, int length) {
+        if (!decodesStrictly(BIG5, data, length)) {
+            return false;
+        }
+        int pairs = 0;
+        int lowTrail = 0;
+        int i = 0;
+        while (i < length - 1) {
+            int lead = data[i] & 0xFF;
+            if (lead < 0x81) {
+                i++;
+                continue;
+            }
+            int trail = data[i + 1] & 0xFF;
+            pairs++;
+            if (trail >= 0x40 && trail <= 0x7E) {
+                lowTrail++;
+            }
+            i += 2;
+        }
+        return pairs > 0 && lowTrail * 4 >= pairs;
+    }
+
+    private static boolean decodesStrictly(Charset charset, byte[] data, int length) {
+        CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer out = CharBuffer.allocate(length);
+        // endOfInput 为 false，样本末尾被截断的字符不会被当作错误
+        return !decoder.decode(ByteBuffer.wrap(data, 0, length), out, false).isError();
+    }
+}
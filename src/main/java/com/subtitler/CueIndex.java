@@ -0,0 +1,344 @@
+package com.subtitler;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import java.util.Arrays;
+import java.util.List;
+
+// 字幕时间索引：按开始时间、结束时间各维护一组有序数组，
+// 用于在播放时以 O(log n) 查找当前句、上一句和下一句。
+// 按开始时间排序的结束时间上另建一棵求最大值的线段树，重叠字幕中覆盖某一时刻的那句
+// 也能在 O(log n) 内找到，不会因为一句很长的字幕而退化为逐条回溯。
+// 只有开始时间的字幕只进入开始时间索引，只有结束时间的只进入结束时间索引，
+// 完全未打轴的字幕不进入索引。
+public class CueIndex {
+    // 单次列表变更超过该数量时直接整体重建，避免逐条插入的数组搬移
+    private static final int REBUILD_THRESHOLD = 256;
+
+    private final List<Subtitle> subtitles;
+
+    // 按开始时间排序
+    private Subtitle[] byStart = new Subtitle[16];
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int startCount = 0;
+    // ends 上的最大值线段树：叶子 leafCount + i 对应 ends[i]，内部节点为两个子节点的较大值，空位为 -1
+    private int leafCount = 16;
+    private int[] maxEnd = newTree(16);
+
+    // 按结束时间排序
+    private Subtitle[] byEnd = new Subtitle[16];
+    private int[] endKeys = new int[16];
+    private int endCount = 0;
+
+    // 每次索引内容变化时加一，调用方据此判断上次的查找结果是否还能沿用
+    private int version = 0;
+
+    // 查找结果，由调用方复用以避免每次查找分配对象
+    public static class Lookup {
+        public Subtitle previous;
+        public Subtitle current;
+        public Subtitle next;
+        // current 在按开始时间排序中的位置，没有当前句时为 -1；
+        // 列表按开始时间排好且每句都已打轴时，它也就是 current 在列表中的位置
+        public int position = -1;
+    }
+
+    public CueIndex(ObservableList<Subtitle> subtitles) {
+        this.subtitles = subtitles;
+        subtitles.addListener((ListChangeListener<Subtitle>) this::onListChanged);
+        rebuild();
+    }
+
+    // 字幕的开始或结束时间被修改后调用
+    public void update(Subtitle subtitle) {
+        version++;
+        remove(subtitle);
+        add(subtitle);
+    }
+
+    public void rebuild() {
+        version++;
+        int oldCount = startCount;
+        for (int i = 0; i < startCount; i++) {
+            byStart[i].indexedStart = -1;
+            byStart[i] = null;
+        }
+        for (int i = 0; i < endCount; i++) {
+            byEnd[i].indexedEnd = -1;
+            byEnd[i] = null;
+        }
+        startCount = 0;
+        endCount = 0;
+
+        int size = subtitles.size();
+        Subtitle[] all = subtitles.toArray(new Subtitle[0]);
+        long[] startOrder = new long[size];
+        long[] endOrder = new long[size];
+        int s = 0;
+        int e = 0;
+        for (int i = 0; i < size; i++) {
+            Subtitle subtitle = all[i];
+            subtitle.indexedStart = subtitle.getStartMillis();
+            subtitle.indexedEnd = subtitle.getEndMillis();
+            // 高32位为时间，低32位为原始位置，排序后保持同一时间内的列表顺序
+            if (subtitle.indexedStart >= 0) {
+                startOrder[s++] = ((long) subtitle.indexedStart << 32) | i;
+            }
+            if (subtitle.indexedEnd >= 0) {
+                endOrder[e++] = ((long) subtitle.indexedEnd << 32) | i;
+            }
+        }
+        Arrays.sort(startOrder, 0, s);
+        Arrays.sort(endOrder, 0, e);
+
+        ensureStartCapacity(s);
+        for (int i = 0; i < s; i++) {
+            Subtitle subtitle = all[(int) startOrder[i]];
+            byStart[i] = subtitle;
+            starts[i] = subtitle.indexedStart;
+            ends[i] = subtitle.indexedEnd;
+        }
+        startCount = s;
+        refreshTree(0, Math.max(oldCount, s));
+
+        ensureEndCapacity(e);
+        for (int i = 0; i < e; i++) {
+            Subtitle subtitle = all[(int) endOrder[i]];
+            byEnd[i] = subtitle;
+            endKeys[i] = subtitle.indexedEnd;
+        }
+        endCount = e;
+    }
+
+    public void lookup(double seconds, Lookup result) {
+        int time = SubtitleTime.fromSeconds(seconds);
+        result.previous = null;
+        result.current = null;
+        result.next = null;
+        result.position = -1;
+
+        // 最后一个开始时间 <= time 的位置
+        int hi = upperBound(starts, startCount, time) - 1;
+
+        // 仍覆盖 time 的字幕中开始时间最晚的一句
+        int j = lastEndingAtOrAfter(hi, time);
+        if (j >= 0) {
+            result.current = byStart[j];
+            result.position = j;
+            result.previous = j > 0 ? byStart[j - 1] : null;
+            result.next = j + 1 < startCount ? byStart[j + 1] : null;
+            return;
+        }
+
+        // 没有当前字幕：下一句为第一个开始时间晚于 time 的字幕，上一句为最后一个已结束的字幕
+        result.next = hi + 1 < startCount ? byStart[hi + 1] : null;
+        int p = lowerBound(endKeys, endCount, time) - 1;
+        result.previous = p >= 0 ? byEnd[p] : null;
+    }
+
+    public int size() {
+        return startCount;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    private void onListChanged(ListChangeListener.Change<? extends Subtitle> change) {
+        int touched = 0;
+        while (change.next()) {
+            touched += change.getRemovedSize() + change.getAddedSize();
+        }
+        version++;
+        if (touched > REBUILD_THRESHOLD) {
+            rebuild();
+            return;
+        }
+        change.reset();
+        while (change.next()) {
+            if (change.wasPermutated() || change.wasUpdated()) {
+                continue;
+            }
+            for (Subtitle subtitle : change.getRemoved()) {
+                remove(subtitle);
+            }
+            for (Subtitle subtitle : change.getAddedSubList()) {
+                add(subtitle);
+            }
+        }
+    }
+
+    private void add(Subtitle subtitle) {
+        subtitle.indexedStart = subtitle.getStartMillis();
+        subtitle.indexedEnd = subtitle.getEndMillis();
+        if (subtitle.indexedStart >= 0) {
+            insertStart(subtitle);
+        }
+        if (subtitle.indexedEnd >= 0) {
+            insertEnd(subtitle);
+        }
+    }
+
+    private void remove(Subtitle subtitle) {
+        if (subtitle.indexedStart >= 0) {
+            int pos = find(byStart, starts, startCount, subtitle.indexedStart, subtitle);
+            if (pos >= 0) {
+                removeStartAt(pos);
+            }
+        }
+        if (subtitle.indexedEnd >= 0) {
+            int pos = find(byEnd, endKeys, endCount, subtitle.indexedEnd, subtitle);
+            if (pos >= 0) {
+                System.arraycopy(byEnd, pos + 1, byEnd, pos, endCount - pos - 1);
+                System.arraycopy(endKeys, pos + 1, endKeys, pos, endCount - pos - 1);
+                byEnd[--endCount] = null;
+            }
+        }
+        subtitle.indexedStart = -1;
+        subtitle.indexedEnd = -1;
+    }
+
+    private void insertStart(Subtitle subtitle) {
+        ensureStartCapacity(startCount + 1);
+        int pos = upperBound(starts, startCount, subtitle.indexedStart);
+        int tail = startCount - pos;
+        System.arraycopy(byStart, pos, byStart, pos + 1, tail);
+        System.arraycopy(starts, pos, starts, pos + 1, tail);
+        System.arraycopy(ends, pos, ends, pos + 1, tail);
+        byStart[pos] = subtitle;
+        starts[pos] = subtitle.indexedStart;
+        ends[pos] = subtitle.indexedEnd;
+        startCount++;
+        // 插入点之后的结束时间都后移了一位，与数组搬移一样是 O(n - pos)
+        refreshTree(pos, startCount);
+    }
+
+    private void removeStartAt(int pos) {
+        System.arraycopy(byStart, pos + 1, byStart, pos, startCount - pos - 1);
+        System.arraycopy(starts, pos + 1, starts, pos, startCount - pos - 1);
+        System.arraycopy(ends, pos + 1, ends, pos, startCount - pos - 1);
+        byStart[--startCount] = null;
+        refreshTree(pos, startCount + 1);
+    }
+
+    // 重新填写 [from, to) 的叶子（超出 startCount 的位置置为空），并更新它们的所有祖先
+    private void refreshTree(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            maxEnd[leafCount + i] = i < startCount ? ends[i] : -1;
+        }
+        int lo = (leafCount + from) >> 1;
+        int hi = (leafCount + to - 1) >> 1;
+        while (lo >= 1) {
+            for (int node = lo; node <= hi; node++) {
+                maxEnd[node] = Math.max(maxEnd[2 * node], maxEnd[2 * node + 1]);
+            }
+            lo >>= 1;
+            hi >>= 1;
+        }
+    }
+
+    // [0, hi] 中最后一个结束时间 >= time 的位置，没有时返回 -1。
+    // 从叶子 hi 向上走，遇到左侧兄弟子树的最大值够大时转入该子树，再沿右侧优先向下找到叶子
+    private int lastEndingAtOrAfter(int hi, int time) {
+        if (hi < 0) {
+            return -1;
+        }
+        int node = leafCount + hi;
+        if (maxEnd[node] >= time) {
+            return hi;
+        }
+        while (node > 1) {
+            if ((node & 1) == 1 && maxEnd[node - 1] >= time) {
+                node--;
+                while (node < leafCount) {
+                    node = maxEnd[2 * node + 1] >= time ? 2 * node + 1 : 2 * node;
+                }
+                return node - leafCount;
+            }
+            node >>= 1;
+        }
+        return -1;
+    }
+
+    private static int[] newTree(int leafCount) {
+        int[] tree = new int[2 * leafCount];
+        Arrays.fill(tree, -1);
+        return tree;
+    }
+
+    private void insertEnd(Subtitle subtitle) {
+        ensureEndCapacity(endCount + 1);
+        int pos = upperBound(endKeys, endCount, subtitle.indexedEnd);
+        System.arraycopy(byEnd, pos, byEnd, pos + 1, endCount - pos);
+        System.arraycopy(endKeys, pos, endKeys, pos + 1, endCount - pos);
+        byEnd[pos] = subtitle;
+        endKeys[pos] = subtitle.indexedEnd;
+        endCount++;
+    }
+
+    private void ensureStartCapacity(int capacity) {
+        if (capacity > byStart.length) {
+            int newLength = Math.max(capacity, byStart.length * 2);
+            byStart = Arrays.copyOf(byStart, newLength);
+            starts = Arrays.copyOf(starts, newLength);
+            ends = Arrays.copyOf(ends, newLength);
+        }
+        if (capacity > leafCount) {
+            // 叶子数保持为 2 的幂，扩容后整棵树按现有数据重建
+            leafCount = Integer.highestOneBit(capacity - 1) << 1;
+            maxEnd = newTree(leafCount);
+            refreshTree(0, startCount);
+        }
+    }
+
+    private void ensureEndCapacity(int capacity) {
+        if (capacity > byEnd.length) {
+            int newLength = Math.max(capacity, byEnd.length * 2);
+            byEnd = Arrays.copyOf(byEnd, newLength);
+            endKeys = Arrays.copyOf(endKeys, newLength);
+        }
+    }
+
+    private static int find(Subtitle[] entries, int[] keys, int count, int key, Subtitle subtitle) {
+        for (int i = lowerBound(keys, count, key); i < count && keys[i] == key; i++) {
+            if (entries[i] == subtitle) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 第一个 >= key 的位置
+    private static int lowerBound(int[] keys, int count, int key) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // 第一个 > key 的位置
+    private static int upperBound(int[] keys, int count, int key) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,190 @@
+package com.subtitler;
+
+import java.util.ArrayDeque;
+
+// 撤销/重做日志。只记录文本框的增量修改（位置、删除的文本、插入的文本），
+// 打轴、插入删除行等操作最终都会反映为文本框中某几行的变化，因此同样以增量记录。
+// 连续输入合并为一步；总占用按字节预算限制，超出时丢弃最早的记录。
+public class EditJournal {
+    private static final long DEFAULT_BUDGET_BYTES = 8L * 1024 * 1024;
+    private static final long COALESCE_WINDOW_MILLIS = 1000;
+    // 每条记录的对象头、字段和两个字符串对象的大致开销
+    private static final long ENTRY_OVERHEAD_BYTES = 96;
+
+    // 需要应用到文本框的一次修改：把 [offset, offset + removeLength) 替换为 insert
+    public static final class Edit {
+        public final int offset;
+        public final int removeLength;
+        public final String insert;
+
+        Edit(int offset, int removeLength, String insert) {
+            this.offset = offset;
+            this.removeLength = removeLength;
+            this.insert = insert;
+        }
+    }
+
+    private static final class Entry {
+        int offset;
+        String removed;
+        String inserted;
+        final boolean typing;
+        long lastEditTime;
+
+        Entry(int offset, String removed, String inserted, boolean typing, long time) {
+            this.offset = offset;
+            this.removed = removed;
+            this.inserted = inserted;
+            this.typing = typing;
+            this.lastEditTime = time;
+        }
+
+        long bytes() {
+            return ENTRY_OVERHEAD_BYTES + 2L * (removed.length() + inserted.length());
+        }
+    }
+
+    private final ArrayDeque<Entry> undoStack = new ArrayDeque<>();
+    private final ArrayDeque<Entry> redoStack = new ArrayDeque<>();
+    private final long budgetBytes;
+    private long usedBytes = 0;
+    private boolean coalesceBroken = true;
+
+    public EditJournal() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    public EditJournal(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    // 计算 oldText 变为 newText 的最小替换，两者相同时返回 null
+    public static Edit diff(String oldText, String newText) {
+        int oldLength = oldText.length();
+        int newLength = newText.length();
+        int max = Math.min(oldLength, newLength);
+        int prefix = 0;
+        while (prefix < max && oldText.charAt(prefix) == newText.charAt(prefix)) {
+            prefix++;
+        }
+        max -= prefix;
+        int suffix = 0;
+        while (suffix < max && oldText.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+            suffix++;
+        }
+        if (prefix == oldLength && prefix == newLength) {
+            return null;
+        }
+        return new Edit(prefix, oldLength - suffix - prefix, newText.substring(prefix, newLength - suffix));
+    }
+
+    // 记录一次文本变化，typing 为 true 表示用户输入，可以与相邻的输入合并
+    public void record(String oldText, String newText, boolean typing) {
+        Edit edit = diff(oldText, newText);
+        if (edit == null) {
+            return;
+        }
+        int prefix = edit.offset;
+        String removed = oldText.substring(prefix, prefix + edit.removeLength);
+        String inserted = edit.insert;
+        long now = System.currentTimeMillis();
+
+        clearRedo();
+        Entry last = undoStack.peekLast();
+        if (typing && !coalesceBroken && last != null && last.typing
+                && now - last.lastEditTime <= COALESCE_WINDOW_MILLIS
+                && coalesce(last, prefix, removed, inserted)) {
+            last.lastEditTime = now;
+        } else {
+            Entry entry = new Entry(prefix, removed, inserted, typing, now);
+            undoStack.addLast(entry);
+            usedBytes += entry.bytes();
+        }
+        coalesceBroken = !typing;
+        trimToBudget();
+    }
+
+    // 下一次记录不与之前的输入合并
+    public void breakCoalescing() {
+        coalesceBroken = true;
+    }
+
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    // 返回撤销需要应用到文本框的修改，没有可撤销的记录时返回 null
+    public Edit undo() {
+        Entry entry = undoStack.pollLast();
+        if (entry == null) {
+            return null;
+        }
+        redoStack.addLast(entry);
+        coalesceBroken = true;
+        return new Edit(entry.offset, entry.inserted.length(), entry.removed);
+    }
+
+    public Edit redo() {
+        Entry entry = redoStack.pollLast();
+        if (entry == null) {
+            return null;
+        }
+        undoStack.addLast(entry);
+        coalesceBroken = true;
+        return new Edit(entry.offset, entry.removed.length(), entry.inserted);
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        usedBytes = 0;
+        coalesceBroken = true;
+    }
+
+    // 连续输入：在上一次插入的末尾继续插入（不跨行），或者连续退格、连续向后删除
+    private boolean coalesce(Entry last, int offset, String removed, String inserted) {
+        long before = last.bytes();
+        if (removed.isEmpty() && last.removed.isEmpty()
+                && offset == last.offset + last.inserted.length()
+                && inserted.indexOf('\n') < 0) {
+            last.inserted = last.inserted + inserted;
+        } else if (inserted.isEmpty() && last.inserted.isEmpty()
+                && offset + removed.length() == last.offset
+                && removed.indexOf('\n') < 0) {
+            last.offset = offset;
+            last.removed = removed + last.removed;
+        } else if (inserted.isEmpty() && last.inserted.isEmpty()
+                && offset == last.offset
+                && removed.indexOf('\n') < 0) {
+            last.removed = last.removed + removed;
+        } else {
+            return false;
+        }
+        usedBytes += last.bytes() - before;
+        return true;
+    }
+
+    private void clearRedo() {
+        for (Entry entry : redoStack) {
+            usedBytes -= entry.bytes();
+        }
+        redoStack.clear();
+    }
+
+    // 超出预算时从最早的记录开始丢弃，至少保留最近的一条
+    // 从最早的记录开始丢弃。最新一条本身就超出预算时（例如导入大文件）也丢弃，
+    // 此时更早的记录已全部丢弃，不会留下无法对应当前文本的撤销步骤
+    private void trimToBudget() {
+        while (usedBytes > budgetBytes && !undoStack.isEmpty()) {
+            usedBytes -= undoStack.pollFirst().bytes();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.subtitler;
+
+import javafx.animation.AnimationTimer;
+import javafx.collections.ObservableList;
+
+// 编码进度的发布：工作线程只写 EncodingTask 里的 volatile 字段，
+// 这里在 FX 脉冲中按固定间隔取样，把有变化的任务同步到 JavaFX 属性，
+// 不管有多少任务、ffmpeg 报告得多频繁，每个间隔最多更新界面一次。
+// 没有正在进行的任务时自动停止，不再占用脉冲。
+public class EncodingProgressPublisher extends AnimationTimer {
+    private final ObservableList<EncodingTask> tasks;
+    private final long intervalNanos;
+    private final Runnable afterPublish;
+    private long lastPublish = 0;
+    private boolean running = false;
+
+    // afterPublish 在每次取样后调用，可以为 null
+    public EncodingProgressPublisher(ObservableList<EncodingTask> tasks, long intervalMillis, Runnable afterPublish) {
+        this.tasks = tasks;
+        this.intervalNanos = intervalMillis * 1_000_000L;
+        this.afterPublish = afterPublish;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        super.stop();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void handle(long now) {
+        if (now - lastPublish < intervalNanos) {
+            return;
+        }
+        lastPublish = now;
+        boolean active = false;
+        for (int i = 0; i < tasks.size(); i++) {
+            EncodingTask task = tasks.get(i);
+            task.publish();
+            active |= task.isActive();
+        }
+        if (afterPublish != null) {
+            afterPublish.run();
+        }
+        if (!active) {
+            stop();
+        }
+    }
+}
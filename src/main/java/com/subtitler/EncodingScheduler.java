@@ -0,0 +1,355 @@
+package com.subtitler;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 编码任务调度：任务先进入等待队列（"等待开始"），按优先级从高到低、同优先级先进先出的顺序派发。
+// 同时运行的任务数有总上限，另外每个编码器家族有各自的槽位上限：
+// 软件编码本身会占满所有核心，硬件编码器受显卡会话数限制。某个家族没有空闲槽位时，
+// 后面其他家族的任务可以先开始，不会被队首的任务堵住。
+// 分段并行编码的任务同时运行多个编码会话，每个会话都通过 Sessions 各占一个家族槽位。
+public class EncodingScheduler {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    public enum EncoderFamily {
+        SOFTWARE("软件编码", 1),
+        NVENC("NVIDIA NVENC", 3),
+        QSV("Intel QSV", 2),
+        AMF("AMD AMF", 2),
+        VIDEOTOOLBOX("Apple VideoToolbox", 2),
+        COPY("直接复制", 4);
+
+        private final String label;
+        private final int defaultSlots;
+
+        EncoderFamily(String label, int defaultSlots) {
+            this.label = label;
+            this.defaultSlots = defaultSlots;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static EncoderFamily of(String encoder) {
+            if (encoder == null || "copy".equals(encoder)) {
+                return COPY;
+            }
+            if (encoder.endsWith("_nvenc")) {
+                return NVENC;
+            }
+            if (encoder.endsWith("_qsv")) {
+                return QSV;
+            }
+            if (encoder.endsWith("_amf")) {
+                return AMF;
+            }
+            if (encoder.endsWith("_videotoolbox")) {
+                return VIDEOTOOLBOX;
+            }
+            return SOFTWARE;
+        }
+    }
+
+    // 在工作线程中执行一个任务，正常返回表示完成，抛出异常表示失败
+    public interface Job {
+        void run(EncodingTask task) throws Exception;
+    }
+
+    // 任务结束（完成、失败或取消）后在 FX 线程回调，此时状态已经更新
+    public interface Listener {
+        void taskFinished(EncodingTask task);
+    }
+
+    private static class Entry {
+        final EncodingTask task;
+        final Job job;
+        final EncoderFamily family;
+
+        Entry(EncodingTask task, Job job) {
+            this.task = task;
+            this.job = job;
+            this.family = EncoderFamily.of(task.getEncoder());
+        }
+    }
+
+    // 一个任务的编码会话。任务本身占有的槽位用作第一个会话，其余会话向调度器借用同一家族的空闲槽位，
+    // 每段编完立即归还；没有空闲槽位时等待其他任务或会话释放。只能在任务运行期间使用
+    public final class Sessions {
+        private final EncoderFamily family;
+        // 以下字段由 lock 保护
+        private boolean ownInUse = false;
+        private int borrowed = 0;
+
+        private Sessions(EncoderFamily family) {
+            this.family = family;
+        }
+
+        public void acquire() throws InterruptedException {
+            synchronized (lock) {
+                while (true) {
+                    if (!ownInUse) {
+                        ownInUse = true;
+                        return;
+                    }
+                    if (running.get(family) < slots.get(family)) {
+                        running.merge(family, 1, Integer::sum);
+                        borrowed++;
+                        return;
+                    }
+                    lock.wait();
+                }
+            }
+        }
+
+        // 先归还借来的槽位，让排队的任务和其他会话尽早用上
+        public void release() {
+            synchronized (lock) {
+                if (borrowed > 0) {
+                    borrowed--;
+                    running.merge(family, -1, Integer::sum);
+                    dispatch();
+                } else {
+                    ownInUse = false;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private final Object lock = new Object();
+    // 按派发顺序排列：优先级从高到低，同优先级按加入顺序
+    private final List<Entry> queue = new ArrayList<>();
+    private final Map<EncoderFamily, Integer> slots = new EnumMap<>(EncoderFamily.class);
+    private final Map<EncoderFamily, Integer> running = new EnumMap<>(EncoderFamily.class);
+    private int maxConcurrent;
+    private int runningTotal = 0;
+    private final ExecutorService workers;
+    private volatile Listener listener;
+
+    public EncodingScheduler(int maxConcurrent) {
+        this.maxConcurrent = Math.max(maxConcurrent, 1);
+        for (EncoderFamily family : EncoderFamily.values()) {
+            slots.put(family, family.defaultSlots);
+            running.put(family, 0);
+        }
+        AtomicInteger counter = new AtomicInteger();
+        // 并发数由派发逻辑控制，线程池本身不需要限制大小
+        workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "encoding-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void submit(EncodingTask task, Job job) {
+        synchronized (lock) {
+            Entry entry = new Entry(task, job);
+            int position = queue.size();
+            while (position > 0 && queue.get(position - 1).task.getPriority() < task.getPriority()) {
+                position--;
+            }
+            queue.add(position, entry);
+            dispatch();
+        }
+    }
+
+    // 取消任务：还在排队的直接移出队列，正在运行的终止 ffmpeg 进程
+    public void cancel(EncodingTask task) {
+        synchronized (lock) {
+            int index = indexOf(task);
+            if (index < 0) {
+                task.cancel();
+                return;
+            }
+            queue.remove(index);
+        }
+        task.cancel();
+        FxQueueMonitor.runLater(() -> {
+            task.setStatus("已取消");
+            task.setEndTime(LocalDateTime.now().format(TIME_FORMAT));
+            notifyFinished(task);
+        });
+    }
+
+    // 在队列中前移或后移一位，换位后沿用相邻任务的优先级，保证队列仍按优先级有序
+    public boolean moveUp(EncodingTask task) {
+        return move(task, -1);
+    }
+
+    public boolean moveDown(EncodingTask task) {
+        return move(task, 1);
+    }
+
+    private boolean move(EncodingTask task, int delta) {
+        synchronized (lock) {
+            int index = indexOf(task);
+            int target = index + delta;
+            if (index < 0 || target < 0 || target >= queue.size()) {
+                return false;
+            }
+            Entry neighbour = queue.get(target);
+            task.setPriority(neighbour.task.getPriority());
+            queue.set(target, queue.get(index));
+            queue.set(index, neighbour);
+            return true;
+        }
+    }
+
+    // 修改排队中任务的优先级并重新排到对应位置
+    public void setPriority(EncodingTask task, int priority) {
+        synchronized (lock) {
+            int index = indexOf(task);
+            task.setPriority(priority);
+            if (index < 0) {
+                return;
+            }
+            Entry entry = queue.remove(index);
+            int position = queue.size();
+            while (position > 0 && queue.get(position - 1).task.getPriority() < priority) {
+                position--;
+            }
+            queue.add(position, entry);
+        }
+    }
+
+    // 当前排队中的任务，按派发顺序
+    public List<EncodingTask> getQueued() {
+        synchronized (lock) {
+            List<EncodingTask> queued = new ArrayList<>(queue.size());
+            for (Entry entry : queue) {
+                queued.add(entry.task);
+            }
+            return queued;
+        }
+    }
+
+    public boolean isQueued(EncodingTask task) {
+        synchronized (lock) {
+            return indexOf(task) >= 0;
+        }
+    }
+
+    public int getMaxConcurrent() {
+        synchronized (lock) {
+            return maxConcurrent;
+        }
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        synchronized (lock) {
+            this.maxConcurrent = Math.max(maxConcurrent, 1);
+            dispatch();
+        }
+    }
+
+    public int getSlots(EncoderFamily family) {
+        synchronized (lock) {
+            return slots.get(family);
+        }
+    }
+
+    public void setSlots(EncoderFamily family, int count) {
+        synchronized (lock) {
+            slots.put(family, Math.max(count, 1));
+            dispatch();
+        }
+    }
+
+    public Sessions newSessions(EncoderFamily family) {
+        return new Sessions(family);
+    }
+
+    public void shutdown() {
+        synchronized (lock) {
+            for (Entry entry : queue) {
+                entry.task.cancel();
+            }
+            queue.clear();
+        }
+        workers.shutdownNow();
+    }
+
+    private int indexOf(EncodingTask task) {
+        for (int i = 0; i < queue.size(); i++) {
+            if (queue.get(i).task == task) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 持有 lock 时调用：按队列顺序启动所有能拿到槽位的任务，剩下的空闲槽位留给等待中的编码会话
+    private void dispatch() {
+        lock.notifyAll();
+        for (int i = 0; i < queue.size() && runningTotal < maxConcurrent; ) {
+            Entry entry = queue.get(i);
+            if (running.get(entry.family) >= slots.get(entry.family)) {
+                i++;
+                continue;
+            }
+            queue.remove(i);
+            running.merge(entry.family, 1, Integer::sum);
+            runningTotal++;
+            workers.execute(() -> execute(entry));
+        }
+    }
+
+    private void execute(Entry entry) {
+        EncodingTask task = entry.task;
+        Exception failure = null;
+        try {
+            if (!task.isCancelled()) {
+                String startTime = LocalDateTime.now().format(TIME_FORMAT);
+                FxQueueMonitor.runLater(() -> {
+                    task.setStatus("正在编码");
+                    task.setStartTime(startTime);
+                });
+                task.setEncodingThread(Thread.currentThread());
+                entry.job.run(task);
+            }
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            task.clearEncodingThread();
+            synchronized (lock) {
+                running.merge(entry.family, -1, Integer::sum);
+                runningTotal--;
+                dispatch();
+            }
+        }
+
+        Exception error = failure;
+        FxQueueMonitor.runLater(() -> {
+            task.setEndTime(LocalDateTime.now().format(TIME_FORMAT));
+            if (task.isCancelled()) {
+                task.setStatus("已取消");
+            } else if (error != null) {
+                task.setErrorMessage(error.getMessage());
+                task.setStatus("编码失败");
+            } else {
+                task.setProgress(100);
+                task.setStatus("编码完成");
+            }
+            notifyFinished(task);
+        });
+    }
+
+    private void notifyFinished(EncodingTask task) {
+        Listener current = listener;
+        if (current != null) {
+            current.taskFinished(task);
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package com.subtitler;
 
+import javafx.beans.binding.Bindings;
+import javafx.beans.binding.StringBinding;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.IntegerProperty;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class EncodingTask {
     private final StringProperty filename = new SimpleStringProperty();
@@ -14,15 +19,41 @@ public class EncodingTask {
     private final IntegerProperty progress = new SimpleIntegerProperty(0);
     private final StringProperty startTime = new SimpleStringProperty();
     private final StringProperty endTime = new SimpleStringProperty();
+    private final DoubleProperty speedShown = new SimpleDoubleProperty(-1);
+    // 状态列显示的文本，每个任务只创建一次
+    private final StringBinding statusText;
+    private final String encoder;
+    // 数值越大越先派发，由 EncodingScheduler 在调整队列顺序时修改
+    private volatile int priority;
     private String errorMessage;
-    private Process ffmpegProcess;
+    // ffmpeg 报告的编码统计，由工作线程写入，-1 表示未知。
+    // 每次写入后递增 reportVersion，FX 线程取样时与 publishedVersion 比较决定是否更新属性
+    private final AtomicLong reportVersion = new AtomicLong();
+    private long publishedVersion = 0;
+    private volatile int reportedProgress = 0;
+    private volatile long frame = -1;
+    private volatile double fps = -1;
+    private volatile double speed = -1;
+    private volatile long outTimeMillis = -1;
+    private volatile double bitrateKbps = -1;
+    // 分段并行编码时一个任务会同时运行多个 ffmpeg 进程
+    private final Set<Process> ffmpegProcesses = ConcurrentHashMap.newKeySet();
     private final AtomicBoolean isCancelled = new AtomicBoolean(false);
+    // 绑定、解除绑定和取消时的中断都在 threadLock 中进行，解除绑定后不会再有迟到的中断落到线程上
+    private final Object threadLock = new Object();
     private Thread encodingThread;
 
     public EncodingTask(String filename) {
+        this(filename, null, 0);
+    }
+
+    // 新任务处于排队状态，开始时间在调度器真正启动它时才记录
+    public EncodingTask(String filename, String encoder, int priority) {
         this.filename.set(filename);
+        this.encoder = encoder;
+        this.priority = priority;
         this.status.set("等待开始");
-        this.startTime.set(LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss")));
+        this.statusText = Bindings.createStringBinding(this::buildStatusText, status, progress, speedShown);
     }
 
     public String getFilename() { return filename.get(); }
@@ -31,24 +62,118 @@ public class EncodingTask {
     public String getStatus() { return status.get(); }
     public StringProperty statusProperty() { return status; }
     public void setStatus(String status) { this.status.set(status); }
+    public StringBinding statusTextProperty() { return statusText; }
+
+    // 排队中或正在编码
+    public boolean isActive() {
+        return "等待开始".equals(status.get()) || "正在编码".equals(status.get());
+    }
 
     public int getProgress() { return progress.get(); }
     public IntegerProperty progressProperty() { return progress; }
     public void setProgress(int progress) { this.progress.set(progress); }
 
+    public String getEncoder() { return encoder; }
+
+    public int getPriority() { return priority; }
+    public void setPriority(int priority) { this.priority = priority; }
+
     public String getStartTime() { return startTime.get(); }
+    public StringProperty startTimeProperty() { return startTime; }
+    public void setStartTime(String startTime) { this.startTime.set(startTime); }
     public String getEndTime() { return endTime.get(); }
+    public StringProperty endTimeProperty() { return endTime; }
     public void setEndTime(String endTime) { this.endTime.set(endTime); }
 
+    public long getFrame() { return frame; }
+    public double getFps() { return fps; }
+    public double getSpeed() { return speed; }
+    public long getOutTimeMillis() { return outTimeMillis; }
+    public double getBitrateKbps() { return bitrateKbps; }
+
+    // 工作线程调用，只写 volatile 字段，不访问 JavaFX 属性；percentage 为 -1 时保持原进度
+    public void report(FfmpegProgress progress, int percentage) {
+        if (percentage >= 0) {
+            reportedProgress = percentage;
+        }
+        frame = progress.getFrame();
+        fps = progress.getFps();
+        speed = progress.getSpeed();
+        outTimeMillis = progress.getOutTimeMicros() < 0 ? -1 : progress.getOutTimeMicros() / 1000;
+        bitrateKbps = progress.getBitrateKbps();
+        reportVersion.incrementAndGet();
+    }
+
+    // 工作线程报告整体进度（例如多段编码汇总后的百分比）
+    public void reportProgress(int percentage) {
+        reportedProgress = percentage;
+        reportVersion.incrementAndGet();
+    }
+
+    // FX 线程调用：把工作线程报告的最新数据同步到属性，没有新数据时什么都不做
+    void publish() {
+        long version = reportVersion.get();
+        if (version == publishedVersion) {
+            return;
+        }
+        publishedVersion = version;
+        // 任务已经结束时以调度器设置的最终状态为准
+        if (!"正在编码".equals(status.get())) {
+            return;
+        }
+        progress.set(reportedProgress);
+        speedShown.set(speed);
+    }
+
+    private String buildStatusText() {
+        String current = status.get();
+        if ("正在编码".equals(current)) {
+            if (speedShown.get() > 0) {
+                return String.format("%s (%d%%, %.2fx)", current, progress.get(), speedShown.get());
+            }
+            return current + " (" + progress.get() + "%)";
+        }
+        if ("编码失败".equals(current) && errorMessage != null) {
+            return current + " - " + errorMessage;
+        }
+        return current;
+    }
+
     public String getErrorMessage() { return errorMessage; }
     public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
 
-    public void setFfmpegProcess(Process process) {
-        this.ffmpegProcess = process;
+    public void addFfmpegProcess(Process process) {
+        ffmpegProcesses.add(process);
+        // 取消和启动进程同时发生时，确保新进程也被终止
+        if (isCancelled.get()) {
+            process.destroy();
+        }
+    }
+
+    public void removeFfmpegProcess(Process process) {
+        ffmpegProcesses.remove(process);
+    }
+
+    // 终止当前所有 ffmpeg 进程，但不把任务标记为已取消
+    public void destroyProcesses() {
+        for (Process process : ffmpegProcesses) {
+            process.destroy();
+        }
     }
 
+    // 工作线程开始执行任务时调用
     public void setEncodingThread(Thread thread) {
-        this.encodingThread = thread;
+        synchronized (threadLock) {
+            this.encodingThread = thread;
+        }
+    }
+
+    // 工作线程执行完任务时调用：解除绑定并清掉取消留下的中断标记，线程还要继续服务后面的任务
+    public void clearEncodingThread() {
+        synchronized (threadLock) {
+            encodingThread = null;
+            Thread.interrupted();
+        }
     }
 
     public boolean isCancelled() {
@@ -57,18 +182,20 @@ public class EncodingTask {
 
     public void cancel() {
         isCancelled.set(true);
-        if (ffmpegProcess != null) {
-            ffmpegProcess.destroy();
-        }
-        if (encodingThread != null) {
-            encodingThread.interrupt();
+        destroyProcesses();
+        synchronized (threadLock) {
+            if (encodingThread != null) {
+                encodingThread.interrupt();
+            }
         }
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        sb.append(startTime.get()).append(" ");
+        if (startTime.get() != null) {
+            sb.append(startTime.get()).append(" ");
+        }
         sb.append(filename.get());
         if (progress.get() < 100 && "正在编码".equals(status.get())) {
             sb.append(" (").append(progress.get()).append("%)");
@@ -0,0 +1,42 @@
+package com.subtitler;
+
+// ffmpeg -progress 输出的一组进度数据。解析器反复复用同一个对象，
+// 需要跨线程保存时由接收方自行拷贝。未知或 N/A 的值为 -1。
+public class FfmpegProgress {
+    long frame = -1;
+    double fps = -1;
+    double bitrateKbps = -1;
+    long totalSize = -1;
+    long outTimeMicros = -1;
+    double speed = -1;
+    boolean end = false;
+
+    public long getFrame() {
+        return frame;
+    }
+
+    public double getFps() {
+        return fps;
+    }
+
+    public double getBitrateKbps() {
+        return bitrateKbps;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public long getOutTimeMicros() {
+        return outTimeMicros;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    // progress=end，ffmpeg 已写完最后一组数据
+    public boolean isEnd() {
+        return end;
+    }
+}
@@ -0,0 +1,155 @@
+package com.subtitler;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// 解析 ffmpeg -progress pipe:1 输出的 key=value 行。直接在字节缓冲区上比较键和解析数值，
+// 不为每行创建 String；每遇到 progress=continue/end 回调一次，回调中拿到的是同一个复用对象。
+public class FfmpegProgressParser {
+    public interface Listener {
+        void progress(FfmpegProgress progress);
+    }
+
+    private static final byte[] FRAME = key("frame");
+    private static final byte[] FPS = key("fps");
+    private static final byte[] BITRATE = key("bitrate");
+    private static final byte[] TOTAL_SIZE = key("total_size");
+    private static final byte[] OUT_TIME_US = key("out_time_us");
+    // 旧版 ffmpeg 的 out_time_ms 实际单位也是微秒
+    private static final byte[] OUT_TIME_MS = key("out_time_ms");
+    private static final byte[] SPEED = key("speed");
+    private static final byte[] PROGRESS = key("progress");
+    private static final byte[] END = key("end");
+
+    private final byte[] buffer = new byte[8192];
+    private final byte[] line = new byte[256];
+    private final FfmpegProgress progress = new FfmpegProgress();
+
+    // 读到流结束为止，应在单独的线程中调用
+    public void parse(InputStream in, Listener listener) throws IOException {
+        int lineLength = 0;
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+                if (b == '\n' || b == '\r') {
+                    if (lineLength > 0) {
+                        parseLine(line, lineLength, listener);
+                        lineLength = 0;
+                    }
+                } else if (lineLength < line.length) {
+                    line[lineLength++] = b;
+                }
+                // 超长的行只保留前面部分，已知的键都很短
+            }
+        }
+        if (lineLength > 0) {
+            parseLine(line, lineLength, listener);
+        }
+    }
+
+    void parseLine(byte[] data, int length, Listener listener) {
+        int equals = indexOf(data, length, (byte) '=');
+        if (equals <= 0) {
+            return;
+        }
+        int from = equals + 1;
+        if (matches(data, equals, FRAME)) {
+            progress.frame = parseLong(data, from, length);
+        } else if (matches(data, equals, FPS)) {
+            progress.fps = parseDouble(data, from, length);
+        } else if (matches(data, equals, BITRATE)) {
+            progress.bitrateKbps = parseDouble(data, from, length);
+        } else if (matches(data, equals, TOTAL_SIZE)) {
+            progress.totalSize = parseLong(data, from, length);
+        } else if (matches(data, equals, OUT_TIME_US) || matches(data, equals, OUT_TIME_MS)) {
+            progress.outTimeMicros = parseLong(data, from, length);
+        } else if (matches(data, equals, SPEED)) {
+            progress.speed = parseDouble(data, from, length);
+        } else if (matches(data, equals, PROGRESS)) {
+            progress.end = length - from == END.length && regionEquals(data, from, END);
+            listener.progress(progress);
+        }
+    }
+
+    private static byte[] key(String key) {
+        byte[] bytes = new byte[key.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) key.charAt(i);
+        }
+        return bytes;
+    }
+
+    private static int indexOf(byte[] data, int length, byte value) {
+        for (int i = 0; i < length; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(byte[] data, int keyLength, byte[] key) {
+        return keyLength == key.length && regionEquals(data, 0, key);
+    }
+
+    private static boolean regionEquals(byte[] data, int from, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (data[from + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 解析开头的整数，忽略前导空白，N/A 或没有数字时返回 -1
+    static long parseLong(byte[] data, int from, int to) {
+        while (from < to && data[from] == ' ') {
+            from++;
+        }
+        boolean negative = from < to && data[from] == '-';
+        if (negative) {
+            from++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (from < to && data[from] >= '0' && data[from] <= '9') {
+            value = value * 10 + (data[from] - '0');
+            digits++;
+            from++;
+        }
+        if (digits == 0) {
+            return -1;
+        }
+        return negative ? -value : value;
+    }
+
+    // 解析开头的小数，单位后缀（kbits/s、x）被忽略，N/A 或没有数字时返回 -1
+    static double parseDouble(byte[] data, int from, int to) {
+        while (from < to && data[from] == ' ') {
+            from++;
+        }
+        long integer = 0;
+        long fraction = 0;
+        long scale = 1;
+        int digits = 0;
+        while (from < to && data[from] >= '0' && data[from] <= '9') {
+            integer = integer * 10 + (data[from] - '0');
+            digits++;
+            from++;
+        }
+        if (from < to && data[from] == '.') {
+            from++;
+            while (from < to && data[from] >= '0' && data[from] <= '9' && scale < 1_000_000_000L) {
+                fraction = fraction * 10 + (data[from] - '0');
+                scale *= 10;
+                digits++;
+                from++;
+            }
+        }
+        if (digits == 0) {
+            return -1;
+        }
+        return integer + (double) fraction / scale;
+    }
+}
@@ -0,0 +1,88 @@
+package com.subtitler;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// 运行一次 ffmpeg 并跟踪进度。进度通过 -progress pipe:1 以 key=value 形式从 stdout 读取，
+// stderr 只输出错误信息（-loglevel error），由单独的线程读取，保留最后一行作为失败原因。
+public final class FfmpegRunner {
+    private FfmpegRunner() {
+    }
+
+    // command 以 "ffmpeg" 开头；totalDurationMillis 为输出的总时长，用于计算百分比，未知时传 0
+    public static void run(EncodingTask task, List<String> command, long totalDurationMillis) throws Exception {
+        // 只写入任务的 volatile 字段，界面由 EncodingProgressPublisher 定时取样
+        run(task, command, progress -> {
+            int percentage = -1;
+            if (progress.getOutTimeMicros() > 0 && totalDurationMillis > 0) {
+                percentage = (int) Math.min(progress.getOutTimeMicros() / 10 / totalDurationMillis, 100);
+            }
+            task.report(progress, percentage);
+        });
+    }
+
+    // 进度交给 listener 处理，用于一个任务包含多个 ffmpeg 进程的情况；任务被取消时终止进程
+    public static void run(EncodingTask task, List<String> command, FfmpegProgressParser.Listener listener) throws Exception {
+        List<String> full = new ArrayList<>(command.size() + 7);
+        full.add(command.get(0));
+        full.add("-hide_banner");
+        full.add("-loglevel");
+        full.add("error");
+        full.add("-nostats");
+        full.add("-progress");
+        full.add("pipe:1");
+        full.addAll(command.subList(1, command.size()));
+
+        ProcessBuilder processBuilder = new ProcessBuilder(full);
+        Process process = processBuilder.start();
+        task.addFfmpegProcess(process);
+        try {
+            runProcess(task, process, listener);
+        } finally {
+            task.removeFfmpegProcess(process);
+        }
+    }
+
+    private static void runProcess(EncodingTask task, Process process, FfmpegProgressParser.Listener listener) throws Exception {
+        String[] lastError = new String[1];
+        Thread errorReader = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        synchronized (lastError) {
+                            lastError[0] = line.trim();
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                // 进程结束时流被关闭
+            }
+        }, "ffmpeg-stderr");
+        errorReader.setDaemon(true);
+        errorReader.start();
+
+        new FfmpegProgressParser().parse(process.getInputStream(), progress -> {
+            if (task.isCancelled()) {
+                process.destroy();
+                return;
+            }
+            listener.progress(progress);
+        });
+
+        int exitCode = process.waitFor();
+        errorReader.join(1000);
+        if (exitCode != 0 && !task.isCancelled()) {
+            String message = "FFmpeg process exited with code " + exitCode;
+            synchronized (lastError) {
+                if (lastError[0] != null) {
+                    message += ": " + lastError[0];
+                }
+            }
+            throw new RuntimeException(message);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.subtitler;
+
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
+import org.bytedeco.ffmpeg.avformat.AVFormatContext;
+import org.bytedeco.ffmpeg.avformat.AVStream;
+import org.bytedeco.ffmpeg.avutil.AVRational;
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avformat;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+// 视频帧索引：每一帧的显示时间（微秒，已减去文件起始时间）和是否为关键帧，
+// 按时间排序后以 (pts << 1) | key 存在一个 long 数组中，十万帧不到 1 MB。
+// 只读取数据包，不解码，建立后缓存到视频旁边的 <文件名>.frames，视频大小或修改时间变化时重建。
+public final class FrameIndex {
+    private static final int CACHE_MAGIC = 0x46494458; // "FIDX"
+    private static final int CACHE_VERSION = 1;
+    private static final String CACHE_SUFFIX = ".frames";
+
+    private final long[] entries;
+
+    private FrameIndex(long[] entries) {
+        this.entries = entries;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    public long getPtsMicros(int frame) {
+        return entries[frame] >> 1;
+    }
+
+    public boolean isKeyframe(int frame) {
+        return (entries[frame] & 1) != 0;
+    }
+
+    // 帧开始显示的毫秒时间。向上取整，保证这个时间落在该帧而不是前一帧的显示区间内
+    public int getFrameMillis(int frame) {
+        long micros = Math.max(getPtsMicros(frame), 0);
+        return (int) ((micros + 999) / 1000);
+    }
+
+    public double getFrameSeconds(int frame) {
+        return getFrameMillis(frame) / 1000.0;
+    }
+
+    // millis 时刻正在显示的帧，早于第一帧时返回 0
+    public int frameAt(int millis) {
+        // 时间相同的条目中关键帧标志位较大，用 | 1 找到最后一个不晚于 millis 的条目
+        int found = Arrays.binarySearch(entries, ((long) millis * 1000 << 1) | 1);
+        int frame = found >= 0 ? found : -found - 2;
+        return Math.max(Math.min(frame, entries.length - 1), 0);
+    }
+
+    // 开始时间离 millis 最近的帧
+    public int nearestFrame(int millis) {
+        int frame = frameAt(millis);
+        if (frame + 1 < entries.length
+                && getFrameMillis(frame + 1) - millis < millis - getFrameMillis(frame)) {
+            return frame + 1;
+        }
+        return frame;
+    }
+
+    // 把时间对齐到当前显示的帧；未设置的时间保持不变
+    public int snapToFrame(int millis) {
+        return millis < 0 || entries.length == 0 ? millis : getFrameMillis(frameAt(millis));
+    }
+
+    // 把时间对齐到最近的帧边界
+    public int snapToNearestFrame(int millis) {
+        return millis < 0 || entries.length == 0 ? millis : getFrameMillis(nearestFrame(millis));
+    }
+
+    // frame 及之前最近的关键帧，没有时返回 -1
+    public int previousKeyframe(int frame) {
+        for (int i = Math.min(frame, entries.length - 1); i >= 0; i--) {
+            if (isKeyframe(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 关键帧时间（秒），供分段编码选择切点
+    public List<Double> keyframeSeconds() {
+        List<Double> keyframes = new ArrayList<>();
+        for (int i = 0; i < entries.length; i++) {
+            if (isKeyframe(i)) {
+                keyframes.add(getPtsMicros(i) / 1_000_000.0);
+            }
+        }
+        return keyframes;
+    }
+
+    public static Path cachePathFor(Path media) {
+        return media.resolveSibling(media.getFileName() + CACHE_SUFFIX);
+    }
+
+    // 优先读取缓存，缓存不存在或已过期时扫描视频并写入缓存；缓存写不进去（例如目录只读）不影响结果
+    public static FrameIndex loadOrBuild(Path media, BooleanSupplier cancelled, DoubleConsumer progress) throws IOException {
+        FrameIndex cached = loadCached(media);
+        if (cached != null) {
+            return cached;
+        }
+        FrameIndex index = build(media, cancelled, progress);
+        if (index != null) {
+            try {
+                index.save(media);
+            } catch (IOException e) {
+                // 下次打开时重新扫描
+            }
+        }
+        return index;
+    }
+
+    // 读取与视频匹配的缓存，没有或已过期时返回 null
+    public static FrameIndex loadCached(Path media) throws IOException {
+        Path cache = cachePathFor(media);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cache)))) {
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION
+                    || in.readLong() != Files.size(media)
+                    || in.readLong() != Files.getLastModifiedTime(media).toMillis()) {
+                return null;
+            }
+            long[] entries = new long[in.readInt()];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = in.readLong();
+            }
+            return new FrameIndex(entries);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    void save(Path media) throws IOException {
+        Path cache = cachePathFor(media);
+        Path temp = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeLong(Files.size(media));
+                out.writeLong(Files.getLastModifiedTime(media).toMillis());
+                out.writeInt(entries.length);
+                for (long entry : entries) {
+                    out.writeLong(entry);
+                }
+            }
+            try {
+                Files.move(temp, cache, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    // 逐个读取视频流的数据包建立索引；cancelled 返回 true 时放弃并返回 null，progress 接收 0~1 的进度
+    public static FrameIndex build(Path media, BooleanSupplier cancelled, DoubleConsumer progress) throws IOException {
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(media.toFile());
+        try {
+            grabber.start();
+            AVFormatContext context = grabber.getFormatContext();
+            int stream = findVideoStream(context);
+            if (stream < 0) {
+                throw new IOException("文件中没有视频流");
+            }
+            AVRational timeBase = context.streams(stream).time_base();
+            long timeBaseNum = timeBase.num() * 1_000_000L;
+            long timeBaseDen = timeBase.den();
+            long startMicros = context.start_time() == avutil.AV_NOPTS_VALUE ? 0 : context.start_time();
+            long durationMicros = context.duration() == avutil.AV_NOPTS_VALUE ? 0 : context.duration();
+
+            long[] entries = new long[Math.max(grabber.getLengthInVideoFrames(), 1024)];
+            int count = 0;
+            AVPacket packet;
+            while ((packet = grabber.grabPacket()) != null) {
+                if (packet.stream_index() != stream) {
+                    continue;
+                }
+                long timestamp = packet.pts() != avutil.AV_NOPTS_VALUE ? packet.pts() : packet.dts();
+                if (timestamp == avutil.AV_NOPTS_VALUE) {
+                    continue;
+                }
+                long micros = avutil.av_rescale(timestamp, timeBaseNum, timeBaseDen) - startMicros;
+                boolean key = (packet.flags() & avcodec.AV_PKT_FLAG_KEY) != 0;
+                if (count == entries.length) {
+                    entries = Arrays.copyOf(entries, count * 2);
+                }
+                entries[count++] = (micros << 1) | (key ? 1 : 0);
+                if ((count & 1023) == 0) {
+                    if (cancelled.getAsBoolean()) {
+                        return null;
+                    }
+                    if (progress != null && durationMicros > 0) {
+                        progress.accept(Math.min((double) micros / durationMicros, 1.0));
+                    }
+                }
+            }
+            // 数据包按解码顺序到达，有 B 帧时需要按显示时间重新排序
+            entries = Arrays.copyOf(entries, count);
+            Arrays.sort(entries);
+            if (progress != null) {
+                progress.accept(1.0);
+            }
+            return new FrameIndex(entries);
+        } catch (FFmpegFrameGrabber.Exception e) {
+            throw new IOException("无法读取视频帧信息: " + e.getMessage(), e);
+        } finally {
+            try {
+                grabber.release();
+            } catch (FFmpegFrameGrabber.Exception e) {
+                // 释放失败不影响已经建立的索引
+            }
+        }
+    }
+
+    // 第一个不是封面图片的视频流
+    private static int findVideoStream(AVFormatContext context) {
+        for (int i = 0; i < context.nb_streams(); i++) {
+            AVStream stream = context.streams(i);
+            if (stream.codecpar().codec_type() == avutil.AVMEDIA_TYPE_VIDEO
+                    && (stream.disposition() & avformat.AV_DISPOSITION_ATTACHED_PIC) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
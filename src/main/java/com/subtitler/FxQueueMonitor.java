@@ -0,0 +1,51 @@
+package com.subtitler;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 统计经由这里提交到 FX 线程的任务：当前积压数、积压峰值、最近一次从提交到执行的延迟。
+// 后台线程应通过 FxQueueMonitor.runLater 而不是直接调用 Platform.runLater，积压才统计得到。
+public final class FxQueueMonitor {
+    private static final AtomicInteger pending = new AtomicInteger();
+    private static final AtomicInteger peakPending = new AtomicInteger();
+    private static final AtomicLong posted = new AtomicLong();
+    private static volatile long lastLatencyNanos = 0;
+
+    private FxQueueMonitor() {
+    }
+
+    public static void runLater(Runnable runnable) {
+        long postedAt = System.nanoTime();
+        int current = pending.incrementAndGet();
+        posted.incrementAndGet();
+        peakPending.accumulateAndGet(current, Math::max);
+        Platform.runLater(() -> {
+            pending.decrementAndGet();
+            lastLatencyNanos = System.nanoTime() - postedAt;
+            runnable.run();
+        });
+    }
+
+    // 已提交但还没执行的任务数
+    public static int getPending() {
+        return pending.get();
+    }
+
+    public static int getPeakPending() {
+        return peakPending.get();
+    }
+
+    public static void resetPeak() {
+        peakPending.set(pending.get());
+    }
+
+    public static long getPostedCount() {
+        return posted.get();
+    }
+
+    public static double getLastLatencyMillis() {
+        return lastLatencyNanos / 1_000_000.0;
+    }
+}
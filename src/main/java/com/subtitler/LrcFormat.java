@@ -0,0 +1,213 @@
+package com.subtitler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// LRC 歌词：每行 [mm:ss.xx]文本，只有开始时间。一行可以带多个时间标签（副歌重复出现），
+// 读取时先收集全部时间标签按时间排序，下一条的开始时间作为上一条的结束时间，空文本的时间标签只用来结束上一条；
+// 写出时两条之间有空隙就补一个空的时间标签。[offset:毫秒] 会计入时间，其他标签忽略。
+public class LrcFormat implements SubtitleFormat {
+    private static final List<String> EXTENSIONS = List.of("lrc");
+
+    @Override
+    public String getName() {
+        return "LRC歌词";
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return EXTENSIONS;
+    }
+
+    @Override
+    public SubtitleReader newReader(Reader reader) {
+        return new LrcReader(reader);
+    }
+
+    @Override
+    public SubtitleWriter newWriter(Writer writer) {
+        return new LrcWriter(writer);
+    }
+
+    @Override
+    public boolean requiresEndTime() {
+        return false;
+    }
+
+    private static class LrcReader implements SubtitleReader {
+        private final BufferedReader reader;
+        private final ArrayDeque<Subtitle> ready = new ArrayDeque<>();
+        private int[] lineStarts = new int[4];
+        // 按出现顺序收集的 (时间, 文本)，读完整个文件后排序；歌词文件很小，整体放在内存中
+        private int[] entryStarts = new int[64];
+        private final List<String> entryTexts = new ArrayList<>();
+        private boolean loaded = false;
+        private int offset = 0;
+
+        LrcReader(Reader reader) {
+            this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 64 * 1024);
+        }
+
+        @Override
+        public Subtitle read() throws IOException {
+            if (!loaded) {
+                loaded = true;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    parseLine(line);
+                }
+                emitSorted();
+            }
+            return ready.poll();
+        }
+
+        // 按时间排序（同一时间保持文件中的顺序），每条的结束时间为下一个时间标签
+        private void emitSorted() {
+            int count = entryTexts.size();
+            long[] order = new long[count];
+            for (int k = 0; k < count; k++) {
+                order[k] = ((long) entryStarts[k] << 32) | k;
+            }
+            Arrays.sort(order);
+            for (int k = 0; k < count; k++) {
+                String text = entryTexts.get((int) order[k]);
+                if (text.isEmpty()) {
+                    continue;
+                }
+                int start = (int) (order[k] >>> 32);
+                int end = k + 1 < count ? (int) (order[k + 1] >>> 32) : SubtitleTime.NONE;
+                ready.add(new Subtitle(text, start, end));
+            }
+        }
+
+        private void parseLine(String line) {
+            int i = !line.isEmpty() && line.charAt(0) == '\uFEFF' ? 1 : 0;
+            int count = 0;
+            while (i < line.length() && line.charAt(i) == '[') {
+                int close = line.indexOf(']', i);
+                if (close < 0) {
+                    break;
+                }
+                if (close > i + 1 && Character.isDigit(line.charAt(i + 1))) {
+                    int time = SubtitleTime.parse(line, i + 1, close);
+                    if (time != SubtitleTime.NONE) {
+                        if (count == lineStarts.length) {
+                            lineStarts = Arrays.copyOf(lineStarts, count * 2);
+                        }
+                        lineStarts[count++] = time;
+                    }
+                } else if (line.regionMatches(true, i + 1, "offset:", 0, 7)) {
+                    offset = parseOffset(line, i + 8, close);
+                }
+                i = close + 1;
+            }
+            if (count == 0) {
+                return;
+            }
+            String text = line.substring(i).trim();
+            for (int k = 0; k < count; k++) {
+                // offset 为正表示歌词整体提前
+                accept(Math.max(lineStarts[k] - offset, 0), text);
+            }
+        }
+
+        private void accept(int start, String text) {
+            int count = entryTexts.size();
+            if (count == entryStarts.length) {
+                entryStarts = Arrays.copyOf(entryStarts, count * 2);
+            }
+            entryStarts[count] = start;
+            entryTexts.add(text);
+        }
+
+        private static int parseOffset(String line, int from, int to) {
+            try {
+                return Integer.parseInt(line.substring(from, to).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static class LrcWriter implements SubtitleWriter {
+        private final Writer writer;
+        private final StringBuilder block = new StringBuilder(128);
+        private int pendingEnd = SubtitleTime.NONE;
+
+        LrcWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void writeHeader() {
+        }
+
+        @Override
+        public void write(Subtitle subtitle) throws IOException {
+            block.setLength(0);
+            int start = subtitle.getStartMillis();
+            if (pendingEnd != SubtitleTime.NONE && start > pendingEnd) {
+                appendTime(block, pendingEnd).append('\n');
+            }
+            appendTime(block, start);
+            String content = subtitle.getContent().trim();
+            // 一条歌词只能占一行
+            for (int i = 0; i < content.length(); i++) {
+                char c = content.charAt(i);
+                if (c == '\n') {
+                    block.append(' ');
+                } else if (c != '\r') {
+                    block.append(c);
+                }
+            }
+            block.append('\n');
+            writer.append(block);
+            pendingEnd = subtitle.getEndMillis();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (pendingEnd != SubtitleTime.NONE) {
+                block.setLength(0);
+                appendTime(block, pendingEnd).append('\n');
+                writer.append(block);
+                pendingEnd = SubtitleTime.NONE;
+            }
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    // [mm:ss.xx]，分钟不进位到小时
+    static StringBuilder appendTime(StringBuilder sb, int millis) {
+        int centis = (Math.max(millis, 0) + 5) / 10;
+        int seconds = centis / 100;
+        int minutes = seconds / 60;
+        sb.append('[');
+        if (minutes < 10) {
+            sb.append('0');
+        }
+        sb.append(minutes).append(':');
+        appendTwoDigits(sb, seconds % 60).append('.');
+        return appendTwoDigits(sb, centis % 100).append(']');
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder sb, int value) {
+        return sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
@@ -6,12 +6,21 @@ import com.github.kokorin.jaffree.ffmpeg.UrlInput;
 import com.github.kokorin.jaffree.ffmpeg.UrlOutput;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
 import javafx.stage.FileChooser;
 import java.io.File;
+import java.io.IOException;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.geometry.Point2D;
+import javafx.stage.Popup;
+import javafx.stage.PopupWindow;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.ArrayList;
@@ -19,14 +28,14 @@ import javafx.application.Platform;
 import javafx.scene.control.ProgressBar;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import javafx.scene.control.Slider;
 import javafx.beans.value.ChangeListener;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import com.subtitler.VideoPlayer;
 import javafx.scene.layout.GridPane;
 import javafx.geometry.Insets;
@@ -42,10 +51,8 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import javafx.scene.control.ContextMenu;
 import javafx.scene.control.MenuItem;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.beans.property.SimpleStringProperty;
-import java.util.Stack;
-import java.util.stream.Collectors;
-import javafx.scene.Node;
 import javafx.scene.control.cell.PropertyValueFactory;
 
 public class MainViewController {
@@ -61,58 +68,76 @@ public class MainViewController {
 
     private VideoPlayer videoPlayer;
     private File currentVideoFile;
+    // 每打开一次视频加一，只在 FX 线程中读写；后台分析的结果和失败只在代数未变时应用，
+    // 重新打开同一个文件时上一次的分析也会被丢弃
+    private long videoGeneration;
+    // 当前视频的帧索引，后台建立完成前为 null，此时打点和跳转不做帧对齐
+    private volatile FrameIndex frameIndex;
+    private Thread frameIndexThread;
+    // 最近一次逐帧移动到的帧（-1 表示没有）及所用的帧索引，只在 FX 线程中访问
+    private int steppedFrame = -1;
+    private FrameIndex steppedIndex;
+    private Thread waveformThread;
+    // 镜头切换位置，依赖帧索引，在帧索引就绪后开始检测
+    private volatile SceneCuts sceneCuts;
+    private Thread sceneThread;
+    // 正在检测语音的自动打轴线程，再次打轴或打开别的视频时中断，只在 FX 线程中访问
+    private Thread autoTimingThread;
+    // 正在显示的视频分析失败对话框及其对应的视频代数，同一次打开中后续的失败追加到这个对话框中
+    private Alert analysisAlert;
+    private long analysisAlertGeneration;
+    @FXML private ToggleGroup sceneSnapGroup;
+    // 解码吃力的视频改为播放低分辨率代理：proxy 为当前视频的代理，proxyTask 为正在生成代理的编码任务
+    private ProxyVideo proxy;
+    private EncodingTask proxyTask;
+    private Thread proxyThread;
+    private boolean proxyPlaying;
+    @FXML private CheckMenuItem useProxyPlayback;
+    @FXML private CheckMenuItem snapExportToFrames;
+    @FXML private WaveformView waveformView;
     @FXML private Slider timeSlider;
+    private final Tooltip seekLatencyTooltip = new Tooltip("跳转延迟：暂无数据");
+    // 悬停在滑块上时显示的缩略图，依赖帧索引，在帧索引就绪后开始生成
+    private volatile ThumbnailCache thumbnails;
+    private final Popup thumbnailPopup = new Popup();
+    private final ImageView thumbnailView = new ImageView();
+    private final Label thumbnailLabel = new Label();
+    private final VBox thumbnailBox = new VBox(2, thumbnailView, thumbnailLabel);
+    private ThumbnailCache.Thumbnail shownThumbnail;
+    private double thumbnailHoverX;
     @FXML private TextArea subtitleInput;
     private TableView<EncodingTask> taskTable;
     private ObservableList<EncodingTask> tasks = FXCollections.observableArrayList();
     private Stage taskWindow;
+    // 编码任务排队执行，默认最多同时运行两个
+    private final EncodingScheduler encodingScheduler = new EncodingScheduler(2);
+    // 每 100 毫秒把工作线程报告的进度同步到任务表一次
+    private final EncodingProgressPublisher progressPublisher =
+        new EncodingProgressPublisher(tasks, 100, this::updateFxQueueLabel);
+    private final Label fxQueueLabel = new Label();
     private ObservableList<Subtitle> subtitles = FXCollections.observableArrayList();
-
-    // 添加撤销相关的字段
-    private Stack<SubtitleState> undoStack = new Stack<>();
-    private static final int MAX_UNDO_STEPS = 50;
+    private final CueIndex cueIndex = new CueIndex(subtitles);
+    private final SubtitleDocument document = new SubtitleDocument(subtitles);
+    private final CueIndex.Lookup cueLookup = new CueIndex.Lookup();
+    // 上次预览的三句字幕及当时的索引版本，都没变时不再更新标签
+    private Subtitle previewedPrevious;
+    private Subtitle previewedCurrent;
+    private Subtitle previewedNext;
+    private int previewedVersion = -1;
+    // 自动跟随上一次选中的字幕，当前句不变时不再选中和滚动
+    private Subtitle followedCue;
+    private VisibleRangeTracker visibleRange;
+
+    // 撤销/重做日志
+    private final EditJournal journal = new EditJournal();
     private boolean isUndoing = false;
 
-    // 添加内部类来保存字幕状态
-    private static class SubtitleState {
-        private final String textContent;
-        private final List<SubtitleData> subtitleDataList;
-
-        public SubtitleState(String textContent, List<Subtitle> subtitles) {
-            this.textContent = textContent;
-            this.subtitleDataList = subtitles.stream()
-                .map(s -> new SubtitleData(s.getContent(), s.getStartTime(), s.getEndTime()))
-                .collect(Collectors.toList());
-        }
-
-        private static class SubtitleData {
-            String content;
-            String startTime;
-            String endTime;
-
-            SubtitleData(String content, String startTime, String endTime) {
-                this.content = content;
-                this.startTime = startTime;
-                this.endTime = endTime;
-            }
-        }
-    }
-
-    private void saveCurrentState() {
-        if (!isUndoing) {
-            SubtitleState state = new SubtitleState(subtitleInput.getText(), subtitles);
-            undoStack.push(state);
-            if (undoStack.size() > MAX_UNDO_STEPS) {
-                undoStack.remove(0);
-            }
-        }
-    }
-
     private boolean userScrolling = false;
     private long lastUserScrollTime = 0;
     private static final long SCROLL_TIMEOUT = 2000; // 2秒后恢复自动滚动
 
     @FXML private ComboBox<String> playbackSpeedComboBox;
+    @FXML private ProgressBar ioProgressBar;
 
     @FXML
     public void initialize() {
@@ -131,10 +156,13 @@ public class MainViewController {
             }
         });
 
+        encodingScheduler.setListener(this::onEncodingFinished);
+
         // 初始化表格列
-        startTimeColumn.setCellValueFactory(data -> data.getValue().startTimeProperty());
-        endTimeColumn.setCellValueFactory(data -> data.getValue().endTimeProperty());
-        contentColumn.setCellValueFactory(data -> data.getValue().contentProperty());
+        // 只为正在显示的单元格生成临时属性，字幕本身不持有 JavaFX 属性，修改后通过 refresh 重绘
+        startTimeColumn.setCellValueFactory(data -> new ReadOnlyStringWrapper(data.getValue().getStartTime()));
+        endTimeColumn.setCellValueFactory(data -> new ReadOnlyStringWrapper(data.getValue().getEndTime()));
+        contentColumn.setCellValueFactory(data -> new ReadOnlyStringWrapper(data.getValue().getContent()));
 
         // 设置内容列为可编辑
         contentColumn.setCellFactory(column -> {
@@ -210,6 +238,7 @@ public class MainViewController {
 
         // 添加编辑完成的监听器
         contentColumn.setOnEditCommit(event -> {
+            document.flush();
             Subtitle subtitle = event.getRowValue();
             subtitle.setContent(event.getNewValue());
             // 更新左侧文本区域
@@ -219,27 +248,24 @@ public class MainViewController {
         // 修改表格点击事件
         subtitleTable.setOnMouseClicked(event -> {
             if (event.getClickCount() == 1) {
+                document.flush();
                 Subtitle selected = subtitleTable.getSelectionModel().getSelectedItem();
                 if (selected != null && videoPlayer != null) {
-                    double currentTime = videoPlayer.getCurrentTime();
+                    int currentMillis = currentStampMillis();
                     double cellWidth = contentColumn.getWidth();
                     double startColumnX = 0;
                     double endColumnX = startTimeColumn.getWidth() + endTimeColumn.getWidth();
 
                     if (event.getX() < startTimeColumn.getWidth()) {
-                        // 保存当前状态
-                        saveCurrentState();
-
-                        selected.setStartTime(formatTimeWithMillis(currentTime));
+                        selected.setStartMillis(currentMillis);
+                        cueIndex.update(selected);
                         // 更新左侧文本区域
                         updateTextAreaFromSubtitles();
                         // 强制更新表格显示
                         subtitleTable.refresh();
                     } else if (event.getX() < endColumnX && event.getX() > startTimeColumn.getWidth()) {
-                        // 保存当前状态
-                        saveCurrentState();
-
-                        selected.setEndTime(formatTimeWithMillis(currentTime));
+                        selected.setEndMillis(currentMillis);
+                        cueIndex.update(selected);
                         // 更新左侧文本区域
                         updateTextAreaFromSubtitles();
                         // 强制更新表格显示
@@ -250,6 +276,7 @@ public class MainViewController {
         });
 
         subtitleTable.setItems(subtitles);
+        visibleRange = new VisibleRangeTracker(subtitleTable);
 
         // 初始化时显示带毫秒的时间
         timeLabel.setText("00:00:00,000");
@@ -262,15 +289,17 @@ public class MainViewController {
         // 初始化视频播放器
         videoPlayer = new VideoPlayer(mediaView);
         videoPlayer.setCallback(new VideoPlayer.VideoPlayerCallback() {
+            // 与本帧的时间来自同一个状态快照，不再单独读取播放器的当前时长
+            private double durationSeconds;
+
             @Override
             public void onTimeChanged(double currentTimeSeconds) {
-                timeLabel.setText(String.format("%s / %s",
-                    formatTimeWithMillis(currentTimeSeconds),
-                    formatTimeWithMillis(videoPlayer.getDuration())));
+                updateTimeLabel(currentTimeSeconds, durationSeconds);
+                waveformView.setPlayheadMillis(Math.round(currentTimeSeconds * 1000));
 
                 // 只在非拖动状态更新滑块位置
-                if (!timeSlider.isValueChanging()) {
-                    double progress = currentTimeSeconds / videoPlayer.getDuration() * 100.0;
+                if (!timeSlider.isValueChanging() && durationSeconds > 0) {
+                    double progress = currentTimeSeconds / durationSeconds * 100.0;
                     // 避免频繁的小数点差异导致的更新
                     if (Math.abs(timeSlider.getValue() - progress) > 0.1) {
                         timeSlider.setValue(progress);
@@ -283,7 +312,31 @@ public class MainViewController {
 
             @Override
             public void onDurationChanged(double durationSeconds) {
-                // 可以在这里处理视频总时长变化
+                this.durationSeconds = durationSeconds;
+                waveformView.setDurationMillis(Math.round(durationSeconds * 1000));
+            }
+
+            @Override
+            public void onSeekCompleted(double currentTimeSeconds, double latencyMillis) {
+                seekLatencyTooltip.setText(String.format("跳转延迟：最近 %.0f ms，平均 %.0f ms，丢弃中间目标 %d 次",
+                    videoPlayer.getLastSeekLatencyMillis(), videoPlayer.getAverageSeekLatencyMillis(),
+                    videoPlayer.getDroppedSeekCount()));
+            }
+        });
+        timeSlider.setTooltip(seekLatencyTooltip);
+        Tooltip frameTooltip = new Tooltip();
+        frameTooltip.setOnShowing(event -> frameTooltip.setText(String.format("解码 %d 帧，显示 %d 帧，丢弃 %d 帧",
+            videoPlayer.getDecodedFrameCount(), videoPlayer.getRenderedFrameCount(), videoPlayer.getDroppedFrameCount())));
+        Tooltip.install(mediaView, frameTooltip);
+        thumbnailBox.setStyle("-fx-background-color: rgba(0, 0, 0, 0.8); -fx-padding: 3;");
+        thumbnailLabel.setStyle("-fx-text-fill: white; -fx-font-size: 11;");
+        thumbnailPopup.getContent().add(thumbnailBox);
+        thumbnailPopup.setAnchorLocation(PopupWindow.AnchorLocation.CONTENT_BOTTOM_LEFT);
+        timeSlider.setOnMouseMoved(event -> showThumbnail(event.getX()));
+        timeSlider.setOnMouseExited(event -> thumbnailPopup.hide());
+        waveformView.setOnSeek(seconds -> {
+            if (videoPlayer != null) {
+                seekToFrame(seconds);
             }
         });
 
@@ -300,12 +353,11 @@ public class MainViewController {
                 double duration = videoPlayer.getDuration();
                 double time = duration * (timeSlider.getValue() / 100.0);
 
-                // 立即更新视频位置
-                videoPlayer.seek(time);
+                // 按下时先粗略跳转，松开时再精确定位
+                forgetSteppedFrame();
+                videoPlayer.seekCoarse(time);
 
-                timeLabel.setText(String.format("%s / %s",
-                    formatTimeWithMillis(time),
-                    formatTimeWithMillis(duration)));
+                updateTimeLabel(time, duration);
 
                 // 存储播放状态
                 timeSlider.setUserData(wasPlaying ? 1.0 : 0.0);
@@ -318,18 +370,21 @@ public class MainViewController {
                 double duration = videoPlayer.getDuration();
                 double time = duration * (newVal.doubleValue() / 100.0);
 
-                // 立即更新视频位置
-                videoPlayer.seek(time);
+                // 拖动过程中只做粗略跳转，跳转进行中产生的中间位置会被丢弃
+                videoPlayer.seekCoarse(time);
 
-                timeLabel.setText(String.format("%s / %s",
-                    formatTimeWithMillis(time),
-                    formatTimeWithMillis(duration)));
+                updateTimeLabel(time, duration);
             }
         });
 
         // 修改滑块释放事件监听
         timeSlider.setOnMouseReleased(event -> {
             if (videoPlayer != null) {
+                // 松开时精确跳转到最终位置
+                forgetSteppedFrame();
+                double duration = videoPlayer.getDuration();
+                videoPlayer.seek(duration * (timeSlider.getValue() / 100.0));
+
                 // 获取之前的播放状态
                 Object data = timeSlider.getUserData();
                 if (data instanceof Double && ((Double) data) > 0) {
@@ -341,11 +396,19 @@ public class MainViewController {
         // 修改文本变化监听器
         textChangeListener = (observable, oldValue, newValue) -> {
             if (!isUndoing && oldValue != null && !oldValue.equals(newValue)) {
-                updateSubtitles(); // updateSubtitles 方法中已经包含了状态保存
+                journal.record(oldValue, newValue, true);
+                updateSubtitles();
             }
         };
         subtitleInput.textProperty().addListener(textChangeListener);
 
+        // 离开文本框时立即完成尚未解析的修改
+        subtitleInput.focusedProperty().addListener((obs, wasFocused, isNowFocused) -> {
+            if (!isNowFocused) {
+                document.flush();
+            }
+        });
+
         // 修改键盘事件监听器
         Platform.runLater(() -> {
             if (mediaView.getScene() != null) {
@@ -384,6 +447,14 @@ public class MainViewController {
                             }
                             event.consume();
                             break;
+                        case COMMA:
+                            stepBackwardFrame();
+                            event.consume();
+                            break;
+                        case PERIOD:
+                            stepForwardFrame();
+                            event.consume();
+                            break;
                     }
                 });
             }
@@ -413,14 +484,274 @@ public class MainViewController {
         File file = fileChooser.showOpenDialog(null);
         if (file != null) {
             currentVideoFile = file;
+            videoGeneration++;
+            cancelAutoTiming();
             try {
                 videoPlayer.openVideo(file.getAbsolutePath());
+                prepareProxy(file);
+                frameIndex = null;
+                sceneCuts = null;
+                if (thumbnails != null) {
+                    thumbnails.close();
+                    thumbnails = null;
+                }
+                if (sceneThread != null) {
+                    sceneThread.interrupt();
+                }
+                frameIndexThread = analyzeInBackground(file, frameIndexThread, "frame-index", "无法建立帧索引",
+                    (media, cancelled) -> FrameIndex.loadOrBuild(media, cancelled, null),
+                    index -> {
+                        frameIndex = index;
+                        sceneThread = analyzeInBackground(file, sceneThread, "scene-detect", "无法检测镜头切换",
+                            (media, cancelled) -> SceneCuts.loadOrDetect(media, index, cancelled),
+                            cuts -> sceneCuts = cuts);
+                        startThumbnails(file, index, videoGeneration);
+                    });
+                waveformView.setPeaks(null);
+                waveformThread = analyzeInBackground(file, waveformThread, "waveform", "无法生成音频波形",
+                    (media, cancelled) -> WaveformPeaks.loadOrBuild(media, cancelled, null),
+                    waveformView::setPeaks);
             } catch (Exception e) {
                 showError("打开视频失败", e.getMessage());
             }
         }
     }
 
+    // 需要代理时：已有代理直接切换过去，否则通过编码队列在后台生成，完成后再切换。
+    // 代理只用于播放，帧索引、波形、导出和编码仍然使用 currentVideoFile
+    private void prepareProxy(File file) {
+        cancelProxyTask();
+        proxy = null;
+        proxyPlaying = false;
+        if (useProxyPlayback == null || !useProxyPlayback.isSelected()) {
+            return;
+        }
+        proxyThread = analyzeInBackground(file, proxyThread, "proxy-probe", "无法检查视频是否需要代理",
+            (media, cancelled) -> ProxyVideo.probe(media),
+            probed -> {
+                proxy = probed;
+                if (probed.isReady()) {
+                    playProxy();
+                } else {
+                    proxyTask = new EncodingTask(probed.getProxyPath().toString(), "libx264", 0);
+                    enqueueEncodingTask(proxyTask, probed::run, false);
+                }
+            });
+    }
+
+    private void cancelProxyTask() {
+        if (proxyThread != null) {
+            proxyThread.interrupt();
+        }
+        if (proxyTask != null && proxyTask.isActive()) {
+            encodingScheduler.cancel(proxyTask);
+        }
+        proxyTask = null;
+    }
+
+    private void playProxy() {
+        videoPlayer.switchSource(proxy.getProxyPath().toString());
+        proxyPlaying = true;
+    }
+
+    @FXML
+    private void toggleProxyPlayback() {
+        if (currentVideoFile == null) {
+            return;
+        }
+        if (useProxyPlayback.isSelected()) {
+            prepareProxy(currentVideoFile);
+            return;
+        }
+        cancelProxyTask();
+        if (proxyPlaying) {
+            videoPlayer.switchSource(currentVideoFile.getAbsolutePath());
+            proxyPlaying = false;
+        }
+    }
+
+    // 对视频做的一项后台分析，cancelled 返回 true 时应尽快放弃并返回 null
+    private interface MediaAnalysis<T> {
+        T run(Path media, BooleanSupplier cancelled) throws Exception;
+    }
+
+    // 在后台线程中分析视频，完成后在 FX 线程交给 onReady。previous 为同一分析上一次启动的线程，
+    // 会被中断；之后又打开过视频（包括同一个文件）时结果直接丢弃。分析失败只影响对应的辅助功能，提示后继续播放和编辑
+    private <T> Thread analyzeInBackground(File file, Thread previous, String name, String failure,
+                                           MediaAnalysis<T> analysis, Consumer<T> onReady) {
+        if (previous != null) {
+            previous.interrupt();
+        }
+        long generation = videoGeneration;
+        Thread thread = new Thread(() -> {
+            try {
+                T result = analysis.run(file.toPath(), Thread.currentThread()::isInterrupted);
+                if (result != null) {
+                    FxQueueMonitor.runLater(() -> {
+                        if (generation == videoGeneration) {
+                            onReady.accept(result);
+                        }
+                    });
+                }
+            } catch (InterruptedException e) {
+                // 被新的分析取代
+            } catch (Exception e) {
+                if (!Thread.currentThread().isInterrupted()) {
+                    String message = failure + ": " + e.getMessage();
+                    FxQueueMonitor.runLater(() -> reportAnalysisFailure(generation, message));
+                }
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void startThumbnails(File file, FrameIndex index, long generation) {
+        try {
+            ThumbnailCache cache = new ThumbnailCache(file.toPath(), index);
+            // 正在悬停的位置还没有缩略图时，生成一张就刷新一次
+            cache.setOnExtracted(thumbnail -> FxQueueMonitor.runLater(() -> {
+                if (thumbnails == cache && thumbnailPopup.isShowing() && shownThumbnail == null) {
+                    showThumbnail(thumbnailHoverX);
+                }
+            }));
+            thumbnails = cache;
+            cache.start();
+        } catch (IOException e) {
+            reportAnalysisFailure(generation, "无法创建缩略图缓存: " + e.getMessage());
+        }
+    }
+
+    // 损坏的文件常常让帧索引、波形等几项分析一起失败，合并到同一个对话框中，不逐个弹出。
+    // 不等待对话框关闭，其余分析的结果照常应用
+    private void reportAnalysisFailure(long generation, String message) {
+        if (generation != videoGeneration) {
+            return;
+        }
+        if (analysisAlert != null && analysisAlert.isShowing() && generation == analysisAlertGeneration) {
+            analysisAlert.setContentText(analysisAlert.getContentText() + "\n" + message);
+            return;
+        }
+        Alert alert = new Alert(AlertType.ERROR);
+        alert.setTitle("视频分析失败");
+        alert.setHeaderText("以下功能对这个视频不可用，播放和编辑不受影响");
+        alert.setContentText(message);
+        analysisAlert = alert;
+        analysisAlertGeneration = generation;
+        alert.show();
+    }
+
+    // 在滑块上方显示鼠标位置的缩略图，只读缓存，不经过播放器；还没生成时只显示时间
+    private void showThumbnail(double x) {
+        ThumbnailCache cache = thumbnails;
+        double duration = videoPlayer == null ? 0 : videoPlayer.getDuration();
+        if (cache == null || duration <= 0 || timeSlider.getWidth() <= 0) {
+            thumbnailPopup.hide();
+            return;
+        }
+        thumbnailHoverX = x;
+        double fraction = Math.max(0, Math.min(1, x / timeSlider.getWidth()));
+        int millis = SubtitleTime.fromSeconds(duration * fraction);
+        ThumbnailCache.Thumbnail thumbnail = cache.get(millis);
+        if (thumbnail != shownThumbnail) {
+            shownThumbnail = thumbnail;
+            thumbnailView.setImage(thumbnail == null ? null : toImage(thumbnail));
+        }
+        thumbnailLabel.setText(String.format("%s%n缓存命中 %.0f%%，内存 %.1f / %.0f MB",
+            SubtitleTime.format(millis), cache.getHitRate() * 100,
+            cache.getMemoryBytes() / 1048576.0, cache.getBudgetBytes() / 1048576.0));
+        Point2D anchor = timeSlider.localToScreen(x, 0);
+        if (anchor != null) {
+            thumbnailPopup.show(timeSlider, anchor.getX() - thumbnailBox.getWidth() / 2, anchor.getY() - 4);
+        }
+    }
+
+    private static WritableImage toImage(ThumbnailCache.Thumbnail thumbnail) {
+        WritableImage image = new WritableImage(thumbnail.getWidth(), thumbnail.getHeight());
+        image.getPixelWriter().setPixels(0, 0, thumbnail.getWidth(), thumbnail.getHeight(),
+            PixelFormat.getByteRgbInstance(), thumbnail.getRgb(), 0, thumbnail.getWidth() * 3);
+        return image;
+    }
+
+    // 打点用的时间：有帧索引时对齐到当前显示的那一帧，
+    // 附近（吸附范围以内）有镜头切换时直接使用切换处第一帧的时间
+    private int currentStampMillis() {
+        int millis = SubtitleTime.fromSeconds(videoPlayer.getCurrentTime());
+        FrameIndex index = frameIndex;
+        if (index != null) {
+            millis = index.snapToFrame(millis);
+        }
+        SceneCuts cuts = sceneCuts;
+        int window = sceneSnapWindowMillis();
+        if (cuts != null && window > 0) {
+            int cut = cuts.nearestCut(millis, window);
+            if (cut >= 0) {
+                return cut;
+            }
+        }
+        return millis;
+    }
+
+    // 菜单中选择的吸附范围，0 表示不吸附
+    private int sceneSnapWindowMillis() {
+        Toggle selected = sceneSnapGroup == null ? null : sceneSnapGroup.getSelectedToggle();
+        return selected == null ? 0 : Integer.parseInt(selected.getUserData().toString());
+    }
+
+    // 跳转到最接近 seconds 的帧
+    private void seekToFrame(double seconds) {
+        forgetSteppedFrame();
+        FrameIndex index = frameIndex;
+        if (index != null) {
+            seconds = SubtitleTime.toSeconds(index.snapToNearestFrame(SubtitleTime.fromSeconds(seconds)));
+        }
+        videoPlayer.seek(seconds);
+    }
+
+    // 把字幕副本的时间对齐到最近的帧边界
+    private void snapToFrames(List<Subtitle> cues) {
+        FrameIndex index = frameIndex;
+        if (index == null || snapExportToFrames == null || !snapExportToFrames.isSelected()) {
+            return;
+        }
+        for (Subtitle cue : cues) {
+            cue.setStartMillis(index.snapToNearestFrame(cue.getStartMillis()));
+            cue.setEndMillis(index.snapToNearestFrame(cue.getEndMillis()));
+        }
+    }
+
+    @FXML
+    private void stepForwardFrame() {
+        stepFrame(1);
+    }
+
+    @FXML
+    private void stepBackwardFrame() {
+        stepFrame(-1);
+    }
+
+    // 暂停并按帧索引前后移动一帧；连续按键时以上一次跳转的目标为起点，
+    // 不再从 VLC 报告的时间反推当前帧
+    private void stepFrame(int delta) {
+        FrameIndex index = frameIndex;
+        if (videoPlayer == null || index == null || index.size() == 0) {
+            return;
+        }
+        boolean continuing = steppedFrame >= 0 && steppedIndex == index && !videoPlayer.isPlaying();
+        videoPlayer.pause();
+        int frame = continuing ? steppedFrame : index.frameAt(SubtitleTime.fromSeconds(videoPlayer.getCurrentTime()));
+        int target = Math.max(Math.min(frame + delta, index.size() - 1), 0);
+        steppedFrame = target;
+        steppedIndex = index;
+        videoPlayer.seek(index.getFrameSeconds(target));
+    }
+
+    // 开始播放或跳转到别处后，下一次逐帧移动重新从当前位置算起
+    private void forgetSteppedFrame() {
+        steppedFrame = -1;
+    }
+
     @FXML
     public void togglePlay() {
         if (videoPlayer == null) return;
@@ -428,6 +759,7 @@ public class MainViewController {
         if (videoPlayer.isPlaying()) {
             videoPlayer.pause();
         } else {
+            forgetSteppedFrame();
             videoPlayer.play();
         }
     }
@@ -435,37 +767,72 @@ public class MainViewController {
     @FXML
     private void exportSubtitles() {
         FileChooser fileChooser = new FileChooser();
-        fileChooser.getExtensionFilters().add(
-            new FileChooser.ExtensionFilter("SRT字幕", "*.srt")
-        );
-        File file = fileChooser.showSaveDialog(null);
-        if (file != null) {
-            try {
-                StringBuilder srt = new StringBuilder();
-                int index = 1;
-                for (Subtitle subtitle : subtitles) {
-                    // 检查时间戳是否有效
-                    if (subtitle.getStartTime() == null || subtitle.getEndTime() == null ||
-                        subtitle.getStartTime().isEmpty() || subtitle.getEndTime().isEmpty()) {
-                        showError("导出失败", "第 " + index + " 条字幕的时间戳不完整");
-                        return;
-                    }
+        Map<FileChooser.ExtensionFilter, SubtitleFormat> filters = addFormatFilters(fileChooser);
+        File chosen = fileChooser.showSaveDialog(null);
+        if (chosen != null) {
+            // 文件名里的扩展名优先，没有写扩展名时按选中的类型补上
+            SubtitleFormat format = SubtitleFormats.forPath(chosen.toPath());
+            File file = chosen;
+            if (format == null) {
+                format = filters.getOrDefault(fileChooser.getSelectedExtensionFilter(), SubtitleFormats.SRT);
+                file = new File(chosen.getPath() + "." + format.getExtensions().get(0));
+            }
+            SubtitleFormat targetFormat = format;
+            File target = file;
+            document.flush();
+            List<Subtitle> cues = SubtitleExporter.snapshot(subtitles);
+            snapToFrames(cues);
+
+            // 一次检查全部字幕，汇总所有问题
+            List<SubtitleExporter.Issue> issues = SubtitleExporter.validate(cues, targetFormat.requiresEndTime());
+            if (SubtitleExporter.hasFatal(issues)) {
+                showIssues(AlertType.ERROR, "导出失败", "以下字幕的时间戳有误，请修正后再导出", issues);
+                return;
+            }
+            if (!issues.isEmpty() && !showIssues(AlertType.CONFIRMATION, "导出字幕",
+                    "以下字幕的时间顺序可能有问题，是否继续导出？", issues)) {
+                return;
+            }
 
-                    srt.append(index++).append("\n");
-                    srt.append(subtitle.getStartTime())
-                       .append(" --> ")
-                       .append(subtitle.getEndTime())
-                       .append("\n");
-                    srt.append(subtitle.getContent().trim()).append("\n\n");
+            showIoProgress();
+            Thread exportThread = new Thread(() -> {
+                try {
+                    SubtitleExporter.write(cues, target.toPath(), targetFormat, this::updateIoProgress);
+                    FxQueueMonitor.runLater(() -> {
+                        hideIoProgress();
+                        showInfo("导出成功", "字幕已成功导出为" + targetFormat.getName());
+                    });
+                } catch (Exception e) {
+                    FxQueueMonitor.runLater(() -> {
+                        hideIoProgress();
+                        showError("导出失败", "无法导出字幕文件: " + e.getMessage());
+                    });
                 }
-                Files.write(file.toPath(), srt.toString().getBytes("UTF-8"));
-                showInfo("导出成功", "字幕已成功导出为SRT格式");
-            } catch (Exception e) {
-                showError("导出失败", "无法导出字幕文件: " + e.getMessage());
-            }
+            }, "subtitle-export");
+            exportThread.setDaemon(true);
+            exportThread.start();
         }
     }
 
+    // 显示检查出的问题列表，确认对话框中用户选择继续时返回 true
+    private boolean showIssues(AlertType type, String title, String header, List<SubtitleExporter.Issue> issues) {
+        StringBuilder details = new StringBuilder();
+        for (SubtitleExporter.Issue issue : issues) {
+            details.append(issue).append("\n");
+        }
+        TextArea detailArea = new TextArea(details.toString());
+        detailArea.setEditable(false);
+        detailArea.setPrefRowCount(12);
+
+        Alert alert = new Alert(type);
+        alert.setTitle(title);
+        alert.setHeaderText(header);
+        alert.setContentText("共 " + issues.size() + " 处问题");
+        alert.getDialogPane().setExpandableContent(detailArea);
+        alert.getDialogPane().setExpanded(true);
+        return alert.showAndWait().filter(response -> response == ButtonType.OK).isPresent();
+    }
+
     @FXML
     private void encodeVideo() {
         if (currentVideoFile == null) {
@@ -509,6 +876,34 @@ public class MainViewController {
         codecBox.getItems().addAll("H.264", "H.265");
         codecBox.setValue("H.264");
 
+        // 排队优先级
+        ComboBox<String> priorityBox = new ComboBox<>();
+        priorityBox.getItems().addAll("高", "普通", "低");
+        priorityBox.setValue("普通");
+
+        // 分段并行编码，默认每段约占 4 个核心
+        CheckBox parallelBox = new CheckBox("分段并行编码");
+        int cores = Runtime.getRuntime().availableProcessors();
+        Spinner<Integer> segmentSpinner = new Spinner<>(2, 64, Math.min(Math.max(cores / 4, 2), 16));
+        segmentSpinner.disableProperty().bind(parallelBox.selectedProperty().not());
+
+        // 烧录字幕及样式
+        CheckBox burnInBox = new CheckBox("将当前字幕烧录到画面");
+        ComboBox<String> fontBox = new ComboBox<>(FXCollections.observableArrayList(Font.getFamilies()));
+        fontBox.setEditable(true);
+        fontBox.setValue("Microsoft YaHei");
+        Spinner<Integer> fontSizeSpinner = new Spinner<>(12, 200, 48);
+        fontSizeSpinner.setEditable(true);
+        ColorPicker textColorPicker = new ColorPicker(Color.WHITE);
+        ColorPicker outlineColorPicker = new ColorPicker(Color.BLACK);
+        Spinner<Integer> outlineSpinner = new Spinner<>(0, 10, 2);
+        Spinner<Integer> marginSpinner = new Spinner<>(0, 500, 40);
+        CheckBox boldBox = new CheckBox("粗体");
+        for (Control control : List.of(fontBox, fontSizeSpinner, textColorPicker, outlineColorPicker,
+                outlineSpinner, marginSpinner, boldBox)) {
+            control.disableProperty().bind(burnInBox.selectedProperty().not());
+        }
+
         // 添加控件到表单
         grid.add(new Label("码率(kbps):"), 0, 0);
         grid.add(bitrateField, 1, 0);
@@ -516,6 +911,24 @@ public class MainViewController {
         grid.add(hwaccelBox, 1, 1);
         grid.add(new Label("编码格式:"), 0, 2);
         grid.add(codecBox, 1, 2);
+        grid.add(new Label("优先级:"), 0, 3);
+        grid.add(priorityBox, 1, 3);
+        grid.add(parallelBox, 0, 4);
+        grid.add(segmentSpinner, 1, 4);
+        grid.add(burnInBox, 0, 5, 2, 1);
+        grid.add(new Label("字体:"), 0, 6);
+        grid.add(fontBox, 1, 6);
+        grid.add(new Label("字号:"), 0, 7);
+        grid.add(fontSizeSpinner, 1, 7);
+        grid.add(boldBox, 1, 8);
+        grid.add(new Label("文字颜色:"), 0, 9);
+        grid.add(textColorPicker, 1, 9);
+        grid.add(new Label("描边颜色:"), 0, 10);
+        grid.add(outlineColorPicker, 1, 10);
+        grid.add(new Label("描边宽度:"), 0, 11);
+        grid.add(outlineSpinner, 1, 11);
+        grid.add(new Label("底部边距:"), 0, 12);
+        grid.add(marginSpinner, 1, 12);
 
         dialog.getDialogPane().setContent(grid);
 
@@ -526,6 +939,7 @@ public class MainViewController {
                 settings.put("bitrate", bitrateField.getText());
                 settings.put("hwaccel", hwaccelBox.getValue());
                 settings.put("codec", codecBox.getValue());
+                settings.put("priority", priorityBox.getValue());
                 return settings;
             }
             return null;
@@ -560,63 +974,47 @@ public class MainViewController {
             }
 
             String bitrate = settings.get("bitrate");
+            int priority = "高".equals(settings.get("priority")) ? 1 : "低".equals(settings.get("priority")) ? -1 : 0;
+
+            // 烧录字幕时先检查时间戳，和导出字幕的要求相同
+            SubtitleBurnIn burnIn = null;
+            if (burnInBox.isSelected()) {
+                List<Subtitle> cues = checkedSubtitleSnapshot("烧录字幕");
+                if (cues == null) {
+                    return;
+                }
+                AssFormat.Style style = new AssFormat.Style()
+                    .setFontName(fontBox.getValue())
+                    .setFontSize(fontSizeSpinner.getValue())
+                    .setBold(boldBox.isSelected())
+                    .setPrimaryColour(toRgb(textColorPicker.getValue()))
+                    .setOutlineColour(toRgb(outlineColorPicker.getValue()))
+                    .setOutline(outlineSpinner.getValue())
+                    .setMarginV(marginSpinner.getValue());
+                burnIn = new SubtitleBurnIn(cues, style);
+            }
+
+            int segments = parallelBox.isSelected() ? segmentSpinner.getValue() : 1;
 
             // 添加编码任务
-            addEncodingTask(outputPath, encoder, bitrate);
+            addEncodingTask(outputPath, encoder, bitrate, priority, burnIn, segments);
         });
     }
 
     @FXML
     private void updateSubtitles() {
-        // 保存当前状态
-        saveCurrentState();
-
-        String[] lines = subtitleInput.getText().split("\n");
-
-        // 创建新的字幕列表
-        ObservableList<Subtitle> newSubtitles = FXCollections.observableArrayList();
-
-        // 获取当前选中的行
-        int selectedIndex = subtitleTable.getSelectionModel().getSelectedIndex();
-
-        // 处理每一行
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i].trim();
-            if (!line.isEmpty()) {
-                Subtitle subtitle = new Subtitle(line);
-
-                // 如果行号在现有字幕范围内，复用时间信息
-                if (i < subtitles.size()) {
-                    Subtitle existing = subtitles.get(i);
-                    subtitle.setStartTime(existing.getStartTime());
-                    subtitle.setEndTime(existing.getEndTime());
-                }
-
-                newSubtitles.add(subtitle);
-            }
-        }
-
-        // 更新字幕列表
-        subtitles.clear();
-        subtitles.addAll(newSubtitles);
-
-        // 恢复选中状态
-        if (selectedIndex >= 0 && selectedIndex < subtitles.size()) {
-            subtitleTable.getSelectionModel().select(selectedIndex);
-        }
+        // 防抖后在后台只重新解析发生变化的行
+        document.submit(subtitleInput.getText());
     }
 
     @FXML
     private void setStartTime() {
         if (videoPlayer == null) return;
+        document.flush();
         Subtitle selected = subtitleTable.getSelectionModel().getSelectedItem();
         if (selected != null) {
-            // 保存当前状态
-            saveCurrentState();
-
-            double currentTime = videoPlayer.getCurrentTime();
-            String timeStr = formatTimeWithMillis(currentTime);
-            selected.setStartTime(timeStr);
+            selected.setStartMillis(currentStampMillis());
+            cueIndex.update(selected);
             // 更新文本区域
             updateTextAreaFromSubtitles();
             // 强制更新表格显示
@@ -627,14 +1025,11 @@ public class MainViewController {
     @FXML
     private void setEndTime() {
         if (videoPlayer == null) return;
+        document.flush();
         Subtitle selected = subtitleTable.getSelectionModel().getSelectedItem();
         if (selected != null) {
-            // 保存当前状态
-            saveCurrentState();
-
-            double currentTime = videoPlayer.getCurrentTime();
-            String timeStr = formatTimeWithMillis(currentTime);
-            selected.setEndTime(timeStr);
+            selected.setEndMillis(currentStampMillis());
+            cueIndex.update(selected);
             // 更新文本区域
             updateTextAreaFromSubtitles();
             // 强制更新表格显示
@@ -642,79 +1037,169 @@ public class MainViewController {
         }
     }
 
+    // 检测视频中的语音片段，为没有时间的字幕自动打轴，整体作为一步撤销
     @FXML
-    private void importSrtSubtitles() {
-        FileChooser fileChooser = new FileChooser();
-        fileChooser.getExtensionFilters().add(
-            new FileChooser.ExtensionFilter("SRT字幕", "*.srt")
-        );
-        File file = fileChooser.showOpenDialog(null);
-        if (file != null) {
+    private void autoTimeSubtitles() {
+        if (currentVideoFile == null) {
+            showError("错误", "请先打开视频文件");
+            return;
+        }
+        File file = currentVideoFile;
+        long generation = videoGeneration;
+        cancelAutoTiming();
+        showIoProgress();
+        Thread timingThread = new Thread(() -> {
+            Thread self = Thread.currentThread();
             try {
-                List<String> lines = Files.readAllLines(file.toPath());
-                subtitles.clear();
-
-                StringBuilder content = new StringBuilder();
-                String startTime = null;
-                String endTime = null;
-                boolean isReadingContent = false;
-
-                for (String line : lines) {
-                    line = line.trim();
-
-                    if (line.isEmpty()) {
-                        if (content.length() > 0) {
-                            // 处理一个完整的字幕块
-                            String subtitleText = content.toString().trim();
-                            Subtitle subtitle = new Subtitle(subtitleText);
-                            if (startTime != null) {
-                                subtitle.setStartTime(convertSrtTimeToNormal(startTime));
-                            }
-                            if (endTime != null) {
-                                subtitle.setEndTime(convertSrtTimeToNormal(endTime));
-                            }
-                            subtitles.add(subtitle);
-
-                            // 重置状态
-                            content.setLength(0);
-                            startTime = null;
-                            endTime = null;
-                            isReadingContent = false;
-                        }
-                    } else if (line.contains("-->")) {
-                        String[] times = line.split("-->");
-                        startTime = times[0].trim();
-                        endTime = times[1].trim();
-                        isReadingContent = true;
-                    } else if (isReadingContent) {
-                        if (content.length() > 0) {
-                            content.append("\n");
-                        }
-                        content.append(line);
+                SpeechDetector.Result result = SpeechDetector.detect(file.toPath(), self::isInterrupted, this::updateIoProgress);
+                FxQueueMonitor.runLater(() -> {
+                    // 已被取消或被新的一次打轴取代，进度条归后来者管理
+                    if (autoTimingThread != self) {
+                        return;
                     }
-                    // 完全忽略序号行
-                }
-
-                // 处理最后一条字幕（如果有的话）
-                if (content.length() > 0) {
-                    String subtitleText = content.toString().trim();
-                    Subtitle subtitle = new Subtitle(subtitleText);
-                    if (startTime != null) {
-                        subtitle.setStartTime(convertSrtTimeToNormal(startTime));
+                    autoTimingThread = null;
+                    hideIoProgress();
+                    if (result != null && generation == videoGeneration) {
+                        applyAutoTiming(result);
                     }
-                    if (endTime != null) {
-                        subtitle.setEndTime(convertSrtTimeToNormal(endTime));
+                });
+            } catch (InterruptedException e) {
+                // 被 cancelAutoTiming 中断，进度条已经隐藏
+            } catch (Exception e) {
+                FxQueueMonitor.runLater(() -> {
+                    if (autoTimingThread != self) {
+                        return;
                     }
-                    subtitles.add(subtitle);
+                    autoTimingThread = null;
+                    hideIoProgress();
+                    showError("自动打轴失败", e.getMessage());
+                });
+            }
+        }, "auto-timing");
+        timingThread.setDaemon(true);
+        autoTimingThread = timingThread;
+        timingThread.start();
+    }
+
+    // 中断正在进行的语音检测，检测线程在下一次检查时放弃并返回
+    private void cancelAutoTiming() {
+        if (autoTimingThread != null) {
+            autoTimingThread.interrupt();
+            autoTimingThread = null;
+            hideIoProgress();
+        }
+    }
+
+    // 在 FX 线程中按当前的字幕列表分配时间，分析期间的编辑不会被覆盖
+    private void applyAutoTiming(SpeechDetector.Result result) {
+        document.flush();
+        int durationMillis = SubtitleTime.fromSeconds(videoPlayer.getDuration());
+        int assigned = AutoTimer.assign(subtitles, result.getSegments(), new AutoTimer.Rules(), durationMillis);
+        if (assigned > 0) {
+            cueIndex.rebuild();
+            updateTextAreaFromSubtitles();
+            subtitleTable.refresh();
+        }
+        showInfo("自动打轴", String.format("为 %d 条字幕设置了时间，共检测到 %d 段语音。%n"
+                + "分析 %.1f 分钟音频用时 %.1f 秒，约为实时的 %.0f 倍（%d 个线程）。",
+            assigned, result.getSegments().size(), result.getAudioMillis() / 60000.0,
+            result.getElapsedSeconds(), result.getRealtimeFactor(), result.getThreads()));
+    }
+
+    @FXML
+    private void importSubtitles() {
+        FileChooser fileChooser = new FileChooser();
+        addFormatFilters(fileChooser);
+        File file = fileChooser.showOpenDialog(null);
+        if (file != null) {
+            SubtitleFormat format = SubtitleFormats.forPath(file.toPath());
+            if (format == null) {
+                showError("导入失败", "不支持的字幕格式: " + file.getName());
+                return;
+            }
+            showIoProgress();
+            // 在后台线程流式读取和解析，完成后一次性替换字幕列表
+            Thread importThread = new Thread(() -> {
+                try {
+                    List<Subtitle> imported = SubtitleImporter.read(file.toPath(), format, this::updateIoProgress);
+                    FxQueueMonitor.runLater(() -> {
+                        hideIoProgress();
+                        // 读取期间的输入先同步到字幕列表，撤销导入时恢复到这份内容。
+                        // 新旧文本合计超出撤销日志预算时这一步连同之前的记录一起丢弃，导入后不能撤销
+                        document.flush();
+                        subtitles.setAll(imported);
+                        updateTextAreaFromSubtitles();
+                    });
+                } catch (Exception e) {
+                    FxQueueMonitor.runLater(() -> {
+                        hideIoProgress();
+                        showError("导入失败", "无法导入" + format.getName() + ": " + e.getMessage());
+                    });
                 }
+            }, "subtitle-import");
+            importThread.setDaemon(true);
+            importThread.start();
+        }
+    }
 
-                // 更新左侧文本区域
-                updateTextAreaFromSubtitles();
+    // 不经过编辑器，直接把一个字幕文件转换为另一种格式
+    @FXML
+    private void convertSubtitleFile() {
+        FileChooser openChooser = new FileChooser();
+        openChooser.setTitle("选择要转换的字幕文件");
+        addFormatFilters(openChooser);
+        File source = openChooser.showOpenDialog(null);
+        if (source == null) {
+            return;
+        }
+        FileChooser saveChooser = new FileChooser();
+        saveChooser.setTitle("转换为");
+        saveChooser.setInitialDirectory(source.getParentFile());
+        addFormatFilters(saveChooser);
+        File target = saveChooser.showSaveDialog(null);
+        if (target == null) {
+            return;
+        }
+        if (SubtitleFormats.forPath(source.toPath()) == null || SubtitleFormats.forPath(target.toPath()) == null) {
+            showError("转换失败", "请使用支持的字幕扩展名");
+            return;
+        }
 
+        showIoProgress();
+        Thread convertThread = new Thread(() -> {
+            try {
+                SubtitleExporter.convert(source.toPath(), target.toPath(), this::updateIoProgress);
+                FxQueueMonitor.runLater(() -> {
+                    hideIoProgress();
+                    showInfo("转换成功", "字幕已转换为 " + target.getName());
+                });
             } catch (Exception e) {
-                showError("导入失败", "无法导入SRT字幕: " + e.getMessage());
+                FxQueueMonitor.runLater(() -> {
+                    hideIoProgress();
+                    showError("转换失败", "无法转换字幕文件: " + e.getMessage());
+                });
+            }
+        }, "subtitle-convert");
+        convertThread.setDaemon(true);
+        convertThread.start();
+    }
+
+    // 为每种字幕格式添加一个文件类型，返回类型与格式的对应关系
+    private Map<FileChooser.ExtensionFilter, SubtitleFormat> addFormatFilters(FileChooser fileChooser) {
+        Map<FileChooser.ExtensionFilter, SubtitleFormat> filters = new HashMap<>();
+        List<String> allPatterns = new ArrayList<>();
+        for (SubtitleFormat format : SubtitleFormats.all()) {
+            List<String> patterns = new ArrayList<>();
+            for (String extension : format.getExtensions()) {
+                patterns.add("*." + extension);
             }
+            allPatterns.addAll(patterns);
+            FileChooser.ExtensionFilter filter = new FileChooser.ExtensionFilter(format.getName(), patterns);
+            filters.put(filter, format);
+            fileChooser.getExtensionFilters().add(filter);
         }
+        fileChooser.getExtensionFilters().add(0, new FileChooser.ExtensionFilter("所有字幕", allPatterns));
+        return filters;
     }
 
     @FXML
@@ -727,7 +1212,9 @@ public class MainViewController {
         if (file != null) {
             try {
                 String content = Files.readString(file.toPath());
+                journal.breakCoalescing();
                 subtitleInput.setText(content);
+                journal.breakCoalescing();
                 updateSubtitles();
             } catch (Exception e) {
                 showError("导入失败", "无法导入文本文件: " + e.getMessage());
@@ -743,9 +1230,20 @@ public class MainViewController {
         subtitleInput.setText(text.toString());
     }
 
-    private String convertSrtTimeToNormal(String srtTime) {
-        // 保持SRT格式不变，不再截断毫秒部分
-        return srtTime;
+    private void showIoProgress() {
+        ioProgressBar.setProgress(0);
+        ioProgressBar.setVisible(true);
+        ioProgressBar.setManaged(true);
+    }
+
+    // 可在任意线程调用
+    private void updateIoProgress(double progress) {
+        FxQueueMonitor.runLater(() -> ioProgressBar.setProgress(progress));
+    }
+
+    private void hideIoProgress() {
+        ioProgressBar.setVisible(false);
+        ioProgressBar.setManaged(false);
     }
 
     private void showError(String title, String content) {
@@ -762,12 +1260,14 @@ public class MainViewController {
         alert.showAndWait();
     }
 
-    private String formatTimeWithMillis(double seconds) {
-        int hours = (int) (seconds / 3600);
-        int minutes = (int) ((seconds % 3600) / 60);
-        int secs = (int) (seconds % 60);
-        int millis = (int) ((seconds - Math.floor(seconds)) * 1000);
-        return String.format("%02d:%02d:%02d,%03d", hours, minutes, secs, millis);
+    // 时间标签每次播放回调都会更新，复用同一个 StringBuilder
+    private final StringBuilder timeLabelBuilder = new StringBuilder(32);
+
+    private void updateTimeLabel(double currentSeconds, double durationSeconds) {
+        timeLabelBuilder.setLength(0);
+        SubtitleTime.append(timeLabelBuilder, SubtitleTime.fromSeconds(currentSeconds)).append(" / ");
+        SubtitleTime.append(timeLabelBuilder, SubtitleTime.fromSeconds(durationSeconds));
+        timeLabel.setText(timeLabelBuilder.toString());
     }
 
     @FXML
@@ -790,6 +1290,7 @@ public class MainViewController {
 
     @FXML
     private void insertRowAbove() {
+        document.flush();
         int selectedIndex = subtitleTable.getSelectionModel().getSelectedIndex();
         if (selectedIndex >= 0) {
             Subtitle newSubtitle = new Subtitle("[在此输入字幕文本]");
@@ -801,6 +1302,7 @@ public class MainViewController {
 
     @FXML
     private void insertRowBelow() {
+        document.flush();
         int selectedIndex = subtitleTable.getSelectionModel().getSelectedIndex();
         if (selectedIndex >= 0) {
             Subtitle newSubtitle = new Subtitle("");
@@ -812,6 +1314,7 @@ public class MainViewController {
 
     @FXML
     private void deleteCurrentRow() {
+        document.flush();
         int selectedIndex = subtitleTable.getSelectionModel().getSelectedIndex();
         if (selectedIndex >= 0) {
             subtitles.remove(selectedIndex);
@@ -826,6 +1329,7 @@ public class MainViewController {
 
     @FXML
     private void deleteRowsBelow() {
+        document.flush();
         int selectedIndex = subtitleTable.getSelectionModel().getSelectedIndex();
         if (selectedIndex >= 0 && selectedIndex < subtitles.size() - 1) {
             subtitles.remove(selectedIndex + 1, subtitles.size());
@@ -834,16 +1338,27 @@ public class MainViewController {
         }
     }
 
-    // 更新左侧文本区域的内容
+    // 更新左侧文本区域的内容，变化作为一步记录到撤销日志（导入整个文件也只占一步）
     private void updateTextAreaFromSubtitles() {
         StringBuilder text = new StringBuilder();
         for (Subtitle subtitle : subtitles) {
-            text.append(subtitle.toRawText()).append("\n");
+            subtitle.appendRawText(text).append("\n");
         }
-        // 阻止触发updateSubtitles
+        String oldText = subtitleInput.getText();
+        String newText = text.toString();
+        EditJournal.Edit edit = EditJournal.diff(oldText, newText);
+        if (edit == null) {
+            return;
+        }
+        // 作为独立的一步记录到撤销日志
+        journal.breakCoalescing();
+        journal.record(oldText, newText, false);
+
+        // 只替换变化的部分，并阻止触发updateSubtitles
         subtitleInput.textProperty().removeListener(textChangeListener);
-        subtitleInput.setText(text.toString());
+        subtitleInput.replaceText(edit.offset, edit.offset + edit.removeLength, edit.insert);
         subtitleInput.textProperty().addListener(textChangeListener);
+        document.reset(newText);
     }
 
     // 添加文本变化监听器作为字段
@@ -855,7 +1370,7 @@ public class MainViewController {
         if (videoPlayer != null) {
             double newTime = Math.min(videoPlayer.getCurrentTime() + 1.0,
                                     videoPlayer.getDuration());
-            videoPlayer.seek(newTime);
+            seekToFrame(newTime);
         }
     }
 
@@ -864,7 +1379,7 @@ public class MainViewController {
         if (videoPlayer != null) {
             double newTime = Math.min(videoPlayer.getCurrentTime() + 0.5,
                                     videoPlayer.getDuration());
-            videoPlayer.seek(newTime);
+            seekToFrame(newTime);
         }
     }
 
@@ -872,7 +1387,7 @@ public class MainViewController {
     private void seekBackward1s() {
         if (videoPlayer != null) {
             double newTime = Math.max(videoPlayer.getCurrentTime() - 1.0, 0);
-            videoPlayer.seek(newTime);
+            seekToFrame(newTime);
         }
     }
 
@@ -880,7 +1395,7 @@ public class MainViewController {
     private void seekBackward05s() {
         if (videoPlayer != null) {
             double newTime = Math.max(videoPlayer.getCurrentTime() - 0.5, 0);
-            videoPlayer.seek(newTime);
+            seekToFrame(newTime);
         }
     }
 
@@ -889,7 +1404,7 @@ public class MainViewController {
         if (videoPlayer != null) {
             double newTime = Math.min(videoPlayer.getCurrentTime() + 5.0,
                                     videoPlayer.getDuration());
-            videoPlayer.seek(newTime);
+            seekToFrame(newTime);
         }
     }
 
@@ -897,7 +1412,7 @@ public class MainViewController {
     private void seekBackward5s() {
         if (videoPlayer != null) {
             double newTime = Math.max(videoPlayer.getCurrentTime() - 5.0, 0);
-            videoPlayer.seek(newTime);
+            seekToFrame(newTime);
         }
     }
 
@@ -935,7 +1450,7 @@ public class MainViewController {
 
             // 开始时间列
             TableColumn<EncodingTask, String> startTimeCol = new TableColumn<>("开始时间");
-            startTimeCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().getStartTime()));
+            startTimeCol.setCellValueFactory(data -> data.getValue().startTimeProperty());
             startTimeCol.setPrefWidth(80);
 
             // 源文件列
@@ -953,52 +1468,36 @@ public class MainViewController {
 
             // 状态列（包含进度）
             TableColumn<EncodingTask, String> statusCol = new TableColumn<>("状态");
-            statusCol.setCellValueFactory(data -> {
-                EncodingTask task = data.getValue();
-                return new SimpleStringProperty() {
-                    {
-                        // 初始绑定
-                        setValue(getStatusText(task));
-
-                        // 监听状态和进度变化
-                        task.statusProperty().addListener((obs, old, newVal) ->
-                            setValue(getStatusText(task)));
-                        task.progressProperty().addListener((obs, old, newVal) ->
-                            setValue(getStatusText(task)));
-                    }
-                };
-            });
+            statusCol.setCellValueFactory(data -> data.getValue().statusTextProperty());
             statusCol.setPrefWidth(150);
 
             // 完成时间列
             TableColumn<EncodingTask, String> endTimeCol = new TableColumn<>("完成时间");
-            endTimeCol.setCellValueFactory(data -> {
-                String endTime = data.getValue().getEndTime();
-                return new SimpleStringProperty(endTime != null ? endTime : "");
-            });
+            endTimeCol.setCellValueFactory(data -> data.getValue().endTimeProperty());
             endTimeCol.setPrefWidth(80);
 
-            // 操作列
-            TableColumn<EncodingTask, Void> actionCol = new TableColumn<>("操作");
+            // 操作列，值为任务状态，状态变化时单元格自动更新
+            TableColumn<EncodingTask, String> actionCol = new TableColumn<>("操作");
+            actionCol.setCellValueFactory(data -> data.getValue().statusProperty());
             actionCol.setCellFactory(param -> new TableCell<>() {
                 private final Button cancelButton = new Button("取消");
                 {
                     cancelButton.setOnAction(event -> {
                         EncodingTask task = getTableView().getItems().get(getIndex());
-                        if ("正在编码".equals(task.getStatus())) {
-                            task.cancel();
+                        if (task.isActive()) {
+                            encodingScheduler.cancel(task);
                         }
                     });
                 }
 
                 @Override
-                protected void updateItem(Void item, boolean empty) {
-                    super.updateItem(item, empty);
-                    if (empty) {
+                protected void updateItem(String status, boolean empty) {
+                    super.updateItem(status, empty);
+                    if (empty || getIndex() < 0 || getIndex() >= getTableView().getItems().size()) {
                         setGraphic(null);
                     } else {
                         EncodingTask task = getTableView().getItems().get(getIndex());
-                        if ("正在编码".equals(task.getStatus())) {
+                        if (task.isActive()) {
                             setGraphic(cancelButton);
                         } else {
                             setGraphic(null);
@@ -1029,12 +1528,44 @@ public class MainViewController {
                     openFileDirectory(selectedTask.getFilename());
                 }
             });
-            contextMenu.getItems().addAll(clearItem, openFolderItem);
+            MenuItem moveUpItem = new MenuItem("排队提前");
+            moveUpItem.setOnAction(e -> {
+                EncodingTask selectedTask = taskTable.getSelectionModel().getSelectedItem();
+                if (selectedTask != null && encodingScheduler.moveUp(selectedTask)) {
+                    syncQueueOrder(selectedTask);
+                }
+            });
+            MenuItem moveDownItem = new MenuItem("排队延后");
+            moveDownItem.setOnAction(e -> {
+                EncodingTask selectedTask = taskTable.getSelectionModel().getSelectedItem();
+                if (selectedTask != null && encodingScheduler.moveDown(selectedTask)) {
+                    syncQueueOrder(selectedTask);
+                }
+            });
+            MenuItem cancelItem = new MenuItem("取消任务");
+            cancelItem.setOnAction(e -> {
+                EncodingTask selectedTask = taskTable.getSelectionModel().getSelectedItem();
+                if (selectedTask != null && selectedTask.isActive()) {
+                    encodingScheduler.cancel(selectedTask);
+                }
+            });
+            MenuItem concurrencyItem = new MenuItem("并发设置...");
+            concurrencyItem.setOnAction(e -> showConcurrencySettings());
+            contextMenu.setOnShowing(e -> {
+                EncodingTask selectedTask = taskTable.getSelectionModel().getSelectedItem();
+                boolean queued = selectedTask != null && encodingScheduler.isQueued(selectedTask);
+                moveUpItem.setDisable(!queued);
+                moveDownItem.setDisable(!queued);
+                cancelItem.setDisable(selectedTask == null || !selectedTask.isActive());
+            });
+            contextMenu.getItems().addAll(moveUpItem, moveDownItem, cancelItem, new SeparatorMenuItem(),
+                clearItem, openFolderItem, new SeparatorMenuItem(), concurrencyItem);
             taskTable.setContextMenu(contextMenu);
 
             VBox root = new VBox(10);
             root.setPadding(new Insets(10));
-            root.getChildren().add(taskTable);
+            root.getChildren().addAll(taskTable, fxQueueLabel);
+            updateFxQueueLabel();
 
             Scene scene = new Scene(root);
             taskWindow.setScene(scene);
@@ -1057,236 +1588,293 @@ public class MainViewController {
         }
     }
 
-    private void addEncodingTask(String filename, String encoder, String bitrate) {
-        EncodingTask task = new EncodingTask(filename);
-        Platform.runLater(() -> {
-            tasks.add(task);
-            int taskIndex = tasks.size() - 1;
-
-            // 如果窗口没显示，则显示窗口
-            if (taskWindow == null || !taskWindow.isShowing()) {
-                showEncodingTasks();
-            }
-
-            task.setStatus("正在编码");
-
-            // 获取视频总时长（毫秒）
-            long totalDurationMillis = (long)(videoPlayer.getDuration() * 1000);
-
-            Thread encodingThread = new Thread(() -> {
+    // burnIn 不为 null 时在同一次编码中把字幕烧录到画面；segments 大于 1 时分段并行编码
+    private void addEncodingTask(String filename, String encoder, String bitrate, int priority,
+                                 SubtitleBurnIn burnIn, int segments) {
+        // 获取视频总时长（毫秒）
+        long totalDurationMillis = (long)(videoPlayer.getDuration() * 1000);
+        String inputPath = currentVideoFile.getAbsolutePath();
+        List<String> videoOptions = List.of("-c:v", encoder, "-b:v", bitrate + "k");
+
+        EncodingScheduler.Job job;
+        if (segments > 1) {
+            // 硬件编码器的并发会话数有限，每段会话各占一个该家族的槽位，与其他任务共用同一上限
+            EncodingScheduler.EncoderFamily family = EncodingScheduler.EncoderFamily.of(encoder);
+            boolean software = family == EncodingScheduler.EncoderFamily.SOFTWARE;
+            int parallelism = software ? segments : Math.min(segments, encodingScheduler.getSlots(family));
+            ParallelEncoder parallelEncoder = new ParallelEncoder(inputPath, filename, videoOptions, burnIn,
+                segments, parallelism, totalDurationMillis, software,
+                software ? null : encodingScheduler.newSessions(family));
+            job = parallelEncoder::run;
+        } else {
+            job = t -> {
+                // 字幕文件在任务真正开始时才写出，排队期间不占用临时文件
+                Path assFile = burnIn != null ? burnIn.writeTempFile(0, -1) : null;
                 try {
                     // 构建 FFmpeg 命令
                     List<String> command = new ArrayList<>();
                     command.add("ffmpeg");
                     command.add("-i");
-                    command.add(currentVideoFile.getAbsolutePath());
-                    command.add("-c:v");
-                    command.add(encoder);
-                    command.add("-b:v");
-                    command.add(bitrate + "k");
+                    command.add(inputPath);
+                    if (assFile != null) {
+                        command.add("-vf");
+                        command.add(SubtitleBurnIn.filter(assFile));
+                    }
+                    command.addAll(videoOptions);
                     command.add("-c:a");
                     command.add("copy");
                     command.add("-y");
                     command.add(filename);
-
-                    // 创建进程
-                    ProcessBuilder processBuilder = new ProcessBuilder(command);
-                    processBuilder.redirectErrorStream(true);
-                    Process process = processBuilder.start();
-                    task.setFfmpegProcess(process);
-
-                    // 读取输出并更新进度
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            if (task.isCancelled()) {
-                                process.destroy();
-                                break;
-                            }
-
-                            // 解析进度信息
-                            if (line.contains("time=")) {
-                                try {
-                                    String timeStr = line.split("time=")[1].split(" ")[1];
-                                    String[] parts = timeStr.split(":");
-                                    long timeMillis = (long)((Long.parseLong(parts[0]) * 3600 +
-                                                     Long.parseLong(parts[1]) * 60 +
-                                                     Double.parseDouble(parts[2])) * 1000);
-
-                                    if (timeMillis > 0 && totalDurationMillis > 0) {
-                                        int percentage = (int) ((timeMillis * 100) / totalDurationMillis);
-                                        percentage = Math.min(percentage, 100);
-                                        int finalPercentage = percentage;
-                                        Platform.runLater(() -> {
-                                            task.setProgress(finalPercentage);
-                                            taskTable.refresh();
-                                        });
-                                    }
-                                } catch (Exception e) {
-                                    // 忽略解析错误
-                                }
-                            }
-                        }
+                    FfmpegRunner.run(t, command, totalDurationMillis);
+                } finally {
+                    if (assFile != null) {
+                        Files.deleteIfExists(assFile);
                     }
+                }
+            };
+        }
 
-                    // 等待编码完成
-                    int exitCode = process.waitFor();
+        enqueueEncodingTask(new EncodingTask(filename, encoder, priority), job);
+    }
 
-                    if (task.isCancelled()) {
-                        Platform.runLater(() -> {
-                            task.setStatus("已取消");
-                            task.setEndTime(LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss")));
-                        });
-                        return;
-                    }
+    // 加入任务列表并进入调度队列，轮到它并且编码器有空闲槽位时才开始执行
+    private void enqueueEncodingTask(EncodingTask task, EncodingScheduler.Job job) {
+        enqueueEncodingTask(task, job, true);
+    }
 
-                    if (exitCode == 0) {
-                        Platform.runLater(() -> {
-                            task.setStatus("编码完成");
-                            task.setProgress(100);
-                            task.setEndTime(LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss")));
-
-                            // 显示完成对话框
-                            Alert alert = new Alert(AlertType.INFORMATION,
-                                "视频编码已完成，是否打开输出目录？",
-                                ButtonType.YES, ButtonType.NO);
-                            alert.setTitle("编码完成");
-                            alert.showAndWait().ifPresent(response -> {
-                                if (response == ButtonType.YES) {
-                                    openFileDirectory(filename);
-                                }
-                            });
-                        });
-                    } else {
-                        throw new RuntimeException("FFmpeg process exited with code " + exitCode);
-                    }
-                } catch (Exception e) {
-                    if (!task.isCancelled()) {
-                        Platform.runLater(() -> {
-                            task.setStatus("编码失败");
-                            task.setErrorMessage(e.getMessage());
-                            task.setEndTime(LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss")));
-                            showError("编码失败", "视频编码失败: " + e.getMessage());
-                        });
-                    }
-                }
-            });
+    // showWindow 为 false 时不弹出任务窗口，用于代理这类后台任务
+    private void enqueueEncodingTask(EncodingTask task, EncodingScheduler.Job job, boolean showWindow) {
+        tasks.add(task);
+        syncQueueOrder(task);
 
-            task.setEncodingThread(encodingThread);
-            encodingThread.start();
-        });
+        // 如果窗口没显示，则显示窗口
+        if (showWindow && (taskWindow == null || !taskWindow.isShowing())) {
+            showEncodingTasks();
+        }
+
+        encodingScheduler.submit(task, job);
+        if (!progressPublisher.isRunning()) {
+            progressPublisher.start();
+        }
     }
 
-    // 添加辅助方法来生成状态文本
-    private String getStatusText(EncodingTask task) {
-        String status = task.getStatus();
-        if ("正在编码".equals(status)) {
-            return status + " (" + task.getProgress() + "%)";
+    // 用于编码的字幕副本：时间戳有误时提示并返回 null，顺序有问题时让用户确认
+    private List<Subtitle> checkedSubtitleSnapshot(String title) {
+        document.flush();
+        List<Subtitle> cues = SubtitleExporter.snapshot(subtitles);
+        snapToFrames(cues);
+        List<SubtitleExporter.Issue> issues = SubtitleExporter.validate(cues);
+        if (SubtitleExporter.hasFatal(issues)) {
+            showIssues(AlertType.ERROR, title, "以下字幕的时间戳有误，请修正后再编码", issues);
+            return null;
         }
-        if ("编码失败".equals(status) && task.getErrorMessage() != null) {
-            return status + " - " + task.getErrorMessage();
+        if (!issues.isEmpty() && !showIssues(AlertType.CONFIRMATION, title,
+                "以下字幕的时间顺序可能有问题，是否继续编码？", issues)) {
+            return null;
         }
-        return status;
+        return cues;
     }
 
+    // 不重新编码视频，只把当前字幕作为字幕轨道封装进新文件
     @FXML
-    private void undo() {
-        if (!undoStack.isEmpty()) {
-            isUndoing = true;
-            try {
-                SubtitleState previousState = undoStack.pop();
-
-                // 恢复文本内容
-                subtitleInput.setText(previousState.textContent);
-
-                // 恢复字幕列表
-                subtitles.clear();
-                for (SubtitleState.SubtitleData data : previousState.subtitleDataList) {
-                    Subtitle subtitle = new Subtitle(data.content);
-                    subtitle.setStartTime(data.startTime);
-                    subtitle.setEndTime(data.endTime);
-                    subtitles.add(subtitle);
-                }
-
-                // 刷新表格显示
-                subtitleTable.refresh();
-            } finally {
-                isUndoing = false;
-            }
+    private void remuxSubtitles() {
+        if (currentVideoFile == null) {
+            showError("错误", "请先打开视频文件");
+            return;
         }
-    }
 
-    private void updateSubtitlePreview(double currentTime) {
-        if (subtitles.isEmpty()) {
-            prevSubtitleLabel.setText("");
-            currentSubtitleLabel.setText("");
-            nextSubtitleLabel.setText("");
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("封装字幕轨道");
+        dialog.setHeaderText("视频和音频直接复制，不重新编码");
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20, 150, 10, 10));
+
+        ComboBox<SubtitleRemux.Track> trackBox = new ComboBox<>();
+        trackBox.getItems().addAll(SubtitleRemux.Track.values());
+        trackBox.setValue(SubtitleRemux.Track.MKV_SRT);
+        TextField languageField = new TextField("chi");
+        languageField.setPromptText("ISO 639-2 语言代码，如 chi、eng");
+        TextField titleField = new TextField("中文");
+
+        grid.add(new Label("容器 / 字幕格式:"), 0, 0);
+        grid.add(trackBox, 1, 0);
+        grid.add(new Label("语言:"), 0, 1);
+        grid.add(languageField, 1, 1);
+        grid.add(new Label("轨道标题:"), 0, 2);
+        grid.add(titleField, 1, 2);
+        dialog.getDialogPane().setContent(grid);
+
+        if (dialog.showAndWait().filter(response -> response == ButtonType.OK).isEmpty()) {
+            return;
+        }
+        List<Subtitle> cues = checkedSubtitleSnapshot("封装字幕轨道");
+        if (cues == null) {
             return;
         }
 
-        int currentIndex = -1;
-        int prevIndex = -1;
-        int nextIndex = -1;
+        SubtitleRemux.Track track = trackBox.getValue();
+        String name = currentVideoFile.getName();
+        int dot = name.lastIndexOf('.');
+        String baseName = dot > 0 ? name.substring(0, dot) : name;
+        String outputPath = new File(currentVideoFile.getParentFile(), baseName + "_subs." + track.getContainer()).getPath();
+        long totalDurationMillis = (long) (videoPlayer.getDuration() * 1000);
 
-        // 查找当前字幕
-        for (int i = 0; i < subtitles.size(); i++) {
-            Subtitle subtitle = subtitles.get(i);
-            if (isTimeInSubtitle(currentTime, subtitle)) {
-                currentIndex = i;
-                break;
-            } else if (getTimeInSeconds(subtitle.getStartTime()) > currentTime) {
-                nextIndex = i;
-                break;
+        SubtitleRemux remux = new SubtitleRemux(currentVideoFile.getAbsolutePath(), outputPath, cues, track,
+            languageField.getText(), titleField.getText(), totalDurationMillis);
+        enqueueEncodingTask(new EncodingTask(outputPath, "copy", 0), remux::run);
+    }
+
+    private static int toRgb(Color color) {
+        return ((int) Math.round(color.getRed() * 255) << 16)
+            | ((int) Math.round(color.getGreen() * 255) << 8)
+            | (int) Math.round(color.getBlue() * 255);
+    }
+
+    // 调度器在任务结束后回调（FX 线程）
+    private void onEncodingFinished(EncodingTask task) {
+        // 代理生成完成后直接切换播放，不弹出对话框；失败时继续播放原视频
+        if (task == proxyTask) {
+            proxyTask = null;
+            if ("编码完成".equals(task.getStatus()) && proxy != null && proxy.isReady()
+                    && proxy.getMedia().equals(currentVideoFile.toPath()) && useProxyPlayback.isSelected()) {
+                playProxy();
+            } else if ("编码失败".equals(task.getStatus())) {
+                showError("代理视频生成失败", "将继续播放原视频: " + task.getErrorMessage());
             }
+            return;
         }
-
-        // 如果没有找到当前字幕，但找到了下一个字幕
-        if (currentIndex == -1 && nextIndex != -1) {
-            // 查找上一个字幕
-            for (int i = nextIndex - 1; i >= 0; i--) {
-                Subtitle subtitle = subtitles.get(i);
-                if (!subtitle.getEndTime().isEmpty()) {
-                    prevIndex = i;
-                    break;
+        if ("编码完成".equals(task.getStatus())) {
+            // 显示完成对话框
+            Alert alert = new Alert(AlertType.INFORMATION,
+                "视频编码已完成，是否打开输出目录？",
+                ButtonType.YES, ButtonType.NO);
+            alert.setTitle("编码完成");
+            alert.showAndWait().ifPresent(response -> {
+                if (response == ButtonType.YES) {
+                    openFileDirectory(task.getFilename());
                 }
+            });
+        } else if ("编码失败".equals(task.getStatus())) {
+            showError("编码失败", "视频编码失败: " + task.getErrorMessage());
+        }
+    }
+
+    // FX 事件队列的积压情况，显示在任务窗口底部
+    private void updateFxQueueLabel() {
+        fxQueueLabel.setText(String.format("FX 队列：待处理 %d，峰值 %d，最近延迟 %.1f ms",
+            FxQueueMonitor.getPending(), FxQueueMonitor.getPeakPending(), FxQueueMonitor.getLastLatencyMillis()));
+    }
+
+    // 让表格中排队任务的先后与调度队列一致，只在排队任务原来占的位置之间调换
+    private void syncQueueOrder(EncodingTask selected) {
+        List<EncodingTask> queued = encodingScheduler.getQueued();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            if (queued.contains(tasks.get(i))) {
+                positions.add(i);
             }
         }
-        // 如果找到了当前字幕
-        else if (currentIndex != -1) {
-            prevIndex = currentIndex - 1;
-            nextIndex = currentIndex + 1;
-        }
-        // 如果都没找到，查找下一个字幕
-        else {
-            for (int i = 0; i < subtitles.size(); i++) {
-                Subtitle subtitle = subtitles.get(i);
-                if (!subtitle.getStartTime().isEmpty() &&
-                    getTimeInSeconds(subtitle.getStartTime()) > currentTime) {
-                    nextIndex = i;
-                    break;
-                }
+        int next = 0;
+        for (EncodingTask task : queued) {
+            if (next < positions.size() && tasks.get(positions.get(next)) != task) {
+                tasks.set(positions.get(next), task);
             }
-            // 查找上一个字幕
-            if (nextIndex == -1) {
-                for (int i = subtitles.size() - 1; i >= 0; i--) {
-                    Subtitle subtitle = subtitles.get(i);
-                    if (!subtitle.getEndTime().isEmpty() &&
-                        getTimeInSeconds(subtitle.getEndTime()) <= currentTime) {
-                        prevIndex = i;
-                        break;
-                    }
-                }
+            next++;
+        }
+        if (taskTable != null && selected != null) {
+            taskTable.getSelectionModel().select(selected);
+        }
+    }
+
+    private void showConcurrencySettings() {
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("并发设置");
+        dialog.setHeaderText("同时运行的编码任务数");
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20, 150, 10, 10));
+
+        Spinner<Integer> totalSpinner = new Spinner<>(1, 16, encodingScheduler.getMaxConcurrent());
+        grid.add(new Label("总数上限:"), 0, 0);
+        grid.add(totalSpinner, 1, 0);
+
+        Map<EncodingScheduler.EncoderFamily, Spinner<Integer>> slotSpinners = new HashMap<>();
+        int row = 1;
+        for (EncodingScheduler.EncoderFamily family : EncodingScheduler.EncoderFamily.values()) {
+            Spinner<Integer> spinner = new Spinner<>(1, 16, encodingScheduler.getSlots(family));
+            slotSpinners.put(family, spinner);
+            grid.add(new Label(family.getLabel() + ":"), 0, row);
+            grid.add(spinner, 1, row);
+            row++;
+        }
+        dialog.getDialogPane().setContent(grid);
+
+        dialog.showAndWait().filter(response -> response == ButtonType.OK).ifPresent(response -> {
+            for (Map.Entry<EncodingScheduler.EncoderFamily, Spinner<Integer>> entry : slotSpinners.entrySet()) {
+                encodingScheduler.setSlots(entry.getKey(), entry.getValue().getValue());
             }
+            encodingScheduler.setMaxConcurrent(totalSpinner.getValue());
+        });
+    }
+
+    @FXML
+    private void undo() {
+        document.flush();
+        applyJournalEdit(journal.undo());
+    }
+
+    @FXML
+    private void redo() {
+        document.flush();
+        applyJournalEdit(journal.redo());
+    }
+
+    // 把撤销/重做得到的增量应用到文本框，再只重新解析受影响的行
+    private void applyJournalEdit(EditJournal.Edit edit) {
+        if (edit == null) {
+            return;
+        }
+        isUndoing = true;
+        try {
+            subtitleInput.replaceText(edit.offset, edit.offset + edit.removeLength, edit.insert);
+        } finally {
+            isUndoing = false;
+        }
+        subtitleInput.positionCaret(edit.offset + edit.insert.length());
+        document.submit(subtitleInput.getText());
+        document.flush();
+        subtitleTable.refresh();
+    }
+
+    private void updateSubtitlePreview(double currentTime) {
+        // 通过时间索引查找当前、上一句和下一句；字幕被修改时索引版本会变，预览需要重新生成
+        cueIndex.lookup(currentTime, cueLookup);
+        int version = cueIndex.version();
+        if (version == previewedVersion && cueLookup.current == previewedCurrent
+                && cueLookup.previous == previewedPrevious && cueLookup.next == previewedNext) {
+            return;
         }
+        previewedVersion = version;
+        previewedPrevious = cueLookup.previous;
+        previewedCurrent = cueLookup.current;
+        previewedNext = cueLookup.next;
+        int currentIndex = indexOfCue(cueLookup);
 
         // 更新显示
-        prevSubtitleLabel.setText(prevIndex >= 0 ? formatSubtitlePreview(subtitles.get(prevIndex)) : "");
-        currentSubtitleLabel.setText(currentIndex >= 0 ? formatSubtitlePreview(subtitles.get(currentIndex)) : "");
-        nextSubtitleLabel.setText(nextIndex >= 0 && nextIndex < subtitles.size() ?
-                                formatSubtitlePreview(subtitles.get(nextIndex)) : "");
+        prevSubtitleLabel.setText(cueLookup.previous != null ? formatSubtitlePreview(cueLookup.previous) : "");
+        currentSubtitleLabel.setText(cueLookup.current != null ? formatSubtitlePreview(cueLookup.current) : "");
+        nextSubtitleLabel.setText(cueLookup.next != null ? formatSubtitlePreview(cueLookup.next) : "");
 
-        // 更新表格选中项
-        if (currentIndex >= 0) {
+        // 当前句变化时才选中并在需要时滚动，同一句播放期间不再触碰表格
+        if (currentIndex >= 0 && cueLookup.current != followedCue) {
+            followedCue = cueLookup.current;
             subtitleTable.getSelectionModel().select(currentIndex);
 
             // 检查是否应该自动滚动
@@ -1295,47 +1883,36 @@ public class MainViewController {
                 userScrolling = false;
 
                 // 检查当前项是否在可视范围内
-                int firstVisible = getFirstVisibleIndex();
-                int lastVisible = getLastVisibleIndex();
-
-                if (currentIndex < firstVisible || currentIndex > lastVisible) {
+                if (!visibleRange.isVisible(currentIndex)) {
                     subtitleTable.scrollTo(currentIndex);
                 }
             }
+        } else if (currentIndex < 0) {
+            followedCue = null;
         }
     }
 
-    private boolean isTimeInSubtitle(double currentTime, Subtitle subtitle) {
-        if (subtitle.getStartTime().isEmpty() || subtitle.getEndTime().isEmpty()) {
-            return false;
-        }
-        double startTime = getTimeInSeconds(subtitle.getStartTime());
-        double endTime = getTimeInSeconds(subtitle.getEndTime());
-        return currentTime >= startTime && currentTime <= endTime;
-    }
+    private final StringBuilder previewBuilder = new StringBuilder(128);
 
-    private double getTimeInSeconds(String timeStr) {
-        if (timeStr == null || timeStr.isEmpty()) {
-            return 0;
+    // 当前句在列表中的位置：列表按时间排好时就是它在索引中的位置，
+    // 只有列表顺序与时间顺序不一致时才逐条查找，且只在预览变化时发生
+    private int indexOfCue(CueIndex.Lookup lookup) {
+        if (lookup.current == null) {
+            return -1;
         }
-        String[] parts = timeStr.split("[:,]");
-        if (parts.length != 4) {
-            return 0;
+        int position = lookup.position;
+        if (position < subtitles.size() && subtitles.get(position) == lookup.current) {
+            return position;
         }
-        int hours = Integer.parseInt(parts[0]);
-        int minutes = Integer.parseInt(parts[1]);
-        int seconds = Integer.parseInt(parts[2]);
-        int millis = Integer.parseInt(parts[3]);
-        return hours * 3600 + minutes * 60 + seconds + millis / 1000.0;
+        return subtitles.indexOf(lookup.current);
     }
 
     private String formatSubtitlePreview(Subtitle subtitle) {
-        StringBuilder sb = new StringBuilder();
-        if (!subtitle.getStartTime().isEmpty()) {
-            sb.append(subtitle.getStartTime());
-        }
-        if (!subtitle.getEndTime().isEmpty()) {
-            sb.append(" -> ").append(subtitle.getEndTime());
+        StringBuilder sb = previewBuilder;
+        sb.setLength(0);
+        SubtitleTime.append(sb, subtitle.getStartMillis());
+        if (subtitle.hasEndTime()) {
+            SubtitleTime.append(sb.append(" -> "), subtitle.getEndMillis());
         }
         if (sb.length() > 0) {
             sb.append(" | ");
@@ -1343,46 +1920,4 @@ public class MainViewController {
         sb.append(subtitle.getContent());
         return sb.toString();
     }
-
-    // 获取第一个可见项的索引
-    private int getFirstVisibleIndex() {
-        int index = subtitleTable.getSelectionModel().getSelectedIndex();
-        for (int i = index; i >= 0; i--) {
-            TableCell<?, ?> cell = getTableCell(i);
-            if (cell != null && cell.isVisible()) {
-                return i;
-            }
-        }
-        return 0;
-    }
-
-    // 获取最后一个可见项的索引
-    private int getLastVisibleIndex() {
-        int index = subtitleTable.getSelectionModel().getSelectedIndex();
-        int size = subtitleTable.getItems().size();
-        for (int i = index; i < size; i++) {
-            TableCell<?, ?> cell = getTableCell(i);
-            if (cell != null && cell.isVisible()) {
-                return i;
-            }
-        }
-        return size - 1;
-    }
-
-    // 获取指定索引的单元格
-    private TableCell<?, ?> getTableCell(int row) {
-        if (subtitleTable.getColumns().isEmpty()) return null;
-        TableColumn<?, ?> column = subtitleTable.getColumns().get(0);
-        if (column.getCellData(row) == null) return null;
-
-        for (Node node : subtitleTable.lookupAll(".table-cell")) {
-            if (node instanceof TableCell) {
-                TableCell<?, ?> cell = (TableCell<?, ?>) node;
-                if (cell.getTableRow() != null && cell.getTableRow().getIndex() == row) {
-                    return cell;
-                }
-            }
-        }
-        return null;
-    }
 }
@@ -0,0 +1,321 @@
+package com.subtitler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+// 分段并行编码：
+// 1. 从帧索引取出关键帧位置（只解复用，不解码；时间已减去文件起始时间，与 ffmpeg 输出的时间轴一致）
+// 2. 在最接近等分点的关键帧处，用 segment 复用器把视频流无损切成 N 段
+// 3. 各段同时编码，烧录字幕时每段使用按该段起点平移后的字幕
+// 4. concat 复用器无损拼接各段，并直接复制源文件的音频
+// 硬件编码时每段的 ffmpeg 会话各占调度器中同一家族的一个槽位，不超过显卡的会话数限制。
+// 单段失败只重试该段，重试次数用完才让整个任务失败，此时立即终止其他段，不等前面的段编完。
+public class ParallelEncoder {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final String input;
+    private final String output;
+    // -c:v、-b:v 等视频编码参数
+    private final List<String> videoOptions;
+    private final SubtitleBurnIn burnIn;
+    private final int segments;
+    private final int parallelism;
+    private final long durationMillis;
+    private final boolean softwareEncoder;
+    // 硬件编码器的会话槽位，软件编码为 null
+    private final EncodingScheduler.Sessions sessions;
+
+    public ParallelEncoder(String input, String output, List<String> videoOptions, SubtitleBurnIn burnIn,
+                           int segments, int parallelism, long durationMillis, boolean softwareEncoder,
+                           EncodingScheduler.Sessions sessions) {
+        this.input = input;
+        this.output = output;
+        this.videoOptions = videoOptions;
+        this.burnIn = burnIn;
+        this.segments = Math.max(segments, 1);
+        this.parallelism = Math.max(parallelism, 1);
+        this.durationMillis = durationMillis;
+        this.softwareEncoder = softwareEncoder;
+        this.sessions = sessions;
+    }
+
+    public void run(EncodingTask task) throws Exception {
+        Path outputPath = Path.of(output).toAbsolutePath();
+        Path workDir = Files.createTempDirectory(outputPath.getParent(), "subtitler-parallel-");
+        try {
+            FrameIndex index = FrameIndex.loadOrBuild(Path.of(input), task::isCancelled, progress -> { });
+            if (index == null || task.isCancelled()) {
+                return;
+            }
+            List<Double> keyframes = index.keyframeSeconds();
+            double[] starts = planSegments(keyframes, durationMillis / 1000.0, segments);
+            if (task.isCancelled()) {
+                return;
+            }
+
+            List<Path> sources = split(task, workDir, starts);
+            if (task.isCancelled()) {
+                return;
+            }
+            List<Path> encoded = encodeSegments(task, workDir, sources, starts);
+            if (task.isCancelled()) {
+                return;
+            }
+            concat(task, workDir, encoded);
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    // 每个元素为一段的起始时间（秒），第一段从 0 开始，其余都落在关键帧上
+    static double[] planSegments(List<Double> keyframes, double duration, int segments) {
+        List<Double> starts = new ArrayList<>();
+        starts.add(0.0);
+        if (duration <= 0 || keyframes.isEmpty()) {
+            return new double[] {0.0};
+        }
+        // 太短的段不值得单独启动一个进程
+        double minLength = Math.min(duration / segments / 2, 10.0);
+        int k = 0;
+        for (int i = 1; i < segments; i++) {
+            double target = duration * i / segments;
+            while (k + 1 < keyframes.size() && Math.abs(keyframes.get(k + 1) - target) <= Math.abs(keyframes.get(k) - target)) {
+                k++;
+            }
+            double keyframe = keyframes.get(k);
+            double previous = starts.get(starts.size() - 1);
+            if (keyframe - previous >= minLength && duration - keyframe >= minLength) {
+                starts.add(keyframe);
+            }
+        }
+        double[] result = new double[starts.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = starts.get(i);
+        }
+        return result;
+    }
+
+    private List<Path> split(EncodingTask task, Path workDir, double[] starts) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add("ffmpeg");
+        command.add("-i");
+        command.add(input);
+        command.add("-map");
+        command.add("0:v:0");
+        command.add("-c");
+        command.add("copy");
+        command.add("-f");
+        command.add("segment");
+        if (starts.length > 1) {
+            // 稍微提前一点，避免时间打印时的舍入让切点越过目标关键帧
+            StringBuilder times = new StringBuilder();
+            for (int i = 1; i < starts.length; i++) {
+                if (times.length() > 0) {
+                    times.append(',');
+                }
+                times.append(String.format("%.6f", Math.max(starts[i] - 0.001, 0)));
+            }
+            command.add("-segment_times");
+            command.add(times.toString());
+        } else {
+            command.add("-segment_time");
+            command.add(String.valueOf(Integer.MAX_VALUE));
+        }
+        command.add("-reset_timestamps");
+        command.add("1");
+        command.add("-y");
+        command.add(workDir.resolve("source_%03d.mkv").toString());
+        FfmpegRunner.run(task, command, progress -> { });
+
+        List<Path> sources = new ArrayList<>();
+        for (int i = 0; i < starts.length; i++) {
+            Path source = workDir.resolve(String.format("source_%03d.mkv", i));
+            if (!Files.exists(source)) {
+                throw new IOException("分段数量与计划不一致");
+            }
+            sources.add(source);
+        }
+        return sources;
+    }
+
+    private List<Path> encodeSegments(EncodingTask task, Path workDir, List<Path> sources, double[] starts) throws Exception {
+        int count = sources.size();
+        long[] lengthsMicros = new long[count];
+        for (int i = 0; i < count; i++) {
+            double end = i + 1 < count ? starts[i + 1] : durationMillis / 1000.0;
+            lengthsMicros[i] = Math.max((long) ((end - starts[i]) * 1_000_000), 1);
+        }
+        long totalMicros = Math.max(durationMillis * 1000, 1);
+        AtomicLongArray doneMicros = new AtomicLongArray(count);
+        AtomicBoolean failed = new AtomicBoolean(false);
+
+        int threads = Math.min(parallelism, count);
+        // 软件编码器默认按全部核心开线程，多个进程同时运行时平分核心，避免过度争抢
+        int encoderThreads = Math.max(Runtime.getRuntime().availableProcessors() / threads, 1);
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "segment-encoder-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // 按完成顺序取结果，任何一段最终失败都能立即发现
+            CompletionService<Path> completion = new ExecutorCompletionService<>(pool);
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                completion.submit(() -> encodeSegment(task, failed, workDir, sources.get(index), index, starts[index],
+                    lengthsMicros[index], encoderThreads, micros -> {
+                        doneMicros.set(index, Math.min(micros, lengthsMicros[index]));
+                        long sum = 0;
+                        for (int k = 0; k < count; k++) {
+                            sum += doneMicros.get(k);
+                        }
+                        task.reportProgress((int) Math.min(sum * 100 / totalMicros, 99));
+                    }));
+            }
+            for (int i = 0; i < count; i++) {
+                try {
+                    completion.take().get();
+                } catch (ExecutionException e) {
+                    // 某段最终失败，终止其他段，它们不再重试
+                    failed.set(true);
+                    task.destroyProcesses();
+                    Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+                }
+            }
+            // 每段的输出文件名由序号决定，全部成功后按序号排列
+            List<Path> encoded = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                encoded.add(encodedPath(workDir, i));
+            }
+            return encoded;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private interface SegmentProgress {
+        void update(long micros);
+    }
+
+    private Path encodeSegment(EncodingTask task, AtomicBoolean failed, Path workDir, Path source, int index, double start,
+                               long lengthMicros, int encoderThreads, SegmentProgress progress) throws Exception {
+        Path target = encodedPath(workDir, index);
+        Exception lastFailure = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS && !task.isCancelled() && !failed.get(); attempt++) {
+            progress.update(0);
+            Path assFile = burnIn != null
+                ? burnIn.writeTempFile((int) Math.round(start * 1000), (int) (lengthMicros / 1000))
+                : null;
+            try {
+                List<String> command = new ArrayList<>();
+                command.add("ffmpeg");
+                command.add("-i");
+                command.add(source.toString());
+                command.add("-an");
+                if (assFile != null) {
+                    command.add("-vf");
+                    command.add(SubtitleBurnIn.filter(assFile));
+                }
+                command.addAll(videoOptions);
+                if (softwareEncoder) {
+                    command.add("-threads");
+                    command.add(String.valueOf(encoderThreads));
+                }
+                command.add("-y");
+                command.add(target.toString());
+                // 被中断（任务取消或其他段失败）时直接抛出，不算作这一段的失败
+                if (sessions != null) {
+                    sessions.acquire();
+                }
+                try {
+                    FfmpegRunner.run(task, command, p -> progress.update(p.getOutTimeMicros()));
+                } finally {
+                    if (sessions != null) {
+                        sessions.release();
+                    }
+                }
+                if (task.isCancelled()) {
+                    break;
+                }
+                progress.update(lengthMicros);
+                return target;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                lastFailure = e;
+            } finally {
+                if (assFile != null) {
+                    Files.deleteIfExists(assFile);
+                }
+            }
+        }
+        if (task.isCancelled()) {
+            return target;
+        }
+        throw new IOException("第 " + (index + 1) + " 段编码失败（已重试 " + (MAX_ATTEMPTS - 1) + " 次）: "
+            + (lastFailure != null ? lastFailure.getMessage() : ""), lastFailure);
+    }
+
+    private static Path encodedPath(Path workDir, int index) {
+        return workDir.resolve(String.format("encoded_%03d.mkv", index));
+    }
+
+    private void concat(EncodingTask task, Path workDir, List<Path> encoded) throws Exception {
+        Path list = workDir.resolve("segments.txt");
+        StringBuilder content = new StringBuilder();
+        for (Path segment : encoded) {
+            content.append("file '").append(segment.toAbsolutePath().toString().replace("'", "'\\''")).append("'\n");
+        }
+        Files.writeString(list, content, StandardCharsets.UTF_8);
+
+        List<String> command = new ArrayList<>();
+        command.add("ffmpeg");
+        command.add("-f");
+        command.add("concat");
+        command.add("-safe");
+        command.add("0");
+        command.add("-i");
+        command.add(list.toString());
+        command.add("-i");
+        command.add(input);
+        command.add("-map");
+        command.add("0:v");
+        command.add("-map");
+        command.add("1:a?");
+        command.add("-c");
+        command.add("copy");
+        command.add("-y");
+        command.add(output);
+        FfmpegRunner.run(task, command, progress -> { });
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    // 临时文件删不掉不影响结果
+                }
+            });
+        } catch (IOException e) {
+            // 目录已不存在
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.subtitler;
+
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import uk.co.caprica.vlcj.player.base.MediaPlayer;
+import uk.co.caprica.vlcj.player.embedded.videosurface.CallbackVideoSurface;
+import uk.co.caprica.vlcj.player.embedded.videosurface.VideoSurfaceAdapters;
+import uk.co.caprica.vlcj.player.embedded.videosurface.callback.BufferFormat;
+import uk.co.caprica.vlcj.player.embedded.videosurface.callback.BufferFormatCallback;
+import uk.co.caprica.vlcj.player.embedded.videosurface.callback.RenderCallback;
+import uk.co.caprica.vlcj.player.embedded.videosurface.callback.format.RV32BufferFormat;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+// VLC 解码到本地内存中的 BGRA 缓冲区，每一帧在 VLC 线程中复制到暂存区后只标记为脏，不向 FX 线程投递任务；
+// 由播放器的取样脉冲调用 refresh，把暂存区中最新的一帧复制到 ImageView 通过 PixelBuffer 显示的缓冲区。
+// 两块缓冲区都由这里分配，画面不会引用 VLC 随时可能释放的本地内存；脉冲之间到达的多余帧计为丢弃。
+public class PixelBufferVideoSurface extends CallbackVideoSurface {
+    private final Renderer renderer;
+
+    // onFrame 在 VLC 线程中调用，用来在脉冲停止时重新启动它
+    public PixelBufferVideoSurface(ImageView imageView, Runnable onFrame) {
+        this(new Renderer(imageView, onFrame));
+    }
+
+    private PixelBufferVideoSurface(Renderer renderer) {
+        super(renderer, renderer, true, VideoSurfaceAdapters.getVideoSurfaceAdapter());
+        this.renderer = renderer;
+    }
+
+    // FX 线程：有新帧时刷新画面，返回是否刷新了
+    public boolean refresh() {
+        return renderer.refresh();
+    }
+
+    // 是否有已解码、还没显示的帧
+    public boolean hasPendingFrame() {
+        return renderer.hasPendingFrame();
+    }
+
+    // VLC 解码并交给界面的帧数
+    public long getDecodedFrames() {
+        return renderer.decoded.get();
+    }
+
+    // 实际刷新到画面上的帧数
+    public long getRenderedFrames() {
+        return renderer.rendered.get();
+    }
+
+    // FX 线程来不及显示、被后面的帧覆盖的帧数
+    public long getDroppedFrames() {
+        return renderer.dropped.get();
+    }
+
+    // 一种视频尺寸对应的暂存区和显示缓冲区
+    private static final class Frames {
+        final int width;
+        final int height;
+        final ByteBuffer staging;
+        final ByteBuffer display;
+
+        Frames(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.staging = ByteBuffer.allocateDirect(width * height * 4);
+            this.display = ByteBuffer.allocateDirect(width * height * 4);
+        }
+    }
+
+    private static final class Renderer implements BufferFormatCallback, RenderCallback {
+        private final ImageView imageView;
+        private final Runnable onFrame;
+        // getBufferFormat 与随后的 allocatedBuffers 在同一个 VLC 线程中依次调用
+        private int bufferWidth;
+        private int bufferHeight;
+        // 以下两个字段由 frameLock 保护：当前尺寸的缓冲区，以及暂存区中是否有还没显示的帧
+        private final Object frameLock = new Object();
+        private Frames frames;
+        private boolean dirty;
+        // 只在 FX 线程中访问：ImageView 正在显示的缓冲区
+        private Frames shown;
+        private PixelBuffer<ByteBuffer> pixelBuffer;
+        private final AtomicLong decoded = new AtomicLong();
+        private final AtomicLong rendered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+
+        Renderer(ImageView imageView, Runnable onFrame) {
+            this.imageView = imageView;
+            this.onFrame = onFrame;
+        }
+
+        @Override
+        public BufferFormat getBufferFormat(int sourceWidth, int sourceHeight) {
+            bufferWidth = sourceWidth;
+            bufferHeight = sourceHeight;
+            return new RV32BufferFormat(sourceWidth, sourceHeight);
+        }
+
+        // VLC 线程调用，本地缓冲区只在下一次分配前有效，所以这里只换掉自己的缓冲区，不让画面引用它
+        @Override
+        public void allocatedBuffers(ByteBuffer[] buffers) {
+            Frames allocated = new Frames(bufferWidth, bufferHeight);
+            synchronized (frameLock) {
+                frames = allocated;
+                dirty = false;
+            }
+        }
+
+        @Override
+        public void display(MediaPlayer mediaPlayer, ByteBuffer[] nativeBuffers, BufferFormat bufferFormat) {
+            decoded.incrementAndGet();
+            boolean overwritten;
+            synchronized (frameLock) {
+                if (frames == null) {
+                    return;
+                }
+                ByteBuffer source = nativeBuffers[0].duplicate();
+                source.rewind();
+                source.limit(Math.min(source.capacity(), frames.staging.capacity()));
+                frames.staging.clear();
+                frames.staging.put(source);
+                overwritten = dirty;
+                dirty = true;
+            }
+            if (overwritten) {
+                dropped.incrementAndGet();
+            }
+            onFrame.run();
+        }
+
+        boolean hasPendingFrame() {
+            synchronized (frameLock) {
+                return dirty;
+            }
+        }
+
+        // FX 线程调用
+        boolean refresh() {
+            Frames current;
+            synchronized (frameLock) {
+                if (!dirty) {
+                    return false;
+                }
+                current = frames;
+            }
+            if (current != shown) {
+                // 尺寸变了：先让 ImageView 放下旧的图像，再换上新缓冲区
+                imageView.setImage(null);
+                pixelBuffer = new PixelBuffer<>(current.width, current.height, current.display,
+                    PixelFormat.getByteBgraPreInstance());
+                shown = current;
+                imageView.setImage(new WritableImage(pixelBuffer));
+            }
+            pixelBuffer.updateBuffer(buffer -> {
+                synchronized (frameLock) {
+                    // 复制期间 VLC 又换了尺寸时这一帧作废，下一个脉冲再按新尺寸显示
+                    if (frames == current) {
+                        current.staging.flip();
+                        current.display.clear();
+                        current.display.put(current.staging);
+                        dirty = false;
+                    }
+                }
+                current.display.rewind();
+                // 返回 null 表示整幅画面都已改变
+                return null;
+            });
+            rendered.incrementAndGet();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.subtitler;
+
+// 播放器状态的不可变快照。VLC 事件线程、跳转线程和 FX 线程都通过 CAS 替换整个快照，
+// 读取方一次拿到的时间、时长、倍速、播放状态总是同一时刻的一致组合。
+// generation 在每次打开视频或切换播放源时递增，用来识别属于上一个视频的迟到事件。
+// VLC 每隔几百毫秒才报告一次时间，timeMillis 记录最近一次报告（或跳转、暂停）时的位置，
+// anchorNanos 是当时的 System.nanoTime()；播放中的当前位置按倍速从锚点外推。
+public final class PlaybackState {
+    static final PlaybackState INITIAL = new PlaybackState(0, 0, 0, 0, 1.0, false);
+
+    private final long generation;
+    private final long timeMillis;
+    private final long anchorNanos;
+    private final long durationMillis;
+    private final double rate;
+    private final boolean playing;
+
+    private PlaybackState(long generation, long timeMillis, long anchorNanos, long durationMillis, double rate, boolean playing) {
+        this.generation = generation;
+        this.timeMillis = timeMillis;
+        this.anchorNanos = anchorNanos;
+        this.durationMillis = durationMillis;
+        this.rate = rate;
+        this.playing = playing;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    // 锚点处的位置，即最近一次报告的时间
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public double getTimeSeconds() {
+        return timeMillis / 1000.0;
+    }
+
+    public long getAnchorNanos() {
+        return anchorNanos;
+    }
+
+    // 在 nanoTime 时刻的播放位置：暂停时就是锚点位置，播放中按倍速外推，不超过时长
+    public long positionMillisAt(long nanoTime) {
+        if (!playing || nanoTime <= anchorNanos) {
+            return timeMillis;
+        }
+        long position = timeMillis + Math.round((nanoTime - anchorNanos) * rate / 1_000_000.0);
+        return durationMillis > 0 ? Math.min(position, durationMillis) : position;
+    }
+
+    public double positionSecondsAt(long nanoTime) {
+        return positionMillisAt(nanoTime) / 1000.0;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public double getDurationSeconds() {
+        return durationMillis / 1000.0;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    // 以下方法在值没有变化时返回自身，调用方可以用 == 判断状态是否改变
+
+    // 以新报告的时间重新锚定。VLC 重复报告同一时间时保留原锚点，原锚点更接近这个时间真正出现的时刻
+    PlaybackState withTime(long timeMillis, long nanoTime) {
+        return timeMillis == this.timeMillis ? this : new PlaybackState(generation, timeMillis, nanoTime, durationMillis, rate, playing);
+    }
+
+    PlaybackState withDuration(long durationMillis) {
+        return durationMillis == this.durationMillis ? this : new PlaybackState(generation, timeMillis, anchorNanos, durationMillis, rate, playing);
+    }
+
+    // 倍速和播放状态改变时先把外推位置固定为新锚点，之后按新的速度计算
+    PlaybackState withRate(double rate, long nanoTime) {
+        return rate == this.rate ? this : new PlaybackState(generation, positionMillisAt(nanoTime), nanoTime, durationMillis, rate, playing);
+    }
+
+    PlaybackState withPlaying(boolean playing, long nanoTime) {
+        return playing == this.playing ? this : new PlaybackState(generation, positionMillisAt(nanoTime), nanoTime, durationMillis, rate, playing);
+    }
+
+    // 新视频：代数加一，时间和时长清零，保留倍速
+    PlaybackState nextGeneration(long nanoTime) {
+        return new PlaybackState(generation + 1, 0, nanoTime, 0, rate, false);
+    }
+
+    // 同一个视频换了播放源（原视频与代理之间切换）：代数加一以丢弃旧源的迟到事件，
+    // 位置固定为当前外推位置，时长、倍速和播放状态不变
+    PlaybackState switchedSource(long nanoTime) {
+        return new PlaybackState(generation + 1, positionMillisAt(nanoTime), nanoTime, durationMillis, rate, playing);
+    }
+}
@@ -0,0 +1,127 @@
+package com.subtitler;
+
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// 播放用的代理视频：4K、HEVC 等解码吃力的视频在后台转成 540p、无 B 帧、每 12 帧一个关键帧的 H.264，
+// 跳转和逐帧移动时只需解码很少的帧。帧率和时间戳原样保留（-vsync passthrough），音频直接复制，
+// 因此代理与原视频的时间完全一致。代理只用于播放，导出和编码始终使用原视频。
+// 代理保存为视频旁边的 <文件名>.proxy.mkv，先写入临时文件，完成后改名。
+public class ProxyVideo {
+    private static final int PROXY_HEIGHT = 540;
+    private static final long FULL_HD_PIXELS = 1920L * 1080;
+    private static final String PROXY_SUFFIX = ".proxy.mkv";
+
+    private final Path media;
+    private final Path proxy;
+    private final long durationMillis;
+
+    public ProxyVideo(Path media, long durationMillis) {
+        this.media = media;
+        this.proxy = proxyPathFor(media);
+        this.durationMillis = durationMillis;
+    }
+
+    public Path getMedia() {
+        return media;
+    }
+
+    public Path getProxyPath() {
+        return proxy;
+    }
+
+    public static Path proxyPathFor(Path media) {
+        return media.resolveSibling(media.getFileName() + PROXY_SUFFIX);
+    }
+
+    // 代理已经生成，且不早于原视频
+    public boolean isReady() {
+        try {
+            return Files.isRegularFile(proxy)
+                && Files.getLastModifiedTime(proxy).compareTo(Files.getLastModifiedTime(media)) >= 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // 超过 1080p，或 1080p 及以上的 HEVC、AV1、VP9 视频需要代理，返回生成代理用的任务；其余视频返回 null
+    public static ProxyVideo probe(Path media) throws IOException {
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(media.toFile());
+        try {
+            grabber.start();
+            long pixels = (long) grabber.getImageWidth() * grabber.getImageHeight();
+            int codec = grabber.getVideoCodec();
+            boolean heavyCodec = codec == avcodec.AV_CODEC_ID_HEVC || codec == avcodec.AV_CODEC_ID_AV1
+                || codec == avcodec.AV_CODEC_ID_VP9;
+            if (pixels > FULL_HD_PIXELS || (heavyCodec && pixels >= FULL_HD_PIXELS)) {
+                return new ProxyVideo(media, grabber.getLengthInTime() / 1000);
+            }
+            return null;
+        } catch (FFmpegFrameGrabber.Exception e) {
+            throw new IOException("无法读取视频信息: " + e.getMessage(), e);
+        } finally {
+            try {
+                grabber.release();
+            } catch (FFmpegFrameGrabber.Exception e) {
+                // 释放失败不影响判断结果
+            }
+        }
+    }
+
+    public void run(EncodingTask task) throws Exception {
+        Path partial = proxy.resolveSibling(proxy.getFileName() + ".partial.mkv");
+        try {
+            List<String> command = new ArrayList<>();
+            command.add("ffmpeg");
+            command.add("-i");
+            command.add(media.toAbsolutePath().toString());
+            command.add("-map");
+            command.add("0:v:0");
+            command.add("-map");
+            command.add("0:a:0?");
+            command.add("-sn");
+            command.add("-dn");
+            command.add("-vf");
+            command.add("scale=-2:'min(" + PROXY_HEIGHT + ",ih)'");
+            command.add("-vsync");
+            command.add("passthrough");
+            command.add("-c:v");
+            command.add("libx264");
+            command.add("-preset");
+            command.add("ultrafast");
+            command.add("-tune");
+            command.add("fastdecode");
+            command.add("-crf");
+            command.add("26");
+            command.add("-g");
+            command.add("12");
+            command.add("-bf");
+            command.add("0");
+            command.add("-pix_fmt");
+            command.add("yuv420p");
+            command.add("-c:a");
+            command.add("copy");
+            command.add("-y");
+            command.add(partial.toString());
+            FfmpegRunner.run(task, command, durationMillis);
+            if (task.isCancelled()) {
+                return;
+            }
+            try {
+                Files.move(partial, proxy, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partial, proxy, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.subtitler;
+
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+// 镜头切换检测：把每一帧缩小到 64x36，统计 B、G、R 各 16 级的直方图，
+// 相邻两帧直方图差异超过阈值且是前后几帧中的最大值时认为发生了切换。
+// 按帧索引中的关键帧把视频分成若干块并行解码，每块从关键帧开始，互不依赖；
+// 块与块交界处的差异在合并时用前一块最后一帧的直方图补上。
+// 结果为切换处第一帧的开始时间（毫秒），缓存到视频旁边的 <文件名>.scenes。
+public final class SceneCuts {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 36;
+    private static final int BINS = 16;
+    private static final double CUT_THRESHOLD = 0.3;
+    // 切换帧的差异必须是前后这么多帧中的最大值，避免闪光、淡入淡出被识别为连续多次切换
+    private static final int LOCAL_MAX_FRAMES = 6;
+    private static final int CACHE_MAGIC = 0x5343454E; // "SCEN"
+    private static final int CACHE_VERSION = 1;
+    private static final String CACHE_SUFFIX = ".scenes";
+
+    private final int[] cuts;
+
+    private SceneCuts(int[] cuts) {
+        this.cuts = cuts;
+    }
+
+    public int size() {
+        return cuts.length;
+    }
+
+    public int getCutMillis(int i) {
+        return cuts[i];
+    }
+
+    // 距离 millis 不超过 windowMillis 的最近一次切换，没有时返回 -1
+    public int nearestCut(int millis, int windowMillis) {
+        if (millis < 0 || cuts.length == 0) {
+            return -1;
+        }
+        int found = Arrays.binarySearch(cuts, millis);
+        if (found >= 0) {
+            return cuts[found];
+        }
+        int after = -found - 1;
+        int best = -1;
+        int bestDistance = windowMillis + 1;
+        if (after < cuts.length && cuts[after] - millis < bestDistance) {
+            best = cuts[after];
+            bestDistance = cuts[after] - millis;
+        }
+        if (after > 0 && millis - cuts[after - 1] < bestDistance) {
+            best = cuts[after - 1];
+        }
+        return best;
+    }
+
+    public static Path cachePathFor(Path media) {
+        return media.resolveSibling(media.getFileName() + CACHE_SUFFIX);
+    }
+
+    public static SceneCuts loadOrDetect(Path media, FrameIndex index, BooleanSupplier cancelled) throws IOException {
+        SceneCuts cached = loadCached(media);
+        if (cached != null) {
+            return cached;
+        }
+        SceneCuts detected = detect(media, index, cancelled);
+        if (detected != null) {
+            try {
+                detected.save(media);
+            } catch (IOException e) {
+                // 缓存写不进去（例如目录只读）不影响结果，下次打开时重新检测
+            }
+        }
+        return detected;
+    }
+
+    public static SceneCuts loadCached(Path media) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cachePathFor(media))))) {
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION
+                    || in.readLong() != Files.size(media)
+                    || in.readLong() != Files.getLastModifiedTime(media).toMillis()) {
+                return null;
+            }
+            int[] cuts = new int[in.readInt()];
+            for (int i = 0; i < cuts.length; i++) {
+                cuts[i] = in.readInt();
+            }
+            return new SceneCuts(cuts);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    void save(Path media) throws IOException {
+        Path cache = cachePathFor(media);
+        Path temp = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeLong(Files.size(media));
+                out.writeLong(Files.getLastModifiedTime(media).toMillis());
+                out.writeInt(cuts.length);
+                for (int cut : cuts) {
+                    out.writeInt(cut);
+                }
+            }
+            try {
+                Files.move(temp, cache, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    // 一块的解码结果：每帧的时间和与前一帧的差异，块内第一帧的差异在合并时补上
+    private static final class Chunk {
+        final List<Long> timestamps = new ArrayList<>();
+        final List<Double> deltas = new ArrayList<>();
+        int[] firstHistogram;
+        int[] lastHistogram;
+    }
+
+    // cancelled 可以从任意线程调用，返回 true 时放弃并返回 null
+    public static SceneCuts detect(Path media, FrameIndex index, BooleanSupplier cancelled) throws IOException {
+        if (index.size() == 0) {
+            return new SceneCuts(new int[0]);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        double duration = index.getPtsMicros(index.size() - 1) / 1_000_000.0;
+        double[] starts = ParallelEncoder.planSegments(index.keyframeSeconds(), duration, threads * 4);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "scene-detect-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Chunk>> futures = new ArrayList<>();
+            for (int i = 0; i < starts.length; i++) {
+                long from = Math.round(starts[i] * 1_000_000);
+                long to = i + 1 < starts.length ? Math.round(starts[i + 1] * 1_000_000) : Long.MAX_VALUE;
+                futures.add(pool.submit(() -> decodeChunk(media, from, to, cancelled)));
+            }
+            List<Long> timestamps = new ArrayList<>();
+            List<Double> deltas = new ArrayList<>();
+            int[] previous = null;
+            for (Future<Chunk> future : futures) {
+                Chunk chunk = future.get();
+                if (chunk == null) {
+                    return null;
+                }
+                if (chunk.timestamps.isEmpty()) {
+                    continue;
+                }
+                chunk.deltas.set(0, previous == null ? 0.0 : difference(previous, chunk.firstHistogram));
+                timestamps.addAll(chunk.timestamps);
+                deltas.addAll(chunk.deltas);
+                previous = chunk.lastHistogram;
+            }
+            return new SceneCuts(findCuts(timestamps, deltas, index));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IOException("镜头切换检测失败: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // 解码 [fromMicros, toMicros) 之间的帧；时间以文件起始时间为零点，与帧索引一致
+    private static Chunk decodeChunk(Path media, long fromMicros, long toMicros, BooleanSupplier cancelled) throws IOException {
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(media.toFile());
+        grabber.setImageWidth(WIDTH);
+        grabber.setImageHeight(HEIGHT);
+        grabber.setPixelFormat(avutil.AV_PIX_FMT_BGR24);
+        // 并行度由块的数量提供，每个解码器只用一个线程
+        grabber.setVideoOption("threads", "1");
+        Chunk chunk = new Chunk();
+        try {
+            grabber.start();
+            long startMicros = grabber.getFormatContext().start_time() == avutil.AV_NOPTS_VALUE
+                ? 0 : grabber.getFormatContext().start_time();
+            if (fromMicros > 0) {
+                grabber.setTimestamp(fromMicros);
+            }
+            int[] previous = null;
+            Frame frame;
+            while ((frame = grabber.grabImage()) != null) {
+                long timestamp = frame.timestamp - startMicros;
+                if (timestamp >= toMicros) {
+                    break;
+                }
+                if (timestamp < fromMicros) {
+                    continue;
+                }
+                if (cancelled.getAsBoolean()) {
+                    return null;
+                }
+                int[] histogram = histogram(frame);
+                chunk.timestamps.add(timestamp);
+                chunk.deltas.add(previous == null ? 0.0 : difference(previous, histogram));
+                if (previous == null) {
+                    chunk.firstHistogram = histogram;
+                }
+                previous = histogram;
+            }
+            chunk.lastHistogram = previous;
+            return chunk;
+        } catch (FFmpegFrameGrabber.Exception e) {
+            throw new IOException("无法解码视频: " + e.getMessage(), e);
+        } finally {
+            try {
+                grabber.release();
+            } catch (FFmpegFrameGrabber.Exception e) {
+                // 释放失败不影响已经得到的结果
+            }
+        }
+    }
+
+    private static int[] histogram(Frame frame) {
+        int[] histogram = new int[3 * BINS];
+        ByteBuffer pixels = (ByteBuffer) frame.image[0];
+        int stride = frame.imageStride;
+        int shift = 8 - Integer.numberOfTrailingZeros(BINS);
+        for (int y = 0; y < frame.imageHeight; y++) {
+            int row = y * stride;
+            for (int x = 0; x < frame.imageWidth; x++) {
+                int p = row + x * 3;
+                histogram[(pixels.get(p) & 0xFF) >> shift]++;
+                histogram[BINS + ((pixels.get(p + 1) & 0xFF) >> shift)]++;
+                histogram[2 * BINS + ((pixels.get(p + 2) & 0xFF) >> shift)]++;
+            }
+        }
+        return histogram;
+    }
+
+    // 两个直方图的 L1 距离，归一化到 0~1
+    private static double difference(int[] a, int[] b) {
+        long sum = 0;
+        long total = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += Math.abs(a[i] - b[i]);
+            total += a[i] + b[i];
+        }
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    private static int[] findCuts(List<Long> timestamps, List<Double> deltas, FrameIndex index) {
+        int[] cuts = new int[deltas.size()];
+        int count = 0;
+        for (int i = 1; i < deltas.size(); i++) {
+            double delta = deltas.get(i);
+            if (delta < CUT_THRESHOLD) {
+                continue;
+            }
+            boolean localMax = true;
+            for (int j = Math.max(i - LOCAL_MAX_FRAMES, 0); j <= Math.min(i + LOCAL_MAX_FRAMES, deltas.size() - 1) && localMax; j++) {
+                localMax = j == i || deltas.get(j) < delta || (deltas.get(j) == delta && j > i);
+            }
+            if (localMax) {
+                int millis = (int) (timestamps.get(i) / 1000);
+                cuts[count++] = index.snapToNearestFrame(millis);
+            }
+        }
+        return Arrays.copyOf(cuts, count);
+    }
+}
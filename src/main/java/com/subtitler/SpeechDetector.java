@@ -0,0 +1,336 @@
+package com.subtitler;
+
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.FrameGrabber;
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+// 语音活动检测：把音频流式解码为 8 kHz 单声道，每 10 毫秒一帧，
+// 用 32 毫秒汉宁窗的频谱计算能量、语音频段（100~3400 Hz，基频和主要共振峰所在，排除工频干扰和高频嘶声）能量占比和频谱平坦度。
+// 解码在调用线程中顺序进行，每攒满 30 秒就交给线程池计算特征，解码与计算同时进行；
+// 全部完成后按整段音频的能量分布确定阈值，再做平滑得到语音片段。
+public final class SpeechDetector {
+    public static final int FRAME_MILLIS = 10;
+    private static final int SAMPLE_RATE = 8000;
+    private static final int HOP = SAMPLE_RATE * FRAME_MILLIS / 1000;
+    private static final int WINDOW = 256;
+    private static final int CHUNK_FRAMES = 3000;
+    private static final int SPEECH_LOW_BIN = 100 * WINDOW / SAMPLE_RATE;
+    private static final int SPEECH_HIGH_BIN = 3400 * WINDOW / SAMPLE_RATE;
+    // 间隔短于此值的语音片段合并，短于 MIN_SPEECH 的片段丢弃
+    private static final int MERGE_GAP_MILLIS = 250;
+    private static final int MIN_SPEECH_MILLIS = 150;
+    // 第 f 帧的窗口从 f * HOP 开始，以窗口中心作为该帧的时间
+    private static final int WINDOW_OFFSET_MILLIS = (WINDOW - HOP) / 2 * 1000 / SAMPLE_RATE;
+    private static final double[] HANN = new double[WINDOW];
+
+    static {
+        for (int i = 0; i < WINDOW; i++) {
+            HANN[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (WINDOW - 1));
+        }
+    }
+
+    public static final class Segment {
+        private final int startMillis;
+        private final int endMillis;
+
+        Segment(int startMillis, int endMillis) {
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+        }
+
+        public int getStartMillis() {
+            return startMillis;
+        }
+
+        public int getEndMillis() {
+            return endMillis;
+        }
+
+        public int getDurationMillis() {
+            return endMillis - startMillis;
+        }
+    }
+
+    // 检测结果和耗时统计
+    public static final class Result {
+        private final List<Segment> segments;
+        private final long audioMillis;
+        private final long elapsedNanos;
+        private final int threads;
+
+        Result(List<Segment> segments, long audioMillis, long elapsedNanos, int threads) {
+            this.segments = segments;
+            this.audioMillis = audioMillis;
+            this.elapsedNanos = elapsedNanos;
+            this.threads = threads;
+        }
+
+        public List<Segment> getSegments() {
+            return segments;
+        }
+
+        public long getAudioMillis() {
+            return audioMillis;
+        }
+
+        public double getElapsedSeconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        // 音频时长与耗时之比，大于 1 表示快于实时
+        public double getRealtimeFactor() {
+            return elapsedNanos == 0 ? 0 : audioMillis * 1e6 / elapsedNanos;
+        }
+    }
+
+    // 一段音频的逐帧特征
+    private static final class Features {
+        final float[] energyDb;
+        final float[] speechRatio;
+        final float[] flatness;
+
+        Features(int frames) {
+            energyDb = new float[frames];
+            speechRatio = new float[frames];
+            flatness = new float[frames];
+        }
+    }
+
+    private SpeechDetector() {
+    }
+
+    // cancelled 返回 true 时放弃并返回 null，progress 接收 0~1 的解码进度
+    public static Result detect(Path media, BooleanSupplier cancelled, DoubleConsumer progress) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "speech-features-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(media.toFile());
+        grabber.setAudioChannels(1);
+        grabber.setSampleRate(SAMPLE_RATE);
+        grabber.setSampleMode(FrameGrabber.SampleMode.SHORT);
+        try {
+            grabber.start();
+            if (!grabber.hasAudio()) {
+                throw new IOException("视频中没有音轨");
+            }
+            long lengthMicros = grabber.getLengthInTime();
+            List<Future<Features>> chunks = new ArrayList<>();
+            // 每块 CHUNK_FRAMES 帧，末尾多带一个窗口长度的样本，块与块之间互不依赖
+            int chunkSamples = CHUNK_FRAMES * HOP;
+            short[] pending = new short[chunkSamples + WINDOW];
+            int filled = 0;
+            long totalSamples = 0;
+            int frames = 0;
+            Frame frame;
+            while ((frame = grabber.grabSamples()) != null) {
+                if (frame.samples == null) {
+                    continue;
+                }
+                ShortBuffer samples = (ShortBuffer) frame.samples[0];
+                while (samples.hasRemaining()) {
+                    int count = Math.min(samples.remaining(), pending.length - filled);
+                    samples.get(pending, filled, count);
+                    filled += count;
+                    totalSamples += count;
+                    if (filled == pending.length) {
+                        short[] chunk = pending.clone();
+                        chunks.add(pool.submit(() -> analyze(chunk, CHUNK_FRAMES)));
+                        System.arraycopy(pending, chunkSamples, pending, 0, WINDOW);
+                        filled = WINDOW;
+                    }
+                }
+                if ((++frames & 63) == 0) {
+                    if (cancelled.getAsBoolean()) {
+                        return null;
+                    }
+                    if (progress != null && lengthMicros > 0) {
+                        progress.accept(Math.min((double) frame.timestamp / lengthMicros, 1.0));
+                    }
+                }
+            }
+            // 最后不足一块的部分补零
+            int lastFrames = (filled + HOP - 1) / HOP;
+            if (lastFrames > 0) {
+                short[] chunk = Arrays.copyOf(pending, lastFrames * HOP + WINDOW);
+                Arrays.fill(chunk, filled, chunk.length, (short) 0);
+                chunks.add(pool.submit(() -> analyze(chunk, lastFrames)));
+            }
+
+            List<Features> features = new ArrayList<>(chunks.size());
+            for (Future<Features> chunk : chunks) {
+                features.add(chunk.get());
+            }
+            List<Segment> segments = segments(features);
+            long audioMillis = totalSamples * 1000 / SAMPLE_RATE;
+            if (progress != null) {
+                progress.accept(1.0);
+            }
+            return new Result(segments, audioMillis, System.nanoTime() - started, threads);
+        } catch (ExecutionException e) {
+            throw new IOException("语音检测失败: " + e.getCause().getMessage(), e.getCause());
+        } catch (FFmpegFrameGrabber.Exception e) {
+            throw new IOException("无法解码音频: " + e.getMessage(), e);
+        } finally {
+            pool.shutdownNow();
+            try {
+                grabber.release();
+            } catch (FFmpegFrameGrabber.Exception e) {
+                // 释放失败不影响检测结果
+            }
+        }
+    }
+
+    // 计算一块音频中每一帧的特征，samples 长度至少为 frames * HOP + WINDOW
+    private static Features analyze(short[] samples, int frames) {
+        Features features = new Features(frames);
+        double[] re = new double[WINDOW];
+        double[] im = new double[WINDOW];
+        for (int f = 0; f < frames; f++) {
+            int offset = f * HOP;
+            for (int i = 0; i < WINDOW; i++) {
+                re[i] = samples[offset + i] / 32768.0 * HANN[i];
+                im[i] = 0;
+            }
+            fft(re, im);
+            double total = 1e-12;
+            double speech = 1e-12;
+            double logSum = 0;
+            for (int bin = 1; bin <= WINDOW / 2; bin++) {
+                double power = re[bin] * re[bin] + im[bin] * im[bin] + 1e-12;
+                total += power;
+                if (bin >= SPEECH_LOW_BIN && bin <= SPEECH_HIGH_BIN) {
+                    speech += power;
+                    logSum += Math.log(power);
+                }
+            }
+            int speechBins = SPEECH_HIGH_BIN - SPEECH_LOW_BIN + 1;
+            features.energyDb[f] = (float) (10 * Math.log10(total));
+            features.speechRatio[f] = (float) (speech / total);
+            // 几何平均与算术平均之比：纯音接近 0，白噪声接近 1，语音介于两者之间且偏低
+            features.flatness[f] = (float) (Math.exp(logSum / speechBins) / (speech / speechBins));
+        }
+        return features;
+    }
+
+    // 原地基 2 FFT，长度为 WINDOW
+    private static void fft(double[] re, double[] im) {
+        int n = re.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        for (int length = 2; length <= n; length <<= 1) {
+            double angle = -2 * Math.PI / length;
+            double wRe = Math.cos(angle);
+            double wIm = Math.sin(angle);
+            for (int start = 0; start < n; start += length) {
+                double curRe = 1;
+                double curIm = 0;
+                for (int k = 0; k < length / 2; k++) {
+                    int a = start + k;
+                    int b = a + length / 2;
+                    double tRe = re[b] * curRe - im[b] * curIm;
+                    double tIm = re[b] * curIm + im[b] * curRe;
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+                    double nextRe = curRe * wRe - curIm * wIm;
+                    curIm = curRe * wIm + curIm * wRe;
+                    curRe = nextRe;
+                }
+            }
+        }
+    }
+
+    // 按整段音频的能量分布确定阈值，标记语音帧后合并短间隔、丢弃过短片段
+    static List<Segment> segments(List<Features> chunks) {
+        int frames = 0;
+        for (Features chunk : chunks) {
+            frames += chunk.energyDb.length;
+        }
+        float[] energy = new float[frames];
+        int position = 0;
+        for (Features chunk : chunks) {
+            System.arraycopy(chunk.energyDb, 0, energy, position, chunk.energyDb.length);
+            position += chunk.energyDb.length;
+        }
+        List<Segment> segments = new ArrayList<>();
+        if (frames == 0) {
+            return segments;
+        }
+        float[] sorted = energy.clone();
+        Arrays.sort(sorted);
+        float noiseFloor = sorted[frames / 10];
+        float loud = sorted[frames * 9 / 10];
+        float threshold = noiseFloor + Math.max(6f, (loud - noiseFloor) * 0.3f);
+
+        int start = -1;
+        int lastSpeech = -1;
+        int frame = 0;
+        for (Features chunk : chunks) {
+            for (int i = 0; i < chunk.energyDb.length; i++, frame++) {
+                boolean speech = chunk.energyDb[i] > threshold
+                    && chunk.speechRatio[i] > 0.5f
+                    && chunk.flatness[i] < 0.6f;
+                if (!speech) {
+                    continue;
+                }
+                if (start >= 0 && (frame - lastSpeech - 1) * FRAME_MILLIS > MERGE_GAP_MILLIS) {
+                    addSegment(segments, start, lastSpeech);
+                    start = -1;
+                }
+                if (start < 0) {
+                    start = frame;
+                }
+                lastSpeech = frame;
+            }
+        }
+        if (start >= 0) {
+            addSegment(segments, start, lastSpeech);
+        }
+        return segments;
+    }
+
+    private static void addSegment(List<Segment> segments, int firstFrame, int lastFrame) {
+        int startMillis = firstFrame * FRAME_MILLIS + WINDOW_OFFSET_MILLIS;
+        int endMillis = (lastFrame + 1) * FRAME_MILLIS + WINDOW_OFFSET_MILLIS;
+        if (endMillis - startMillis >= MIN_SPEECH_MILLIS) {
+            segments.add(new Segment(startMillis, endMillis));
+        }
+    }
+}
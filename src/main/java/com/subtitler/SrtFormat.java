@@ -0,0 +1,65 @@
+package com.subtitler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+// SRT：序号、HH:mm:ss,SSS --> HH:mm:ss,SSS、正文，字幕块之间空一行
+public class SrtFormat implements SubtitleFormat {
+    private static final List<String> EXTENSIONS = List.of("srt");
+
+    @Override
+    public String getName() {
+        return "SRT字幕";
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return EXTENSIONS;
+    }
+
+    @Override
+    public SubtitleReader newReader(Reader reader) {
+        return new SrtReader(reader);
+    }
+
+    @Override
+    public SubtitleWriter newWriter(Writer writer) {
+        return new SrtWriter(writer);
+    }
+
+    private static class SrtWriter implements SubtitleWriter {
+        private final Writer writer;
+        private final StringBuilder block = new StringBuilder(256);
+        private int number = 0;
+
+        SrtWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void writeHeader() {
+        }
+
+        @Override
+        public void write(Subtitle subtitle) throws IOException {
+            block.setLength(0);
+            block.append(++number).append('\n');
+            SubtitleTime.append(block, subtitle.getStartMillis()).append(" --> ");
+            SubtitleTime.append(block, subtitle.getEndMillis()).append('\n');
+            block.append(subtitle.getContent().trim()).append("\n\n");
+            writer.append(block);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.subtitler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+// 逐条读取 SRT 字幕，每次只在内存中保留当前这一条。
+// 容忍多个 SRT 拼接在一起的文件：中间的 BOM、缺少空行分隔的字幕块都能正确切分。
+public class SrtReader implements SubtitleReader {
+    private final BufferedReader reader;
+    private final StringBuilder content = new StringBuilder();
+    private String heldNumberLine;
+    private boolean inCue = false;
+    private int startMillis = SubtitleTime.NONE;
+    private int endMillis = SubtitleTime.NONE;
+
+    public SrtReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 64 * 1024);
+    }
+
+    @Override
+    public Subtitle read() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = stripBom(line).trim();
+
+            if (line.isEmpty()) {
+                if (inCue && (content.length() > 0 || heldNumberLine != null)) {
+                    appendHeldNumberLine();
+                    return emit();
+                }
+                continue;
+            }
+
+            int arrow = line.indexOf("-->");
+            if (arrow >= 0) {
+                // 上一条字幕后面没有空行，末尾的纯数字行其实是这一条的序号
+                heldNumberLine = null;
+                Subtitle previous = inCue && content.length() > 0 ? emit() : null;
+                startMillis = SubtitleTime.parse(line, 0, arrow);
+                endMillis = parseEnd(line, arrow + 3);
+                inCue = true;
+                if (previous != null) {
+                    return previous;
+                }
+                continue;
+            }
+
+            if (inCue) {
+                appendHeldNumberLine();
+                if (isNumber(line)) {
+                    // 可能是下一条的序号，先暂存
+                    heldNumberLine = line;
+                } else {
+                    appendContent(line);
+                }
+            }
+            // 第一条字幕之前的序号行忽略
+        }
+
+        if (inCue && (content.length() > 0 || heldNumberLine != null)) {
+            appendHeldNumberLine();
+            return emit();
+        }
+        return null;
+    }
+
+    private Subtitle emit() {
+        Subtitle subtitle = new Subtitle(content.toString(), startMillis, endMillis);
+        content.setLength(0);
+        inCue = false;
+        startMillis = SubtitleTime.NONE;
+        endMillis = SubtitleTime.NONE;
+        return subtitle;
+    }
+
+    private void appendHeldNumberLine() {
+        if (heldNumberLine != null) {
+            appendContent(heldNumberLine);
+            heldNumberLine = null;
+        }
+    }
+
+    private void appendContent(String line) {
+        if (content.length() > 0) {
+            content.append('\n');
+        }
+        content.append(line);
+    }
+
+    // 结束时间后面可能跟有坐标等附加信息，只取第一个空白之前的部分
+    private static int parseEnd(String line, int from) {
+        while (from < line.length() && line.charAt(from) <= ' ') {
+            from++;
+        }
+        int to = from;
+        while (to < line.length() && line.charAt(to) > ' ') {
+            to++;
+        }
+        return SubtitleTime.parse(line, from, to);
+    }
+
+    private static String stripBom(String line) {
+        return !line.isEmpty() && line.charAt(0) == '\uFEFF' ? line.substring(1) : line;
+    }
+
+    private static boolean isNumber(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
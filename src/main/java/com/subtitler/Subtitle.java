@@ -1,97 +1,142 @@
 package com.subtitler;
 
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
-
+// 单条字幕。时间以毫秒整数保存（SubtitleTime.NONE 表示未设置），
+// 不再为每条字幕创建 JavaFX 属性，表格只为正在显示的单元格临时生成属性。
+// 文本框中每条字幕占一行，内容里的换行写作 \N（与 ASS 一致）。
 public class Subtitle {
-    private final StringProperty content = new SimpleStringProperty();
-    private final StringProperty startTime = new SimpleStringProperty();
-    private final StringProperty endTime = new SimpleStringProperty();
-    
+    private String content;
+    private int startMillis = SubtitleTime.NONE;
+    private int endMillis = SubtitleTime.NONE;
+
+    // CueIndex 中登记的时间（毫秒），-1 表示未登记
+    int indexedStart = -1;
+    int indexedEnd = -1;
+
     public Subtitle(String rawText) {
         parseRawText(rawText);
     }
-    
+
+    public Subtitle(String content, int startMillis, int endMillis) {
+        this.content = content;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+    }
+
     private void parseRawText(String rawText) {
-        if (rawText.contains(" -> ")) {
-            String[] mainParts = rawText.split(" \\| ");
-            if (mainParts.length > 0) {
-                String timePart = mainParts[0];
-                String[] times = timePart.split(" -> ");
-                
-                if (times.length == 2) {
-                    // 完整格式：00:00:05,909 -> 00:00:08,909 | 文本
-                    startTime.set(times[0].trim());
-                    endTime.set(times[1].trim());
-                    content.set(mainParts.length > 1 ? mainParts[1] : "");
-                } else if (timePart.startsWith("-> ")) {
-                    // 只有结束时间：-> 00:00:08,909 | 文本
-                    startTime.set("");
-                    endTime.set(times[0].replace("-> ", "").trim());
-                    content.set(mainParts.length > 1 ? mainParts[1] : "");
-                } else if (timePart.endsWith(" ->")) {
-                    // 只有开始时间：00:00:05,909 -> | 文本
-                    startTime.set(times[0].trim());
-                    endTime.set("");
-                    content.set(mainParts.length > 1 ? mainParts[1] : "");
-                }
+        // 完整格式：00:00:05,909 -> 00:00:08,909 | 文本
+        // 只有结束时间：-> 00:00:08,909 | 文本
+        // 只有开始时间：00:00:05,909 -> | 文本
+        int bar = rawText.indexOf(" | ");
+        int arrow = bar < 0 ? -1 : rawText.lastIndexOf("->", bar);
+        if (arrow >= 0) {
+            int start = SubtitleTime.parse(rawText, 0, arrow);
+            int end = SubtitleTime.parse(rawText, arrow + 2, bar);
+            boolean startValid = start >= 0 || isBlank(rawText, 0, arrow);
+            boolean endValid = end >= 0 || isBlank(rawText, arrow + 2, bar);
+            if (startValid && endValid && (start >= 0 || end >= 0)) {
+                startMillis = start;
+                endMillis = end;
+                content = unescapeLineBreaks(rawText.substring(bar + 3));
+                return;
+            }
+        }
+        // 纯文本格式：文本
+        content = unescapeLineBreaks(rawText);
+        startMillis = SubtitleTime.NONE;
+        endMillis = SubtitleTime.NONE;
+    }
+
+    private static String unescapeLineBreaks(String text) {
+        return text.indexOf("\\N") < 0 ? text : text.replace("\\N", "\n");
+    }
+
+    private static StringBuilder appendEscaped(StringBuilder sb, String text) {
+        if (text == null) {
+            return sb;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                sb.append("\\N");
+            } else if (c != '\r') {
+                sb.append(c);
+            }
+        }
+        return sb;
+    }
+
+    private static boolean isBlank(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) > ' ') {
+                return false;
             }
-        } else {
-            // 纯文本格式：文本
-            content.set(rawText);
-            startTime.set("");
-            endTime.set("");
         }
+        return true;
     }
-    
+
     public String toRawText() {
-        String start = startTime.get() == null ? "" : startTime.get();
-        String end = endTime.get() == null ? "" : endTime.get();
-        
-        if (start.isEmpty() && end.isEmpty()) {
-            return content.get();
-        } else if (start.isEmpty()) {
-            return "-> " + end + " | " + content.get();
-        } else if (end.isEmpty()) {
-            return start + " -> | " + content.get();
-        } else {
-            return start + " -> " + end + " | " + content.get();
+        return appendRawText(new StringBuilder()).toString();
+    }
+
+    public StringBuilder appendRawText(StringBuilder sb) {
+        if (startMillis < 0 && endMillis < 0) {
+            return appendEscaped(sb, content);
+        }
+        if (startMillis >= 0) {
+            SubtitleTime.append(sb, startMillis).append(' ');
+        }
+        sb.append("->");
+        if (endMillis >= 0) {
+            SubtitleTime.append(sb.append(' '), endMillis);
         }
+        return appendEscaped(sb.append(" | "), content);
     }
-    
+
     public String getContent() {
-        return content.get();
+        return content;
     }
-    
+
     public void setContent(String value) {
-        content.set(value);
+        content = value;
     }
-    
-    public StringProperty contentProperty() {
-        return content;
+
+    public int getStartMillis() {
+        return startMillis;
+    }
+
+    public void setStartMillis(int millis) {
+        startMillis = millis;
+    }
+
+    public int getEndMillis() {
+        return endMillis;
+    }
+
+    public void setEndMillis(int millis) {
+        endMillis = millis;
     }
-    
+
+    public boolean hasStartTime() {
+        return startMillis >= 0;
+    }
+
+    public boolean hasEndTime() {
+        return endMillis >= 0;
+    }
+
     public String getStartTime() {
-        return startTime.get();
+        return SubtitleTime.format(startMillis);
     }
-    
+
     public void setStartTime(String value) {
-        startTime.set(value);
-    }
-    
-    public StringProperty startTimeProperty() {
-        return startTime;
+        startMillis = SubtitleTime.parse(value);
     }
-    
+
     public String getEndTime() {
-        return endTime.get();
+        return SubtitleTime.format(endMillis);
     }
-    
+
     public void setEndTime(String value) {
-        endTime.set(value);
-    }
-    
-    public StringProperty endTimeProperty() {
-        return endTime;
+        endMillis = SubtitleTime.parse(value);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package com.subtitler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// 烧录字幕：把当前字幕写成临时 ASS 文件，交给 ffmpeg 的 ass 滤镜，在同一次编码中叠加到画面上。
+// ffmpeg 的 ass/subtitles 滤镜需要可寻址的文件，不能从管道读取，所以使用编码结束即删除的临时文件。
+public class SubtitleBurnIn {
+    private final List<Subtitle> cues;
+    private final AssFormat.Style style;
+
+    // cues 应是 SubtitleExporter.snapshot 得到的副本，编码期间界面上的修改不会影响它
+    public SubtitleBurnIn(List<Subtitle> cues, AssFormat.Style style) {
+        this.cues = cues;
+        this.style = style;
+    }
+
+    public List<Subtitle> getCues() {
+        return cues;
+    }
+
+    public AssFormat.Style getStyle() {
+        return style;
+    }
+
+    // 写出临时 ASS 文件，offsetMillis 会从每条字幕的时间中减去（分段编码时使用），
+    // 完全落在 [0, durationMillis) 之外的字幕被跳过；durationMillis 小于 0 表示不限制
+    public Path writeTempFile(int offsetMillis, int durationMillis) throws IOException {
+        Path temp = Files.createTempFile("subtitler-burn-", ".ass");
+        try {
+            SubtitleExporter.write(shift(offsetMillis, durationMillis), temp, new AssFormat(style), null);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    private List<Subtitle> shift(int offsetMillis, int durationMillis) {
+        if (offsetMillis == 0 && durationMillis < 0) {
+            return cues;
+        }
+        List<Subtitle> shifted = new ArrayList<>();
+        for (Subtitle subtitle : cues) {
+            int start = subtitle.getStartMillis() - offsetMillis;
+            int end = subtitle.getEndMillis() - offsetMillis;
+            if (end <= 0 || (durationMillis >= 0 && start >= durationMillis)) {
+                continue;
+            }
+            shifted.add(new Subtitle(subtitle.getContent(), Math.max(start, 0), end));
+        }
+        return shifted;
+    }
+
+    // 生成 -vf 使用的滤镜描述。路径要经过两层转义：先按滤镜参数转义 \ ' :，
+    // 再按滤镜图描述转义 \ ' [ ] , ;，见 ffmpeg 文档 "Notes on filtergraph escaping"
+    public static String filter(Path assFile) {
+        String path = assFile.toAbsolutePath().toString().replace('\\', '/');
+        return "ass=filename=" + escape(escape(path, "\\':"), "\\'[],;");
+    }
+
+    private static String escape(String value, String special) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (special.indexOf(c) >= 0) {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,276 @@
+package com.subtitler;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// 文本框与字幕列表之间的增量同步。
+// 文本框的每一行对应一条字幕（空行没有字幕），快照中的 lineCues 记录每一行对应的字幕对象。
+// 文本变化经过防抖后在后台线程解析：只重新解析发生变化的行，生成新的不可变快照以及
+// 对字幕列表的最小修改，再回到 FX 线程一次性应用，表格和预览因此看到的是同一个版本。
+// 未改动的行保留原来的字幕对象，上方插入或删除行不会把时间错位到其他字幕上。
+// 除后台解析外，所有方法都只能在 FX 线程调用。
+public class SubtitleDocument {
+    private static final long DEBOUNCE_MILLIS = 150;
+
+    // 某一版本文本解析后的不可变快照
+    public static final class Snapshot {
+        private final long version;
+        private final String text;
+        private final List<Subtitle> lineCues;
+
+        private Snapshot(long version, String text, List<Subtitle> lineCues) {
+            this.version = version;
+            this.text = text;
+            this.lineCues = Collections.unmodifiableList(lineCues);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public List<Subtitle> getLineCues() {
+            return lineCues;
+        }
+    }
+
+    // 一次解析的结果：新快照，以及相对基准快照需要对字幕列表做的修改
+    private static final class ParseResult {
+        final Snapshot base;
+        final Snapshot snapshot;
+        final int removeFrom;
+        final int removeTo;
+        final List<Subtitle> added;
+
+        ParseResult(Snapshot base, Snapshot snapshot, int removeFrom, int removeTo, List<Subtitle> added) {
+            this.base = base;
+            this.snapshot = snapshot;
+            this.removeFrom = removeFrom;
+            this.removeTo = removeTo;
+            this.added = added;
+        }
+    }
+
+    private final ObservableList<Subtitle> subtitles;
+    private final ScheduledExecutorService parser = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "subtitle-parser");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Snapshot adopted = new Snapshot(0, "", Collections.singletonList(null));
+    private long latestVersion = 0;
+    private String pendingText;
+    private ScheduledFuture<?> pendingParse;
+
+    public SubtitleDocument(ObservableList<Subtitle> subtitles) {
+        this.subtitles = subtitles;
+    }
+
+    // 最新的文本，包括尚未解析完成的修改
+    public String getText() {
+        return pendingText != null ? pendingText : adopted.text;
+    }
+
+    public Snapshot getSnapshot() {
+        return adopted;
+    }
+
+    public boolean hasPendingChanges() {
+        return pendingText != null;
+    }
+
+    // 文本框内容变化后调用，解析在防抖后于后台进行，期间的新修改会让旧的解析结果作废
+    public void submit(String newText) {
+        if (newText.equals(getText())) {
+            return;
+        }
+        long version = ++latestVersion;
+        pendingText = newText;
+        Snapshot base = adopted;
+        cancelPendingParse();
+        pendingParse = parser.schedule(() -> {
+            ParseResult result = parse(base, newText, version);
+            Platform.runLater(() -> adopt(result));
+        }, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // 立即在当前线程完成尚未解析的修改，直接修改字幕列表之前必须调用
+    public void flush() {
+        if (pendingText == null) {
+            return;
+        }
+        cancelPendingParse();
+        adopt(parse(adopted, pendingText, latestVersion));
+    }
+
+    // 字幕列表被直接修改、文本框按字幕列表重新生成后调用，此时每条字幕恰好占一行
+    public void reset(String newText) {
+        cancelPendingParse();
+        pendingText = null;
+        long version = ++latestVersion;
+        int lineCount = countLineBreaks(newText, 0, newText.length()) + 1;
+        if (lineCount == subtitles.size() || lineCount == subtitles.size() + 1) {
+            List<Subtitle> lineCues = new ArrayList<>(lineCount);
+            lineCues.addAll(subtitles);
+            if (lineCount > subtitles.size()) {
+                lineCues.add(null);
+            }
+            adopted = new Snapshot(version, newText, lineCues);
+        } else {
+            // 行数对不上时以文本为准整体重新解析
+            Snapshot empty = new Snapshot(version, "", new ArrayList<>(Collections.singletonList(null)));
+            subtitles.clear();
+            adopted = empty;
+            adopt(parse(empty, newText, version));
+        }
+    }
+
+    private void cancelPendingParse() {
+        if (pendingParse != null) {
+            pendingParse.cancel(false);
+            pendingParse = null;
+        }
+    }
+
+    private void adopt(ParseResult result) {
+        // 已经有更新的修改，或者基准快照已被替换，丢弃这次结果
+        if (result.snapshot.version != latestVersion || result.base != adopted) {
+            return;
+        }
+        List<Subtitle> added = result.added;
+        if (result.removeTo - result.removeFrom == added.size()) {
+            for (int i = 0; i < added.size(); i++) {
+                subtitles.set(result.removeFrom + i, added.get(i));
+            }
+        } else {
+            if (result.removeTo > result.removeFrom) {
+                subtitles.remove(result.removeFrom, result.removeTo);
+            }
+            if (!added.isEmpty()) {
+                subtitles.addAll(result.removeFrom, added);
+            }
+        }
+        adopted = result.snapshot;
+        pendingText = null;
+        pendingParse = null;
+    }
+
+    // 计算 newText 相对基准快照的变化，不访问字幕列表，可以在任意线程执行
+    private static ParseResult parse(Snapshot base, String newText, long version) {
+        String oldText = base.text;
+        int oldLength = oldText.length();
+        int newLength = newText.length();
+
+        // 找出公共前缀和公共后缀，中间即为被修改的区域
+        int max = Math.min(oldLength, newLength);
+        int prefix = 0;
+        while (prefix < max && oldText.charAt(prefix) == newText.charAt(prefix)) {
+            prefix++;
+        }
+        max -= prefix;
+        int suffix = 0;
+        while (suffix < max && oldText.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+            suffix++;
+        }
+
+        // 被修改区域涉及的行：旧文本 [startLine, oldLastLine]，新文本 [startLine, newLastLine]
+        int startLine = countLineBreaks(newText, 0, prefix);
+        int oldLastLine = startLine + countLineBreaks(oldText, prefix, oldLength - suffix);
+        int newLastLine = startLine + countLineBreaks(newText, prefix, newLength - suffix);
+
+        List<Subtitle> replacement = new ArrayList<>(newLastLine - startLine + 1);
+        int lineStart = newText.lastIndexOf('\n', prefix - 1) + 1;
+        for (int line = startLine; line <= newLastLine; line++) {
+            int lineEnd = newText.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = newLength;
+            }
+            replacement.add(parseLine(newText, lineStart, lineEnd));
+            lineStart = lineEnd + 1;
+        }
+
+        List<Subtitle> baseLines = base.lineCues;
+        int cueFrom = 0;
+        for (int i = 0; i < startLine; i++) {
+            if (baseLines.get(i) != null) {
+                cueFrom++;
+            }
+        }
+        List<Subtitle> oldCues = new ArrayList<>();
+        for (int i = startLine; i <= oldLastLine; i++) {
+            if (baseLines.get(i) != null) {
+                oldCues.add(baseLines.get(i));
+            }
+        }
+        List<Subtitle> newCues = new ArrayList<>();
+        for (Subtitle subtitle : replacement) {
+            if (subtitle != null) {
+                newCues.add(subtitle);
+            }
+        }
+
+        // 首尾内容和时间都没变的字幕沿用原对象，不产生列表变更
+        int head = 0;
+        while (head < oldCues.size() && head < newCues.size() && sameCue(oldCues.get(head), newCues.get(head))) {
+            newCues.set(head, oldCues.get(head));
+            head++;
+        }
+        int tail = 0;
+        while (tail < oldCues.size() - head && tail < newCues.size() - head
+                && sameCue(oldCues.get(oldCues.size() - 1 - tail), newCues.get(newCues.size() - 1 - tail))) {
+            newCues.set(newCues.size() - 1 - tail, oldCues.get(oldCues.size() - 1 - tail));
+            tail++;
+        }
+
+        List<Subtitle> lines = new ArrayList<>(baseLines.size() - (oldLastLine - startLine) + (newLastLine - startLine));
+        lines.addAll(baseLines.subList(0, startLine));
+        int next = 0;
+        for (Subtitle subtitle : replacement) {
+            lines.add(subtitle == null ? null : newCues.get(next++));
+        }
+        lines.addAll(baseLines.subList(oldLastLine + 1, baseLines.size()));
+
+        Snapshot snapshot = new Snapshot(version, newText, lines);
+        return new ParseResult(base, snapshot, cueFrom + head, cueFrom + oldCues.size() - tail,
+            new ArrayList<>(newCues.subList(head, newCues.size() - tail)));
+    }
+
+    private static Subtitle parseLine(String text, int from, int to) {
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return from == to ? null : new Subtitle(text.substring(from, to));
+    }
+
+    // 在后台线程比较时，FX 线程可能正在给旧字幕打轴；这种情况下基准快照随后会被替换，
+    // 结果在 adopt 时被丢弃，因此这里读到的值不一致也不会被采用
+    private static boolean sameCue(Subtitle a, Subtitle b) {
+        return a.getStartMillis() == b.getStartMillis()
+            && a.getEndMillis() == b.getEndMillis()
+            && a.getContent().equals(b.getContent());
+    }
+
+    private static int countLineBreaks(String text, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,166 @@
+package com.subtitler;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+// 字幕导出：先一次性检查全部字幕并汇总所有问题，再在后台线程以 UTF-8 流式写入临时文件，
+// 写完后改名为目标文件，导出中途失败不会留下写了一半的字幕文件。
+// 格式之间的转换同样逐条读出、逐条写入。
+public final class SubtitleExporter {
+    private static final int WRITE_BUFFER_CHARS = 64 * 1024;
+
+    // 检查发现的问题，fatal 为 true 时无法导出
+    public static final class Issue {
+        private final int number;
+        private final boolean fatal;
+        private final String message;
+
+        Issue(int number, boolean fatal, String message) {
+            this.number = number;
+            this.fatal = fatal;
+            this.message = message;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public boolean isFatal() {
+            return fatal;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "第 " + number + " 条：" + message;
+        }
+    }
+
+    private SubtitleExporter() {
+    }
+
+    // 复制一份字幕，后台写入期间界面上的修改不会影响正在导出的内容
+    public static List<Subtitle> snapshot(List<Subtitle> subtitles) {
+        List<Subtitle> copy = new ArrayList<>(subtitles.size());
+        for (Subtitle subtitle : subtitles) {
+            copy.add(new Subtitle(subtitle.getContent(), subtitle.getStartMillis(), subtitle.getEndMillis()));
+        }
+        return copy;
+    }
+
+    public static List<Issue> validate(List<Subtitle> cues) {
+        return validate(cues, true);
+    }
+
+    // requireEndTime 为 false 时（如 LRC）允许缺少结束时间
+    public static List<Issue> validate(List<Subtitle> cues, boolean requireEndTime) {
+        List<Issue> issues = new ArrayList<>();
+        int previousStart = -1;
+        int previousEnd = -1;
+        for (int i = 0; i < cues.size(); i++) {
+            Subtitle subtitle = cues.get(i);
+            int number = i + 1;
+            int start = subtitle.getStartMillis();
+            int end = subtitle.getEndMillis();
+            if (start < 0 && end < 0 && requireEndTime) {
+                issues.add(new Issue(number, true, "缺少开始时间和结束时间"));
+                continue;
+            }
+            if (start < 0) {
+                issues.add(new Issue(number, true, "缺少开始时间"));
+                continue;
+            }
+            if (end < 0 && requireEndTime) {
+                issues.add(new Issue(number, true, "缺少结束时间"));
+                continue;
+            }
+            if (end >= 0 && end < start) {
+                issues.add(new Issue(number, true, "结束时间早于开始时间"));
+            }
+            if (start < previousStart) {
+                issues.add(new Issue(number, false, "开始时间早于上一条字幕"));
+            } else if (start < previousEnd) {
+                issues.add(new Issue(number, false, "与上一条字幕时间重叠"));
+            }
+            previousStart = start;
+            previousEnd = end;
+        }
+        return issues;
+    }
+
+    public static boolean hasFatal(List<Issue> issues) {
+        for (Issue issue : issues) {
+            if (issue.isFatal()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 逐条写入已打开的写入器
+    private interface Body {
+        void writeTo(SubtitleWriter writer) throws IOException;
+    }
+
+    // 在调用线程中按 format 写入，progress 接收 0~1 的进度
+    public static void write(List<Subtitle> cues, Path target, SubtitleFormat format, DoubleConsumer progress) throws IOException {
+        writeAtomically(target, format, writer -> {
+            int step = Math.max(cues.size() / 100, 1);
+            for (int i = 0; i < cues.size(); i++) {
+                writer.write(cues.get(i));
+                if (progress != null && (i + 1) % step == 0) {
+                    progress.accept((double) (i + 1) / cues.size());
+                }
+            }
+        });
+        if (progress != null) {
+            progress.accept(1.0);
+        }
+    }
+
+    // 按两边的扩展名把 source 转换为 target 的格式，不经过编辑器，内存中只有当前这一条字幕
+    public static void convert(Path source, Path target, DoubleConsumer progress) throws IOException {
+        SubtitleFormat sourceFormat = SubtitleImporter.formatOf(source);
+        SubtitleFormat targetFormat = SubtitleImporter.formatOf(target);
+        writeAtomically(target, targetFormat, writer -> SubtitleImporter.read(source, sourceFormat, progress, writer::write));
+    }
+
+    private static void writeAtomically(Path target, SubtitleFormat format, Body body) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 SubtitleWriter writer = format.newWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), WRITE_BUFFER_CHARS))) {
+                writer.writeHeader();
+                body.writeTo(writer);
+                writer.finish();
+                channel.force(true);
+            }
+            moveIntoPlace(temp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
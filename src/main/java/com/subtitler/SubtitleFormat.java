@@ -0,0 +1,25 @@
+package com.subtitler;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+// 字幕格式编解码器。每种格式提供流式的读取器和写入器，读写的都是同一个 Subtitle 模型，
+// 格式之间转换时逐条读出再逐条写入，不会拼出整个文件的字符串。
+// 新格式可以通过 META-INF/services/com.subtitler.SubtitleFormat 注册，见 SubtitleFormats。
+public interface SubtitleFormat {
+    // 显示在文件选择框中的名称
+    String getName();
+
+    // 不带点的小写扩展名，第一个作为保存时的默认扩展名
+    List<String> getExtensions();
+
+    SubtitleReader newReader(Reader reader);
+
+    SubtitleWriter newWriter(Writer writer);
+
+    // 格式本身是否需要结束时间，LRC 这类只有开始时间的格式返回 false
+    default boolean requiresEndTime() {
+        return true;
+    }
+}
@@ -0,0 +1,62 @@
+package com.subtitler;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.ServiceLoader;
+
+// 已知字幕格式的注册表：内置 SRT、WebVTT、ASS/SSA、LRC，
+// 另外通过 ServiceLoader 加载 classpath 上注册的其他 SubtitleFormat 实现。
+public final class SubtitleFormats {
+    public static final SubtitleFormat SRT = new SrtFormat();
+    public static final SubtitleFormat WEBVTT = new WebVttFormat();
+    public static final SubtitleFormat ASS = new AssFormat();
+    public static final SubtitleFormat LRC = new LrcFormat();
+
+    private static final List<SubtitleFormat> FORMATS = load();
+
+    private SubtitleFormats() {
+    }
+
+    public static List<SubtitleFormat> all() {
+        return FORMATS;
+    }
+
+    // 按扩展名查找格式，不认识时返回 null
+    public static SubtitleFormat forPath(Path path) {
+        String extension = extensionOf(path);
+        if (extension == null) {
+            return null;
+        }
+        for (SubtitleFormat format : FORMATS) {
+            if (format.getExtensions().contains(extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    static String extensionOf(Path path) {
+        Path fileName = path.getFileName();
+        if (fileName == null) {
+            return null;
+        }
+        String name = fileName.toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 || dot == name.length() - 1 ? null : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static List<SubtitleFormat> load() {
+        List<SubtitleFormat> formats = new ArrayList<>();
+        formats.add(SRT);
+        formats.add(WEBVTT);
+        formats.add(ASS);
+        formats.add(LRC);
+        for (SubtitleFormat format : ServiceLoader.load(SubtitleFormat.class)) {
+            formats.add(format);
+        }
+        return Collections.unmodifiableList(formats);
+    }
+}
@@ -0,0 +1,83 @@
+package com.subtitler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+// 字幕文件导入：通过 FileChannel 流式读取，先取文件开头的样本判断编码，
+// 再逐条解码解析，内存中只保留已解析出的字幕。应在后台线程调用。
+public final class SubtitleImporter {
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    private static final int READ_BUFFER_CHARS = 64 * 1024;
+
+    private SubtitleImporter() {
+    }
+
+    // 逐条接收读出的字幕，可以直接交给另一种格式的写入器
+    public interface CueSink {
+        void accept(Subtitle subtitle) throws IOException;
+    }
+
+    // 按扩展名选择格式读取，progress 接收 0~1 的读取进度，每前进约 1% 回调一次
+    public static List<Subtitle> read(Path path, DoubleConsumer progress) throws IOException {
+        return read(path, formatOf(path), progress);
+    }
+
+    public static List<Subtitle> read(Path path, SubtitleFormat format, DoubleConsumer progress) throws IOException {
+        List<Subtitle> cues = new ArrayList<>();
+        read(path, format, progress, cues::add);
+        return cues;
+    }
+
+    public static void read(Path path, SubtitleFormat format, DoubleConsumer progress, CueSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            CharsetDetector.Result detected = detect(channel);
+            channel.position(detected.getBomLength());
+
+            CharsetDecoder decoder = detected.getCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            try (SubtitleReader reader = format.newReader(Channels.newReader(channel, decoder, READ_BUFFER_CHARS))) {
+                long reported = 0;
+                long step = Math.max(size / 100, 1);
+                Subtitle subtitle;
+                while ((subtitle = reader.read()) != null) {
+                    sink.accept(subtitle);
+                    long position = channel.position();
+                    if (progress != null && position - reported >= step) {
+                        reported = position;
+                        progress.accept((double) position / size);
+                    }
+                }
+            }
+            if (progress != null) {
+                progress.accept(1.0);
+            }
+        }
+    }
+
+    static SubtitleFormat formatOf(Path path) throws IOException {
+        SubtitleFormat format = SubtitleFormats.forPath(path);
+        if (format == null) {
+            throw new IOException("不支持的字幕格式: " + path.getFileName());
+        }
+        return format;
+    }
+
+    private static CharsetDetector.Result detect(FileChannel channel) throws IOException {
+        ByteBuffer sample = ByteBuffer.allocate((int) Math.min(SAMPLE_SIZE, channel.size()));
+        while (sample.hasRemaining() && channel.read(sample) > 0) {
+            // 读满样本
+        }
+        return CharsetDetector.detect(sample.array(), sample.position());
+    }
+}
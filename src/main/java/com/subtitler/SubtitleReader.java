@@ -0,0 +1,10 @@
+package com.subtitler;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// 逐条读取字幕，每次只在内存中保留当前这一条
+public interface SubtitleReader extends Closeable {
+    // 读取下一条字幕，读完时返回 null
+    Subtitle read() throws IOException;
+}
@@ -0,0 +1,97 @@
+package com.subtitler;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// 封装字幕轨道：视频和音频直接复制（-c copy），当前字幕作为可选择的字幕轨道加入。
+// MKV 可以放 SRT 或 ASS，MP4 只支持 mov_text，由 ffmpeg 从 SRT 转换。
+public class SubtitleRemux {
+    public enum Track {
+        MKV_SRT("MKV / SRT", "mkv", "srt"),
+        MKV_ASS("MKV / ASS", "mkv", "ass"),
+        MP4_MOV_TEXT("MP4 / mov_text", "mp4", "mov_text");
+
+        private final String label;
+        private final String container;
+        private final String codec;
+
+        Track(String label, String container, String codec) {
+            this.label = label;
+            this.container = container;
+            this.codec = codec;
+        }
+
+        public String getContainer() {
+            return container;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final String input;
+    private final String output;
+    private final List<Subtitle> cues;
+    private final Track track;
+    private final String language;
+    private final String title;
+    private final long durationMillis;
+
+    // cues 应是 SubtitleExporter.snapshot 得到的副本；language 为 ISO 639-2 代码，如 chi、eng
+    public SubtitleRemux(String input, String output, List<Subtitle> cues, Track track,
+                         String language, String title, long durationMillis) {
+        this.input = input;
+        this.output = output;
+        this.cues = cues;
+        this.track = track;
+        this.language = language;
+        this.title = title;
+        this.durationMillis = durationMillis;
+    }
+
+    public void run(EncodingTask task) throws Exception {
+        SubtitleFormat format = track == Track.MKV_ASS ? SubtitleFormats.ASS : SubtitleFormats.SRT;
+        Path subtitleFile = Files.createTempFile("subtitler-remux-", "." + format.getExtensions().get(0));
+        try {
+            SubtitleExporter.write(cues, subtitleFile, format, null);
+
+            List<String> command = new ArrayList<>();
+            command.add("ffmpeg");
+            command.add("-i");
+            command.add(input);
+            command.add("-i");
+            command.add(subtitleFile.toString());
+            command.add("-map");
+            command.add("0:v");
+            command.add("-map");
+            command.add("0:a?");
+            command.add("-map");
+            command.add("1:0");
+            command.add("-c:v");
+            command.add("copy");
+            command.add("-c:a");
+            command.add("copy");
+            command.add("-c:s");
+            command.add(track.codec);
+            if (language != null && !language.isBlank()) {
+                command.add("-metadata:s:s:0");
+                command.add("language=" + language.trim());
+            }
+            if (title != null && !title.isBlank()) {
+                command.add("-metadata:s:s:0");
+                command.add("title=" + title.trim());
+            }
+            command.add("-disposition:s:0");
+            command.add("default");
+            command.add("-y");
+            command.add(output);
+            FfmpegRunner.run(task, command, durationMillis);
+        } finally {
+            Files.deleteIfExists(subtitleFile);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.subtitler;
+
+// 字幕时间的解析与格式化，时间统一以毫秒整数表示，-1 表示未设置。
+// 解析直接按字符扫描，不使用正则和 split；格式化追加到调用方复用的 StringBuilder。
+public final class SubtitleTime {
+    public static final int NONE = -1;
+
+    private SubtitleTime() {
+    }
+
+    public static int fromSeconds(double seconds) {
+        if (seconds < 0 || Double.isNaN(seconds)) {
+            return 0;
+        }
+        return (int) Math.round(seconds * 1000);
+    }
+
+    public static double toSeconds(int millis) {
+        return millis / 1000.0;
+    }
+
+    public static int parse(CharSequence text) {
+        return text == null ? NONE : parse(text, 0, text.length());
+    }
+
+    // 解析 text[from, to) 中的 HH:mm:ss,SSS（也接受 . 作为毫秒分隔符），两端空白会被忽略。
+    // 小时可以省略（WebVTT、LRC 的 mm:ss.xx），此时分钟允许超过 59；
+    // 毫秒位数不足三位时按小数处理，例如 ,5 表示 500 毫秒。空串、格式错误或超出 int 毫秒范围（约 596 小时）返回 NONE
+    public static int parse(CharSequence text, int from, int to) {
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        if (from == to) {
+            return NONE;
+        }
+        int first = 0;
+        int second = 0;
+        int colons = 0;
+        int value = 0;
+        int digits = 0;
+        int seconds = -1;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > 6) {
+                    return NONE;
+                }
+                value = value * 10 + (c - '0');
+            } else if (c == ':' && digits > 0 && seconds < 0 && colons < 2) {
+                if (colons == 0) {
+                    first = value;
+                } else {
+                    second = value;
+                }
+                colons++;
+                digits = 0;
+                value = 0;
+            } else if ((c == ',' || c == '.') && digits > 0 && seconds < 0 && colons > 0) {
+                seconds = value;
+                digits = 0;
+                value = 0;
+            } else {
+                return NONE;
+            }
+        }
+        if (digits == 0 || colons == 0) {
+            return NONE;
+        }
+        int millis = 0;
+        if (seconds < 0) {
+            seconds = value;
+        } else {
+            if (digits > 3) {
+                return NONE;
+            }
+            millis = value;
+            for (int i = digits; i < 3; i++) {
+                millis *= 10;
+            }
+        }
+        int hours = colons == 2 ? first : 0;
+        int minutes = colons == 2 ? second : first;
+        if (seconds > 59 || (colons == 2 && minutes > 59)) {
+            return NONE;
+        }
+        // 每段最多 6 位数字，小时或省略小时时的分钟很大时毫秒数会超出 int
+        long total = ((hours * 60L + minutes) * 60 + seconds) * 1000 + millis;
+        return total > Integer.MAX_VALUE ? NONE : (int) total;
+    }
+
+    public static String format(int millis) {
+        if (millis < 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(12);
+        append(sb, millis);
+        return sb.toString();
+    }
+
+    // 以 HH:mm:ss,SSS 追加到 sb，millis 为负时不追加任何内容
+    public static StringBuilder append(StringBuilder sb, int millis) {
+        return append(sb, millis, ',');
+    }
+
+    public static StringBuilder append(StringBuilder sb, int millis, char fractionSeparator) {
+        if (millis < 0) {
+            return sb;
+        }
+        int hours = millis / 3_600_000;
+        int minutes = millis / 60_000 % 60;
+        int seconds = millis / 1000 % 60;
+        int ms = millis % 1000;
+        if (hours < 10) {
+            sb.append('0');
+        }
+        sb.append(hours).append(':');
+        appendTwoDigits(sb, minutes).append(':');
+        appendTwoDigits(sb, seconds).append(fractionSeparator);
+        sb.append((char) ('0' + ms / 100))
+          .append((char) ('0' + ms / 10 % 10))
+          .append((char) ('0' + ms % 10));
+        return sb;
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder sb, int value) {
+        return sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
@@ -0,0 +1,14 @@
+package com.subtitler;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// 逐条写入字幕。调用顺序为 writeHeader -> write... -> finish，最后 close 关闭底层输出
+public interface SubtitleWriter extends Closeable {
+    void writeHeader() throws IOException;
+
+    void write(Subtitle subtitle) throws IOException;
+
+    // 写入文件尾并刷新缓冲
+    void finish() throws IOException;
+}
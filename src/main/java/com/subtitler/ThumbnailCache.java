@@ -0,0 +1,404 @@
+package com.subtitler;
+
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// 时间轴悬停预览用的缩略图。后台线程按固定间隔取时间点，解码每个时间点之前最近的关键帧，
+// 缩小到 160 像素宽的 RGB 图片。跳转目标正好是关键帧，解码器不用再往后解码，
+// 也不经过 VLC，不影响正在进行的播放。
+// 缩略图以关键帧为键放在按最近使用排序的内存缓存中，总大小超过预算时移出最久未用的；
+// 每张缩略图生成时同时写到磁盘，移出内存后再用到时从磁盘读回。磁盘缓存位于临时目录下，
+// 按视频路径、大小和修改时间区分，下次打开同一视频时直接复用；所有视频的磁盘缓存合计超过预算时，
+// 从最久没有打开过的视频开始整个目录删除。
+// get 只查内存，不在调用线程（FX 线程）读写文件：内存中没有的位置交给后台线程，
+// 插到顺序生成的前面优先处理，磁盘上有就读回，没有就生成，完成后通过 onExtracted 通知。
+public final class ThumbnailCache {
+    public static final int INTERVAL_MILLIS = 2000;
+    private static final int WIDTH = 160;
+    private static final long DEFAULT_BUDGET_BYTES = 32L << 20;
+    private static final long DISK_BUDGET_BYTES = 512L << 20;
+    private static final int FILE_MAGIC = 0x5448554D; // "THUM"
+
+    public static final class Thumbnail {
+        private final int millis;
+        private final int width;
+        private final int height;
+        private final byte[] rgb;
+
+        Thumbnail(int millis, int width, int height, byte[] rgb) {
+            this.millis = millis;
+            this.width = width;
+            this.height = height;
+            this.rgb = rgb;
+        }
+
+        // 缩略图实际对应的关键帧时间
+        public int getMillis() {
+            return millis;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        // 紧密排列的 RGB 像素，每行 width * 3 字节
+        public byte[] getRgb() {
+            return rgb;
+        }
+    }
+
+    private final Path media;
+    private final FrameIndex index;
+    private final long budgetBytes;
+    private final Path spillDirectory;
+    // 键为关键帧序号，accessOrder 为 true 时迭代顺序就是最久未用到最近使用
+    private final LinkedHashMap<Integer, Thumbnail> memory = new LinkedHashMap<>(64, 0.75f, true);
+    // 以下字段由 this 保护
+    private long memoryBytes;
+    private int requestedKeyframe = -1;
+    private boolean closed;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final Thread extractor;
+    private volatile Consumer<Thumbnail> onExtracted;
+
+    public ThumbnailCache(Path media, FrameIndex index) throws IOException {
+        this(media, index, DEFAULT_BUDGET_BYTES);
+    }
+
+    public ThumbnailCache(Path media, FrameIndex index, long budgetBytes) throws IOException {
+        this.media = media;
+        this.index = index;
+        this.budgetBytes = budgetBytes;
+        this.spillDirectory = spillDirectoryFor(media);
+        Files.createDirectories(spillDirectory);
+        extractor = new Thread(this::extractAll, "thumbnails");
+        extractor.setDaemon(true);
+    }
+
+    public static Path spillDirectoryFor(Path media) throws IOException {
+        String key = media.toAbsolutePath().toString() + '|' + Files.size(media) + '|'
+            + Files.getLastModifiedTime(media).toMillis();
+        return Paths.get(System.getProperty("java.io.tmpdir"), "subtitler-thumbnails",
+            String.format("%08x%08x", key.hashCode(), media.getFileName().toString().hashCode()));
+    }
+
+    // 后台生成或从磁盘读回一张缩略图时在生成线程中调用
+    public void setOnExtracted(Consumer<Thumbnail> onExtracted) {
+        this.onExtracted = onExtracted;
+    }
+
+    public void start() {
+        extractor.start();
+    }
+
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        extractor.interrupt();
+    }
+
+    // millis 处应显示的缩略图。内存中没有时返回 null，并让后台优先从磁盘读回或生成
+    public synchronized Thumbnail get(int millis) {
+        int keyframe = keyframeFor(millis);
+        if (keyframe < 0) {
+            return null;
+        }
+        Thumbnail cached = memory.get(keyframe);
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            return cached;
+        }
+        requestedKeyframe = keyframe;
+        notifyAll();
+        return null;
+    }
+
+    // 时间点按固定间隔取整，再找到不晚于它的关键帧
+    private int keyframeFor(int millis) {
+        if (index.size() == 0 || millis < 0) {
+            return -1;
+        }
+        int slot = millis / INTERVAL_MILLIS * INTERVAL_MILLIS;
+        return index.previousKeyframe(index.frameAt(slot));
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized int getMemoryCount() {
+        return memory.size();
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    // 悬停请求由后台从磁盘读回的次数
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    // 悬停请求需要后台重新生成的次数
+    public long getMisses() {
+        return misses.get();
+    }
+
+    // 内存和磁盘命中占全部查询的比例
+    public double getHitRate() {
+        long hits = memoryHits.get() + diskHits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    // 放入内存缓存，超出预算时移出最久未用的，磁盘上已有副本
+    private synchronized void put(int keyframe, Thumbnail thumbnail) {
+        Thumbnail previous = memory.put(keyframe, thumbnail);
+        if (previous != null) {
+            memoryBytes -= previous.rgb.length;
+        }
+        memoryBytes += thumbnail.rgb.length;
+        Iterator<Thumbnail> eldest = memory.values().iterator();
+        while (memoryBytes > budgetBytes && memory.size() > 1 && eldest.hasNext()) {
+            memoryBytes -= eldest.next().rgb.length;
+            eldest.remove();
+        }
+    }
+
+    private Path spillPathFor(int keyframe) {
+        return spillDirectory.resolve(index.getPtsMicros(keyframe) + ".rgb");
+    }
+
+    private Thumbnail readSpilled(int keyframe) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillPathFor(keyframe))))) {
+            if (in.readInt() != FILE_MAGIC) {
+                return null;
+            }
+            int width = in.readInt();
+            int height = in.readInt();
+            byte[] rgb = new byte[width * height * 3];
+            in.readFully(rgb);
+            return new Thumbnail(index.getFrameMillis(keyframe), width, height, rgb);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // 文件损坏或写到一半时按没有缓存处理，重新生成后覆盖
+            return null;
+        }
+    }
+
+    // 生成时就写入磁盘，被移出内存后不用再写，下次打开同一视频时也能直接使用
+    private void writeSpilled(int keyframe, Thumbnail thumbnail) {
+        Path path = spillPathFor(keyframe);
+        try {
+            Path temp = Files.createTempFile(spillDirectory, path.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(FILE_MAGIC);
+                    out.writeInt(thumbnail.width);
+                    out.writeInt(thumbnail.height);
+                    out.write(thumbnail.rgb);
+                }
+                try {
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // 写不进磁盘时缩略图仍在内存中，移出内存后再用到时重新生成
+        }
+    }
+
+    // 生成线程：先处理悬停请求，再按时间顺序补齐每个间隔点，磁盘上已有的跳过
+    private void extractAll() {
+        pruneSpillRoot();
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(media.toFile());
+        grabber.setPixelFormat(avutil.AV_PIX_FMT_RGB24);
+        grabber.setVideoOption("threads", "1");
+        try {
+            grabber.start();
+            int sourceWidth = grabber.getImageWidth();
+            int sourceHeight = grabber.getImageHeight();
+            if (sourceWidth <= 0 || sourceHeight <= 0) {
+                return;
+            }
+            grabber.setImageWidth(WIDTH);
+            grabber.setImageHeight(Math.max(2, (int) Math.round((double) WIDTH * sourceHeight / sourceWidth / 2) * 2));
+
+            int durationMillis = index.getFrameMillis(index.size() - 1);
+            int nextSlot = 0;
+            while (true) {
+                int keyframe;
+                boolean requested;
+                synchronized (this) {
+                    while (!closed && requestedKeyframe < 0 && nextSlot > durationMillis) {
+                        wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    keyframe = requestedKeyframe;
+                    requestedKeyframe = -1;
+                }
+                requested = keyframe >= 0;
+                if (!requested) {
+                    keyframe = keyframeFor(nextSlot);
+                    nextSlot += INTERVAL_MILLIS;
+                }
+                synchronized (this) {
+                    if (memory.containsKey(keyframe)) {
+                        continue;
+                    }
+                }
+                Thumbnail thumbnail = null;
+                if (Files.exists(spillPathFor(keyframe))) {
+                    // 顺序生成时磁盘上已有的不用读回，悬停请求的才放进内存
+                    if (!requested) {
+                        continue;
+                    }
+                    thumbnail = readSpilled(keyframe);
+                    if (thumbnail != null) {
+                        diskHits.incrementAndGet();
+                    }
+                }
+                if (thumbnail == null) {
+                    if (requested) {
+                        misses.incrementAndGet();
+                    }
+                    thumbnail = decode(grabber, keyframe);
+                    if (thumbnail != null) {
+                        writeSpilled(keyframe, thumbnail);
+                    }
+                }
+                if (thumbnail != null) {
+                    put(keyframe, thumbnail);
+                    Consumer<Thumbnail> listener = onExtracted;
+                    if (listener != null) {
+                        listener.accept(thumbnail);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (FFmpegFrameGrabber.Exception e) {
+            // 无法解码时不再生成，悬停时和尚未生成的位置一样只显示时间
+        } finally {
+            try {
+                grabber.release();
+            } catch (FFmpegFrameGrabber.Exception e) {
+                // 释放失败不影响已经生成的缩略图
+            }
+        }
+    }
+
+    // 磁盘缓存合计超过预算时，按目录最后修改时间从旧到新删除其他视频的目录。
+    // 当前视频的目录先更新修改时间，不会被删除；删除失败的文件留到下次再处理
+    private void pruneSpillRoot() {
+        Path root = spillDirectory.getParent();
+        List<Path> others = new ArrayList<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        Map<Path, FileTime> modified = new HashMap<>();
+        long total = 0;
+        try {
+            Files.setLastModifiedTime(spillDirectory, FileTime.fromMillis(System.currentTimeMillis()));
+            try (DirectoryStream<Path> directories = Files.newDirectoryStream(root, Files::isDirectory)) {
+                for (Path directory : directories) {
+                    long size = directorySize(directory);
+                    total += size;
+                    if (!directory.equals(spillDirectory)) {
+                        others.add(directory);
+                        sizes.put(directory, size);
+                        modified.put(directory, Files.getLastModifiedTime(directory));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            return;
+        }
+        others.sort(Comparator.comparing(modified::get));
+        for (Path directory : others) {
+            if (total <= DISK_BUDGET_BYTES) {
+                break;
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                continue;
+            }
+            total -= sizes.get(directory);
+        }
+    }
+
+    // 缩略图目录只有一层文件
+    private static long directorySize(Path directory) throws IOException {
+        long size = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                size += Files.size(file);
+            }
+        }
+        return size;
+    }
+
+    private Thumbnail decode(FFmpegFrameGrabber grabber, int keyframe) throws FFmpegFrameGrabber.Exception {
+        grabber.setTimestamp(index.getPtsMicros(keyframe));
+        Frame frame = grabber.grabImage();
+        if (frame == null || frame.image == null) {
+            return null;
+        }
+        int width = frame.imageWidth;
+        int height = frame.imageHeight;
+        byte[] rgb = new byte[width * height * 3];
+        ByteBuffer pixels = (ByteBuffer) frame.image[0];
+        for (int y = 0; y < height; y++) {
+            pixels.position(y * frame.imageStride);
+            pixels.get(rgb, y * width * 3, width * 3);
+        }
+        pixels.position(0);
+        return new Thumbnail(index.getFrameMillis(keyframe), width, height, rgb);
+    }
+}
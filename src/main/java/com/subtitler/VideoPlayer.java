@@ -2,23 +2,109 @@ package com.subtitler;
 
 import uk.co.caprica.vlcj.player.embedded.EmbeddedMediaPlayer;
 import uk.co.caprica.vlcj.factory.MediaPlayerFactory;
+import uk.co.caprica.vlcj.media.VideoTrackInfo;
+import javafx.animation.AnimationTimer;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import javafx.application.Platform;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
-import uk.co.caprica.vlcj.javafx.videosurface.ImageViewVideoSurface;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 public class VideoPlayer {
     private final ImageView imageView;
-    private final AtomicBoolean isPlaying = new AtomicBoolean(false);
-    private double currentTimeSeconds = 0;
-    private double durationSeconds = 0;
+    // 播放状态只通过整体替换快照来修改，VLC 事件只更新快照，不再逐条投递到 FX 线程；
+    // 界面由 stateSampler 每帧取样一次，有变化时才回调
+    private final AtomicReference<PlaybackState> state = new AtomicReference<>(PlaybackState.INITIAL);
+    // VLC 切换到新媒体（mediaChanged）后才接受事件，之前的事件属于上一个视频，直接丢弃
+    private volatile long eventGeneration = PlaybackState.INITIAL.getGeneration();
+    // 连续这么久没有变化且没在播放时停止取样，下次状态变化时再启动
+    private static final long SAMPLER_IDLE_NANOS = 500_000_000L;
+    private final AtomicBoolean samplerActive = new AtomicBoolean(false);
+    private final AnimationTimer stateSampler = new AnimationTimer() {
+        private PlaybackState delivered;
+        private long deliveredPosition = -1;
+        private long lastChange;
+
+        // now 与 System.nanoTime() 同一时间基准，播放中每帧按插值位置通知一次
+        @Override
+        public void handle(long now) {
+            // 视频画面也在这个脉冲中刷新，脉冲之间解码的多余帧只保留最新的一帧
+            boolean frameShown = videoSurface != null && videoSurface.refresh();
+            PlaybackState current = state.get();
+            long position = current.positionMillisAt(now);
+            if (current != delivered || position != deliveredPosition) {
+                PlaybackState previous = delivered;
+                boolean timeChanged = previous == null || position != deliveredPosition;
+                delivered = current;
+                deliveredPosition = position;
+                lastChange = now;
+                deliver(previous, current, position, timeChanged);
+            } else if (frameShown) {
+                lastChange = now;
+            } else if (!current.isPlaying() && now - lastChange > SAMPLER_IDLE_NANOS) {
+                stop();
+                samplerActive.set(false);
+                // 停止的同时状态又变了，由这里重新启动
+                if (state.get() != delivered || videoSurface.hasPendingFrame()) {
+                    requestSample();
+                }
+            }
+        }
+    };
     private VideoPlayerCallback callback;
-    private volatile boolean isUpdatingSlider = false;
     private MediaPlayerFactory mediaPlayerFactory;
     private EmbeddedMediaPlayer mediaPlayer;
+    private PixelBufferVideoSurface videoSurface;
     private Pane videoPane;
 
+    // 跳转在单独的线程中执行，同一时间只有一个跳转在进行；进行中收到的新目标只保留最新的一个，
+    // 中间的目标直接丢弃。拖动滑块时用粗略跳转，只短暂等待，松开时再精确跳转并等到画面到位。
+    private static final long COARSE_SEEK_WAIT_MILLIS = 150;
+    private static final long PRECISE_SEEK_WAIT_MILLIS = 1000;
+    // VLC 报告的时间与目标相差在一帧以内，且比跳转前的位置更接近目标，才视为跳转已到位；
+    // 拿不到帧率时按 25fps 估算一帧的时长
+    private static final long DEFAULT_FRAME_MILLIS = 40;
+
+    private static final class SeekRequest {
+        final long millis;
+        final boolean precise;
+        final long generation;
+
+        SeekRequest(long millis, boolean precise, long generation) {
+            this.millis = millis;
+            this.precise = precise;
+            this.generation = generation;
+        }
+    }
+
+    private final AtomicReference<SeekRequest> pendingSeek = new AtomicReference<>();
+    private final AtomicBoolean seekWorkerActive = new AtomicBoolean(false);
+    private final ExecutorService seekExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "video-seek");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Object seekLock = new Object();
+    // 以下字段由 seekLock 保护：正在等待到位的目标（-1 表示没有）、跳转前的位置、允许的误差，
+    // 以及第一个到位的时间报告（-1 表示还没有到位）
+    private long awaitedSeekMillis = -1;
+    private long seekOriginMillis = -1;
+    private long seekToleranceMillis = DEFAULT_FRAME_MILLIS;
+    private long arrivedSeekMillis = -1;
+    // 从发出跳转到收到新位置时间报告之间，旧位置的时间报告不再转发给界面
+    private volatile boolean seeking = false;
+    private final AtomicLong completedSeeks = new AtomicLong();
+    private final AtomicLong droppedSeeks = new AtomicLong();
+    private final AtomicLong totalSeekLatencyNanos = new AtomicLong();
+    private volatile double lastSeekLatencyMillis = 0;
+
     public VideoPlayer(ImageView imageView) {
         this.imageView = imageView;
         initializePlayer();
@@ -30,40 +116,65 @@ public class VideoPlayer {
         mediaPlayerFactory = new MediaPlayerFactory(args);
         mediaPlayer = mediaPlayerFactory.mediaPlayers().newEmbeddedMediaPlayer();
         
-        // 创建 JavaFX 视频表面并设置给播放器
-        ImageViewVideoSurface videoSurface = new ImageViewVideoSurface(imageView);
+        // VLC 解码的帧由取样脉冲显示，脉冲停止时新帧会重新启动它
+        videoSurface = new PixelBufferVideoSurface(imageView, this::requestSample);
         mediaPlayer.videoSurface().set(videoSurface);
         
         // 设置时间变化监听器
         mediaPlayer.events().addMediaPlayerEventListener(new uk.co.caprica.vlcj.player.base.MediaPlayerEventAdapter() {
             @Override
             public void timeChanged(uk.co.caprica.vlcj.player.base.MediaPlayer mediaPlayer, long newTime) {
-                currentTimeSeconds = newTime / 1000.0;
-                if (callback != null && !isUpdatingSlider) {
-                    Platform.runLater(() -> {
-                        callback.onTimeChanged(currentTimeSeconds);
-                    });
+                synchronized (seekLock) {
+                    if (awaitedSeekMillis >= 0 && arrivedSeekMillis < 0 && isSeekArrival(newTime)) {
+                        arrivedSeekMillis = newTime;
+                        seekLock.notifyAll();
+                    }
                 }
+                if (seeking) {
+                    return;
+                }
+                long now = System.nanoTime();
+                updateFromEvent(s -> s.withTime(newTime, now));
             }
 
             @Override
             public void lengthChanged(uk.co.caprica.vlcj.player.base.MediaPlayer mediaPlayer, long newLength) {
-                durationSeconds = newLength / 1000.0;
-                if (callback != null) {
-                    Platform.runLater(() -> {
-                        callback.onDurationChanged(durationSeconds);
-                    });
-                }
+                updateFromEvent(s -> s.withDuration(newLength));
+            }
+
+            @Override
+            public void mediaChanged(uk.co.caprica.vlcj.player.base.MediaPlayer mediaPlayer, uk.co.caprica.vlcj.media.MediaRef media) {
+                eventGeneration = state.get().getGeneration();
+            }
+
+            @Override
+            public void playing(uk.co.caprica.vlcj.player.base.MediaPlayer mediaPlayer) {
+                long now = System.nanoTime();
+                updateFromEvent(s -> s.withPlaying(true, now));
+            }
+
+            @Override
+            public void paused(uk.co.caprica.vlcj.player.base.MediaPlayer mediaPlayer) {
+                long now = System.nanoTime();
+                updateFromEvent(s -> s.withPlaying(false, now));
+            }
+
+            @Override
+            public void stopped(uk.co.caprica.vlcj.player.base.MediaPlayer mediaPlayer) {
+                long now = System.nanoTime();
+                updateFromEvent(s -> s.withPlaying(false, now));
             }
 
             @Override
             public void finished(uk.co.caprica.vlcj.player.base.MediaPlayer mediaPlayer) {
-                isPlaying.set(false);
+                long now = System.nanoTime();
+                updateFromEvent(s -> s.withPlaying(false, now));
             }
 
             @Override
             public void error(uk.co.caprica.vlcj.player.base.MediaPlayer mediaPlayer) {
-                isPlaying.set(false);
+                long now = System.nanoTime();
+                updateFromEvent(s -> s.withPlaying(false, now));
             }
         });
     }
@@ -72,20 +183,84 @@ public class VideoPlayer {
         this.callback = callback;
     }
 
+    // 当前播放状态的一致快照，任何线程都可以调用
+    public PlaybackState getState() {
+        return state.get();
+    }
+
+    // CAS 循环替换快照；change 返回原对象表示没有变化，此时不唤醒取样
+    private boolean update(UnaryOperator<PlaybackState> change) {
+        while (true) {
+            PlaybackState current = state.get();
+            PlaybackState next = change.apply(current);
+            if (next == current) {
+                return false;
+            }
+            if (state.compareAndSet(current, next)) {
+                requestSample();
+                return true;
+            }
+        }
+    }
+
+    // 只在快照仍属于 generation 对应的视频时应用修改
+    private boolean update(long generation, UnaryOperator<PlaybackState> change) {
+        return update(s -> s.getGeneration() == generation ? change.apply(s) : s);
+    }
+
+    // 事件线程调用；时间戳在进入 CAS 循环前取一次，重试时锚点不变
+    private void updateFromEvent(UnaryOperator<PlaybackState> change) {
+        update(eventGeneration, change);
+    }
+
+    private void requestSample() {
+        if (samplerActive.compareAndSet(false, true)) {
+            if (Platform.isFxApplicationThread()) {
+                stateSampler.start();
+            } else {
+                FxQueueMonitor.runLater(stateSampler::start);
+            }
+        }
+    }
+
+    // FX 线程：把新快照中变化的部分交给回调，换了视频时全部重新通知
+    private void deliver(PlaybackState previous, PlaybackState current, long positionMillis, boolean timeChanged) {
+        if (callback == null) {
+            return;
+        }
+        boolean newMedia = previous == null || previous.getGeneration() != current.getGeneration();
+        if (newMedia || previous.getDurationMillis() != current.getDurationMillis()) {
+            callback.onDurationChanged(current.getDurationSeconds());
+        }
+        if (newMedia || timeChanged) {
+            callback.onTimeChanged(positionMillis / 1000.0);
+        }
+    }
+
     public void openVideo(String filePath) throws Exception {
         if (mediaPlayer != null) {
             stop();
         }
 
+        // 丢弃上一个视频还没执行的跳转，之后上一个视频的事件和跳转结果都不会再改动状态；
+        // 被丢弃的跳转不会再把 seeking 清掉，这里直接恢复接受时间报告
+        pendingSeek.set(null);
+        seeking = false;
+        long opened = System.nanoTime();
+        long generation = state.updateAndGet(s -> s.nextGeneration(opened)).getGeneration();
+        requestSample();
+
         // 打开视频文件
         mediaPlayer.media().play(filePath);
         
         // 禁用字幕
         mediaPlayer.subpictures().setTrack(-1);
         
-        // 获取视频信息
-        currentTimeSeconds = 0;
-        durationSeconds = mediaPlayer.status().length() / 1000.0;
+        // 获取视频信息，此时通常还拿不到时长，稍后由 lengthChanged 补上
+        long length = mediaPlayer.status().length();
+        if (length > 0) {
+            update(generation, s -> s.withDuration(length));
+        }
         
         // 设置ImageView的尺寸
         Platform.runLater(() -> {
@@ -96,82 +271,222 @@ public class VideoPlayer {
             imageView.setFitHeight(800 / aspectRatio);
             imageView.setPreserveRatio(true);
         });
-        
-        if (callback != null) {
-            callback.onDurationChanged(durationSeconds);
-            callback.onTimeChanged(currentTimeSeconds);
+    }
+
+    // 换成时间轴相同的另一个文件继续播放（原视频与代理之间切换），从当前位置开始，保持播放或暂停状态。
+    // 界面看到的时间和时长不会跳变，旧文件的迟到事件和未完成的跳转都被丢弃
+    public void switchSource(String filePath) {
+        if (mediaPlayer == null) return;
+
+        pendingSeek.set(null);
+        long switched = System.nanoTime();
+        PlaybackState current = state.updateAndGet(s -> s.switchedSource(switched));
+        // 旧文件上的跳转结果会因代数不同被丢弃，新文件的时间报告要立即接受
+        seeking = false;
+        requestSample();
+
+        List<String> options = new ArrayList<>();
+        options.add(String.format(Locale.ROOT, ":start-time=%.3f", current.getTimeSeconds()));
+        if (!current.isPlaying()) {
+            options.add(":start-paused");
         }
+        mediaPlayer.media().play(filePath, options.toArray(new String[0]));
+        mediaPlayer.subpictures().setTrack(-1);
+        mediaPlayer.controls().setRate((float) current.getRate());
     }
 
     public void play() {
-        if (mediaPlayer == null || isPlaying.get()) return;
+        if (mediaPlayer == null || state.get().isPlaying()) return;
         
         mediaPlayer.controls().play();
-        isPlaying.set(true);
+        long now = System.nanoTime();
+        update(s -> s.withPlaying(true, now));
     }
 
     public void pause() {
-        if (mediaPlayer == null || !isPlaying.get()) return;
+        if (mediaPlayer == null || !state.get().isPlaying()) return;
         
         mediaPlayer.controls().pause();
-        isPlaying.set(false);
+        long now = System.nanoTime();
+        update(s -> s.withPlaying(false, now));
     }
 
     public void stop() {
         if (mediaPlayer == null) return;
         
         mediaPlayer.controls().stop();
-        isPlaying.set(false);
-        currentTimeSeconds = 0;
-        if (callback != null) {
-            Platform.runLater(() -> callback.onTimeChanged(currentTimeSeconds));
-        }
+        long now = System.nanoTime();
+        update(s -> s.withPlaying(false, now).withTime(0, now));
     }
 
+    // 精确跳转，立即返回，到位后通过 onSeekCompleted 回调
     public void seek(double seconds) {
+        requestSeek(seconds, true);
+    }
+
+    // 粗略跳转，用于拖动滑块：不等画面完全到位，尽快处理下一个目标
+    public void seekCoarse(double seconds) {
+        requestSeek(seconds, false);
+    }
+
+    private void requestSeek(double seconds, boolean precise) {
         if (mediaPlayer == null) return;
-        
-        isUpdatingSlider = true;
-        currentTimeSeconds = seconds;
-        mediaPlayer.controls().setTime((long)(seconds * 1000));
-        
-        // 等待一小段时间确保时间已经更新
-        try {
-            Thread.sleep(50);
-        } catch (InterruptedException e) {
-            // 忽略中断异常
+
+        long millis = (long) (seconds * 1000);
+        long generation = state.get().getGeneration();
+        long now = System.nanoTime();
+        update(generation, s -> s.withTime(millis, now));
+        seeking = true;
+        SeekRequest previous = pendingSeek.getAndSet(new SeekRequest(millis, precise, generation));
+        if (previous != null) {
+            droppedSeeks.incrementAndGet();
         }
-        
-        // 强制更新当前时间
-        currentTimeSeconds = mediaPlayer.status().time() / 1000.0;
-        
+        if (seekWorkerActive.compareAndSet(false, true)) {
+            seekExecutor.execute(this::drainSeeks);
+        }
+    }
+
+    private void drainSeeks() {
+        while (true) {
+            SeekRequest request;
+            while ((request = pendingSeek.getAndSet(null)) != null) {
+                performSeek(request);
+            }
+            seekWorkerActive.set(false);
+            // 释放标记之后又有新请求进来，并且没有被另一次 execute 接手，继续处理
+            if (pendingSeek.get() == null || !seekWorkerActive.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    // 由 seekLock 保护的调用方使用：报告的时间在目标的一帧以内，且不是跳转前位置附近的旧报告
+    private boolean isSeekArrival(long reportedMillis) {
+        long toTarget = Math.abs(reportedMillis - awaitedSeekMillis);
+        return toTarget <= seekToleranceMillis
+            && (seekOriginMillis < 0 || toTarget < Math.abs(reportedMillis - seekOriginMillis));
+    }
+
+    private long frameMillis() {
+        List<VideoTrackInfo> tracks = mediaPlayer.media().info().videoTracks();
+        if (tracks != null && !tracks.isEmpty()) {
+            VideoTrackInfo track = tracks.get(0);
+            if (track.frameRate() > 0 && track.frameRateBase() > 0) {
+                return (long) Math.ceil(1000.0 * track.frameRateBase() / track.frameRate());
+            }
+        }
+        return DEFAULT_FRAME_MILLIS;
+    }
+
+    private void performSeek(SeekRequest request) {
+        long origin = mediaPlayer.status().time();
+        long tolerance = frameMillis();
+        long issuedAt = System.nanoTime();
+        synchronized (seekLock) {
+            awaitedSeekMillis = request.millis;
+            seekOriginMillis = origin;
+            seekToleranceMillis = tolerance;
+            arrivedSeekMillis = -1;
+        }
+        mediaPlayer.controls().setTime(request.millis);
+
+        // 目标就在当前位置（不到半帧）时新旧报告无法区分，不等待，也不计入延迟统计
+        boolean stationary = origin >= 0 && Math.abs(origin - request.millis) * 2 < tolerance;
+        long arrivedMillis;
+        synchronized (seekLock) {
+            long waitMillis = stationary ? 0 : request.precise ? PRECISE_SEEK_WAIT_MILLIS : COARSE_SEEK_WAIT_MILLIS;
+            long deadline = issuedAt + waitMillis * 1_000_000L;
+            long remaining;
+            // 粗略跳转期间来了新目标就不再等待
+            while (arrivedSeekMillis < 0 && (remaining = deadline - System.nanoTime()) > 0
+                    && (request.precise || pendingSeek.get() == null)) {
+                try {
+                    seekLock.wait(Math.max(remaining / 1_000_000L, 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            arrivedMillis = arrivedSeekMillis;
+            awaitedSeekMillis = -1;
+        }
+        boolean arrived = arrivedMillis >= 0;
+
+        if (arrived && !stationary) {
+            long latency = System.nanoTime() - issuedAt;
+            lastSeekLatencyMillis = latency / 1_000_000.0;
+            totalSeekLatencyNanos.addAndGet(latency);
+            completedSeeks.incrementAndGet();
+        }
+        if (pendingSeek.get() != null) {
+            return;
+        }
+
+        // 最后一个跳转结束，恢复接受时间报告；期间已经打开了别的视频时结果作废。
+        // 锚定到确认到位的那次报告，没有等到时锚定到目标，不再读取可能仍是旧位置的 status().time()
+        long landedMillis = arrived ? arrivedMillis : request.millis;
+        long landedAt = System.nanoTime();
+        update(request.generation, s -> s.withTime(landedMillis, landedAt));
+        seeking = false;
+        double landed = landedMillis / 1000.0;
+        double latencyMillis = arrived ? lastSeekLatencyMillis : -1;
         if (callback != null) {
-            Platform.runLater(() -> {
-                callback.onTimeChanged(currentTimeSeconds);
-                isUpdatingSlider = false;
-            });
+            FxQueueMonitor.runLater(() -> callback.onSeekCompleted(landed, latencyMillis));
         }
     }
 
+    // 最近一次跳转从发出到 VLC 报告新位置的耗时
+    public double getLastSeekLatencyMillis() {
+        return lastSeekLatencyMillis;
+    }
+
+    public double getAverageSeekLatencyMillis() {
+        long count = completedSeeks.get();
+        return count == 0 ? 0 : totalSeekLatencyNanos.get() / 1_000_000.0 / count;
+    }
+
+    // 被更新的目标覆盖而没有执行的跳转次数
+    public long getDroppedSeekCount() {
+        return droppedSeeks.get();
+    }
+
+    // 按倍速在 VLC 两次时间报告之间插值，打点时误差约为一帧而不是报告间隔
     public double getCurrentTime() {
-        return currentTimeSeconds;
+        return state.get().positionSecondsAt(System.nanoTime());
+    }
+
+    public long getRenderedFrameCount() {
+        return videoSurface == null ? 0 : videoSurface.getRenderedFrames();
+    }
+
+    // FX 线程忙、来不及显示而被丢弃的帧数
+    public long getDroppedFrameCount() {
+        return videoSurface == null ? 0 : videoSurface.getDroppedFrames();
+    }
+
+    public long getDecodedFrameCount() {
+        return videoSurface == null ? 0 : videoSurface.getDecodedFrames();
     }
 
     public double getDuration() {
-        return durationSeconds;
+        return state.get().getDurationSeconds();
     }
 
     public boolean isPlaying() {
-        return isPlaying.get();
+        return state.get().isPlaying();
     }
 
     public void setPlaybackSpeed(double speed) {
         if (mediaPlayer != null) {
             mediaPlayer.controls().setRate((float)speed);
+            long now = System.nanoTime();
+            update(s -> s.withRate(speed, now));
         }
     }
 
     public void dispose() {
+        seekExecutor.shutdownNow();
+        stateSampler.stop();
         if (mediaPlayer != null) {
             stop();
             mediaPlayer.release();
@@ -181,8 +496,14 @@ public class VideoPlayer {
         }
     }
 
+    // 以下回调都在 FX 线程中调用；onTimeChanged 和 onDurationChanged 每帧最多各一次，
+    // 同一帧内两者来自同一个状态快照，且总是先通知时长
     public interface VideoPlayerCallback {
         void onTimeChanged(double currentTimeSeconds);
         void onDurationChanged(double durationSeconds);
+
+        // 跳转完成，latencyMillis 为 -1 表示等待超时，没有收到新位置的时间报告
+        default void onSeekCompleted(double currentTimeSeconds, double latencyMillis) {
+        }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.subtitler;
+
+import javafx.scene.Node;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.Skin;
+import javafx.scene.control.TableView;
+import javafx.scene.control.skin.VirtualFlow;
+
+// 表格中完整显示在视口内的行范围。VirtualFlow 每次布局（滚动、改变大小、增删行）之后才重新计算，
+// 播放时每帧查询只读取两个字段，不再遍历场景图查找单元格。
+// 没有皮肤或表格为空时范围为空：first 为 0，last 为 -1。
+public class VisibleRangeTracker {
+    private final TableView<?> table;
+    private VirtualFlow<?> flow;
+    private int first = 0;
+    private int last = -1;
+
+    public VisibleRangeTracker(TableView<?> table) {
+        this.table = table;
+        table.skinProperty().addListener((obs, oldSkin, newSkin) -> attach(newSkin));
+        attach(table.getSkin());
+    }
+
+    // 皮肤创建时就建好了 VirtualFlow，之后只在换皮肤时重新查找
+    private void attach(Skin<?> skin) {
+        flow = null;
+        first = 0;
+        last = -1;
+        if (skin == null) {
+            return;
+        }
+        Node node = table.lookup(".virtual-flow");
+        if (!(node instanceof VirtualFlow)) {
+            return;
+        }
+        VirtualFlow<?> attached = (VirtualFlow<?>) node;
+        flow = attached;
+        attached.needsLayoutProperty().addListener((obs, wasNeeded, needed) -> {
+            if (!needed && flow == attached) {
+                recompute();
+            }
+        });
+        recompute();
+    }
+
+    private void recompute() {
+        first = 0;
+        last = -1;
+        IndexedCell<?> firstCell = flow.getFirstVisibleCell();
+        IndexedCell<?> lastCell = flow.getLastVisibleCell();
+        if (firstCell == null || lastCell == null || firstCell.getIndex() < 0) {
+            return;
+        }
+        // 上下边缘只露出一部分的行不算可见，自动跟随时会把它滚动到完整可见
+        first = firstCell.getLayoutY() < 0 ? firstCell.getIndex() + 1 : firstCell.getIndex();
+        last = lastCell.getLayoutY() + lastCell.getHeight() > flow.getHeight() ? lastCell.getIndex() - 1 : lastCell.getIndex();
+    }
+
+    public int getFirst() {
+        return first;
+    }
+
+    public int getLast() {
+        return last;
+    }
+
+    public boolean isVisible(int index) {
+        return index >= first && index <= last;
+    }
+}
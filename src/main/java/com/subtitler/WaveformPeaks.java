@@ -0,0 +1,278 @@
+package com.subtitler;
+
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.FrameGrabber;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+// 音频波形的多级峰值金字塔。音频解码为 8 kHz 单声道，第 0 级每 10 毫秒一个 (min, max) 字节对，
+// 之后每一级把相邻两个合并为一个，直到只剩一个。三小时的音频全部级别约 4 MB。
+// 结果写入视频旁边的 <文件名>.peaks 并以只读方式映射，再次打开同一视频时不需要解码，也不占用堆内存。
+// 绘制时按每像素对应的时长选择级别，每个像素最多读取两个峰值。
+public final class WaveformPeaks {
+    public static final int BUCKET_MILLIS = 10;
+    private static final int SAMPLE_RATE = 8000;
+    private static final int SAMPLES_PER_BUCKET = SAMPLE_RATE * BUCKET_MILLIS / 1000;
+    private static final int CACHE_MAGIC = 0x5045414B; // "PEAK"
+    private static final int CACHE_VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+    private static final String CACHE_SUFFIX = ".peaks";
+
+    private final MappedByteBuffer buffer;
+    // 每一级的峰值个数和在文件中的起始位置
+    private final int[] counts;
+    private final int[] offsets;
+
+    private WaveformPeaks(MappedByteBuffer buffer, int baseCount, int levels) {
+        this.buffer = buffer;
+        this.counts = new int[levels];
+        this.offsets = new int[levels];
+        int count = baseCount;
+        int offset = HEADER_BYTES;
+        for (int level = 0; level < levels; level++) {
+            counts[level] = count;
+            offsets[level] = offset;
+            offset += count * 2;
+            count = (count + 1) / 2;
+        }
+    }
+
+    public int getLevelCount() {
+        return counts.length;
+    }
+
+    public int getBucketCount(int level) {
+        return counts[level];
+    }
+
+    public long getBucketMillis(int level) {
+        return (long) BUCKET_MILLIS << level;
+    }
+
+    public long getDurationMillis() {
+        return (long) counts[0] * BUCKET_MILLIS;
+    }
+
+    // 峰值取值范围 -128~127
+    public int getMin(int level, int bucket) {
+        return buffer.get(offsets[level] + bucket * 2);
+    }
+
+    public int getMax(int level, int bucket) {
+        return buffer.get(offsets[level] + bucket * 2 + 1);
+    }
+
+    // 每个峰值不超过 millisPerPixel 的最粗级别
+    public int levelFor(double millisPerPixel) {
+        int level = 0;
+        while (level + 1 < counts.length && getBucketMillis(level + 1) <= millisPerPixel) {
+            level++;
+        }
+        return level;
+    }
+
+    public static Path cachePathFor(Path media) {
+        return media.resolveSibling(media.getFileName() + CACHE_SUFFIX);
+    }
+
+    // 优先映射已有的缓存；需要解码时写到视频旁边，目录不可写时改写到临时目录
+    public static WaveformPeaks loadOrBuild(Path media, BooleanSupplier cancelled, DoubleConsumer progress) throws IOException {
+        WaveformPeaks cached = loadCached(media);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] base = decode(media, cancelled, progress);
+        if (base == null) {
+            return null;
+        }
+        Path cache = cachePathFor(media);
+        try {
+            write(media, base, cache);
+        } catch (IOException e) {
+            cache = Files.createTempFile("subtitler-", CACHE_SUFFIX);
+            cache.toFile().deleteOnExit();
+            write(media, base, cache);
+        }
+        return map(cache, media);
+    }
+
+    public static WaveformPeaks loadCached(Path media) throws IOException {
+        try {
+            return map(cachePathFor(media), media);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    // 映射缓存文件，与视频不匹配时返回 null
+    private static WaveformPeaks map(Path cache, Path media) throws IOException {
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != CACHE_MAGIC || buffer.getInt(4) != CACHE_VERSION
+                    || buffer.getLong(8) != Files.size(media)
+                    || buffer.getLong(16) != Files.getLastModifiedTime(media).toMillis()
+                    || buffer.getInt(24) != BUCKET_MILLIS) {
+                return null;
+            }
+            int baseCount = buffer.getInt(28);
+            int levels = buffer.getInt(32);
+            if (levels <= 0 || channel.size() < HEADER_BYTES + totalBytes(baseCount, levels)) {
+                return null;
+            }
+            return new WaveformPeaks(buffer, baseCount, levels);
+        }
+    }
+
+    private static long totalBytes(int baseCount, int levels) {
+        long total = 0;
+        int count = baseCount;
+        for (int level = 0; level < levels; level++) {
+            total += count * 2L;
+            count = (count + 1) / 2;
+        }
+        return total;
+    }
+
+    private static int levelsFor(int baseCount) {
+        int levels = 1;
+        for (int count = baseCount; count > 1; count = (count + 1) / 2) {
+            levels++;
+        }
+        return levels;
+    }
+
+    // 由第 0 级逐级合并出整个金字塔，写入临时文件后改名
+    private static void write(Path media, byte[] base, Path cache) throws IOException {
+        int baseCount = base.length / 2;
+        int levels = levelsFor(baseCount);
+        ByteBuffer data = ByteBuffer.allocate((int) (HEADER_BYTES + totalBytes(baseCount, levels)));
+        data.putInt(CACHE_MAGIC).putInt(CACHE_VERSION)
+            .putLong(Files.size(media)).putLong(Files.getLastModifiedTime(media).toMillis())
+            .putInt(BUCKET_MILLIS).putInt(baseCount).putInt(levels);
+        data.position(HEADER_BYTES);
+        data.put(base);
+        int previous = HEADER_BYTES;
+        int count = baseCount;
+        for (int level = 1; level < levels; level++) {
+            int next = (count + 1) / 2;
+            for (int i = 0; i < next; i++) {
+                int a = previous + i * 4;
+                int b = 2 * i + 1 < count ? a + 2 : a;
+                data.put((byte) Math.min(data.get(a), data.get(b)));
+                data.put((byte) Math.max(data.get(a + 1), data.get(b + 1)));
+            }
+            previous += count * 2;
+            count = next;
+        }
+        data.flip();
+
+        Path temp = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+            }
+            try {
+                Files.move(temp, cache, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    // 解码音频并计算第 0 级峰值，返回交错存放的 (min, max)；没有音轨时得到空数组
+    private static byte[] decode(Path media, BooleanSupplier cancelled, DoubleConsumer progress) throws IOException {
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(media.toFile());
+        grabber.setAudioChannels(1);
+        grabber.setSampleRate(SAMPLE_RATE);
+        grabber.setSampleMode(FrameGrabber.SampleMode.SHORT);
+        try {
+            grabber.start();
+            if (!grabber.hasAudio()) {
+                return new byte[0];
+            }
+            long lengthMicros = grabber.getLengthInTime();
+            byte[] peaks = new byte[(int) Math.max(lengthMicros / 1000 / BUCKET_MILLIS * 2 + 2, 1024)];
+            int count = 0;
+            int filled = 0;
+            int min = Short.MAX_VALUE;
+            int max = Short.MIN_VALUE;
+            int frames = 0;
+            Frame frame;
+            // grabSamples 跳过视频数据包，不解码画面
+            while ((frame = grabber.grabSamples()) != null) {
+                if (frame.samples == null) {
+                    continue;
+                }
+                ShortBuffer samples = (ShortBuffer) frame.samples[0];
+                while (samples.hasRemaining()) {
+                    int sample = samples.get();
+                    if (sample < min) {
+                        min = sample;
+                    }
+                    if (sample > max) {
+                        max = sample;
+                    }
+                    if (++filled == SAMPLES_PER_BUCKET) {
+                        if (count + 2 > peaks.length) {
+                            peaks = Arrays.copyOf(peaks, peaks.length * 2);
+                        }
+                        peaks[count++] = (byte) (min >> 8);
+                        peaks[count++] = (byte) (max >> 8);
+                        filled = 0;
+                        min = Short.MAX_VALUE;
+                        max = Short.MIN_VALUE;
+                    }
+                }
+                if ((++frames & 63) == 0) {
+                    if (cancelled.getAsBoolean()) {
+                        return null;
+                    }
+                    if (progress != null && lengthMicros > 0) {
+                        progress.accept(Math.min((double) frame.timestamp / lengthMicros, 1.0));
+                    }
+                }
+            }
+            if (filled > 0) {
+                if (count + 2 > peaks.length) {
+                    peaks = Arrays.copyOf(peaks, count + 2);
+                }
+                peaks[count++] = (byte) (min >> 8);
+                peaks[count++] = (byte) (max >> 8);
+            }
+            if (progress != null) {
+                progress.accept(1.0);
+            }
+            return Arrays.copyOf(peaks, count);
+        } catch (FFmpegFrameGrabber.Exception e) {
+            throw new IOException("无法解码音频: " + e.getMessage(), e);
+        } finally {
+            try {
+                grabber.release();
+            } catch (FFmpegFrameGrabber.Exception e) {
+                // 释放失败不影响已经算出的峰值
+            }
+        }
+    }
+}
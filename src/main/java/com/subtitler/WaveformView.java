@@ -0,0 +1,157 @@
+package com.subtitler;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+import java.util.function.DoubleConsumer;
+
+// 时间轴上方的音频波形。默认显示整个视频，与下方滑块对齐；滚轮以鼠标位置为中心缩放，
+// 缩放后播放位置移出可见范围时整页跟随，单击跳转到对应时间。
+// 每次重绘只为每个像素列读取对应级别的一两个峰值，与视频长度无关。
+public class WaveformView extends Pane {
+    private static final long MIN_VISIBLE_MILLIS = 1000;
+    private static final double ZOOM_STEP = 1.5;
+    private static final Color BACKGROUND = Color.rgb(32, 32, 32);
+    private static final Color WAVE = Color.rgb(90, 200, 120);
+    private static final Color PLAYHEAD = Color.rgb(230, 60, 60);
+
+    private final Canvas canvas = new Canvas();
+    private WaveformPeaks peaks;
+    private long durationMillis;
+    private long playheadMillis;
+    // 可见范围，visibleMillis 为 0 时显示整个视频
+    private long visibleStart;
+    private long visibleMillis;
+    private DoubleConsumer onSeek;
+
+    public WaveformView() {
+        getChildren().add(canvas);
+        setMinHeight(40);
+        setPrefHeight(60);
+
+        setOnScroll(event -> {
+            if (durationMillis > 0 && event.getDeltaY() != 0) {
+                zoom(event.getDeltaY() > 0 ? 1 / ZOOM_STEP : ZOOM_STEP, event.getX());
+                event.consume();
+            }
+        });
+        setOnMouseClicked(event -> {
+            if (onSeek != null && durationMillis > 0 && getWidth() > 0) {
+                onSeek.accept(timeAt(event.getX()) / 1000.0);
+            }
+        });
+    }
+
+    @Override
+    protected void layoutChildren() {
+        if (canvas.getWidth() != getWidth() || canvas.getHeight() != getHeight()) {
+            canvas.setWidth(getWidth());
+            canvas.setHeight(getHeight());
+            redraw();
+        }
+    }
+
+    public void setPeaks(WaveformPeaks peaks) {
+        this.peaks = peaks;
+        redraw();
+    }
+
+    // 时长不变时保留缩放，切换到代理播放时会再次通知相同的时长
+    public void setDurationMillis(long durationMillis) {
+        if (durationMillis == this.durationMillis) {
+            return;
+        }
+        this.durationMillis = durationMillis;
+        visibleMillis = 0;
+        visibleStart = 0;
+        redraw();
+    }
+
+    public void setPlayheadMillis(long playheadMillis) {
+        if (playheadMillis == this.playheadMillis) {
+            return;
+        }
+        this.playheadMillis = playheadMillis;
+        if (visibleMillis > 0 && (playheadMillis < visibleStart || playheadMillis >= visibleStart + visibleMillis)) {
+            setVisibleStart(playheadMillis);
+        }
+        redraw();
+    }
+
+    public void setOnSeek(DoubleConsumer onSeek) {
+        this.onSeek = onSeek;
+    }
+
+    private long visibleLength() {
+        return visibleMillis > 0 ? visibleMillis : durationMillis;
+    }
+
+    private long timeAt(double x) {
+        return visibleStart + Math.round(x / getWidth() * visibleLength());
+    }
+
+    private void setVisibleStart(long start) {
+        visibleStart = Math.max(Math.min(start, durationMillis - visibleLength()), 0);
+    }
+
+    // factor 小于 1 放大；x 处的时间在缩放前后保持在同一位置
+    private void zoom(double factor, double x) {
+        long anchor = timeAt(x);
+        long length = Math.round(visibleLength() * factor);
+        length = Math.max(Math.min(length, durationMillis), Math.min(MIN_VISIBLE_MILLIS, durationMillis));
+        visibleMillis = length >= durationMillis ? 0 : length;
+        setVisibleStart(anchor - Math.round(x / getWidth() * length));
+        redraw();
+    }
+
+    private void redraw() {
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.setFill(BACKGROUND);
+        g.fillRect(0, 0, width, height);
+        long length = visibleLength();
+        if (width <= 0 || length <= 0) {
+            return;
+        }
+        double middle = height / 2;
+        double millisPerPixel = length / width;
+
+        if (peaks != null && peaks.getBucketCount(0) > 0) {
+            int level = peaks.levelFor(millisPerPixel);
+            long bucketMillis = peaks.getBucketMillis(level);
+            int buckets = peaks.getBucketCount(level);
+            double scale = middle / 128.0;
+            g.setStroke(WAVE);
+            g.setLineWidth(1);
+            int columns = (int) Math.ceil(width);
+            for (int x = 0; x < columns; x++) {
+                double from = visibleStart + x * millisPerPixel;
+                int first = (int) (from / bucketMillis);
+                int last = (int) Math.ceil((from + millisPerPixel) / bucketMillis);
+                if (first >= buckets) {
+                    break;
+                }
+                last = Math.min(Math.max(last, first + 1), buckets);
+                int min = 127;
+                int max = -128;
+                for (int i = first; i < last; i++) {
+                    min = Math.min(min, peaks.getMin(level, i));
+                    max = Math.max(max, peaks.getMax(level, i));
+                }
+                g.strokeLine(x + 0.5, middle - max * scale, x + 0.5, middle - min * scale);
+            }
+        } else {
+            g.setStroke(WAVE.darker());
+            g.strokeLine(0, middle, width, middle);
+        }
+
+        double playheadX = (playheadMillis - visibleStart) / millisPerPixel;
+        if (playheadX >= 0 && playheadX <= width) {
+            g.setStroke(PLAYHEAD);
+            g.strokeLine(Math.floor(playheadX) + 0.5, 0, Math.floor(playheadX) + 0.5, height);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.subtitler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+// WebVTT：WEBVTT 文件头，可选的 cue 标识行，HH:mm:ss.SSS --> HH:mm:ss.SSS（小时可省略）加 cue 设置，
+// 正文中不能有空行。NOTE、STYLE、REGION 块在读取时跳过。
+public class WebVttFormat implements SubtitleFormat {
+    private static final List<String> EXTENSIONS = List.of("vtt");
+
+    @Override
+    public String getName() {
+        return "WebVTT字幕";
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return EXTENSIONS;
+    }
+
+    @Override
+    public SubtitleReader newReader(Reader reader) {
+        return new VttReader(reader);
+    }
+
+    @Override
+    public SubtitleWriter newWriter(Writer writer) {
+        return new VttWriter(writer);
+    }
+
+    private static class VttReader implements SubtitleReader {
+        private final BufferedReader reader;
+        private final StringBuilder content = new StringBuilder();
+
+        VttReader(Reader reader) {
+            this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 64 * 1024);
+        }
+
+        @Override
+        public Subtitle read() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                    line = line.substring(1);
+                }
+                int arrow = line.indexOf("-->");
+                if (arrow < 0) {
+                    // 文件头、注释、样式块以及 cue 标识行，跳过整块或这一行
+                    if (line.startsWith("WEBVTT") || line.startsWith("NOTE") || line.startsWith("STYLE") || line.startsWith("REGION")) {
+                        skipBlock();
+                    }
+                    continue;
+                }
+                int start = SubtitleTime.parse(line, 0, arrow);
+                int end = parseEnd(line, arrow + 3);
+                content.setLength(0);
+                while ((line = reader.readLine()) != null && !line.trim().isEmpty()) {
+                    if (content.length() > 0) {
+                        content.append('\n');
+                    }
+                    appendUnescaped(content, line.trim());
+                }
+                return new Subtitle(content.toString(), start, end);
+            }
+            return null;
+        }
+
+        private void skipBlock() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null && !line.trim().isEmpty()) {
+                // 跳到空行
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static class VttWriter implements SubtitleWriter {
+        private final Writer writer;
+        private final StringBuilder block = new StringBuilder(256);
+
+        VttWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void writeHeader() throws IOException {
+            writer.write("WEBVTT\n\n");
+        }
+
+        @Override
+        public void write(Subtitle subtitle) throws IOException {
+            block.setLength(0);
+            SubtitleTime.append(block, subtitle.getStartMillis(), '.').append(" --> ");
+            SubtitleTime.append(block, subtitle.getEndMillis(), '.').append('\n');
+            appendEscaped(block, subtitle.getContent().trim());
+            block.append("\n\n");
+            writer.append(block);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    // 时间后面可能跟有 align:start 等 cue 设置，只取第一个空白之前的部分
+    private static int parseEnd(String line, int from) {
+        while (from < line.length() && line.charAt(from) <= ' ') {
+            from++;
+        }
+        int to = from;
+        while (to < line.length() && line.charAt(to) > ' ') {
+            to++;
+        }
+        return SubtitleTime.parse(line, from, to);
+    }
+
+    // 正文中的空行会截断 cue，--> 会被当成时间行，& 需要写成实体；<i> 等标签原样保留
+    static void appendEscaped(StringBuilder sb, String content) {
+        boolean lineStart = true;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '\r') {
+                continue;
+            }
+            if (c == '\n') {
+                if (!lineStart) {
+                    sb.append('\n');
+                    lineStart = true;
+                }
+                continue;
+            }
+            lineStart = false;
+            if (c == '&') {
+                sb.append("&amp;");
+            } else if (c == '>' && i >= 2 && content.charAt(i - 1) == '-' && content.charAt(i - 2) == '-') {
+                sb.append("&gt;");
+            } else {
+                sb.append(c);
+            }
+        }
+        if (lineStart && sb.length() > 0 && sb.charAt(sb.length() - 1) == '\n') {
+            sb.setLength(sb.length() - 1);
+        }
+    }
+
+    static void appendUnescaped(StringBuilder sb, String line) {
+        int i = 0;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (c == '&') {
+                int semicolon = line.indexOf(';', i);
+                if (semicolon > i && semicolon - i <= 6) {
+                    char decoded = decodeEntity(line, i + 1, semicolon);
+                    if (decoded != 0) {
+                        sb.append(decoded);
+                        i = semicolon + 1;
+                        continue;
+                    }
+                }
+            }
+            sb.append(c);
+            i++;
+        }
+    }
+
+    private static char decodeEntity(String line, int from, int to) {
+        if (line.regionMatches(from, "amp", 0, 3) && to - from == 3) {
+            return '&';
+        }
+        if (line.regionMatches(from, "lt", 0, 2) && to - from == 2) {
+            return '<';
+        }
+        if (line.regionMatches(from, "gt", 0, 2) && to - from == 2) {
+            return '>';
+        }
+        if (line.regionMatches(from, "nbsp", 0, 4) && to - from == 4) {
+            return '\u00A0';
+        }
+        if (line.regionMatches(from, "lrm", 0, 3) && to - from == 3) {
+            return '\u200E';
+        }
+        if (line.regionMatches(from, "rlm", 0, 3) && to - from == 3) {
+            return '\u200F';
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,84 @@
+package com.subtitler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AutoTimerTest {
+    private static List<Subtitle> untimed(int count) {
+        List<Subtitle> cues = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            cues.add(new Subtitle("cue " + i, SubtitleTime.NONE, SubtitleTime.NONE));
+        }
+        return cues;
+    }
+
+    private static SpeechDetector.Segment segment(int start, int end) {
+        return new SpeechDetector.Segment(start, end);
+    }
+
+    @Test
+    void assignsSegmentsInOrder() {
+        List<Subtitle> cues = untimed(2);
+        int assigned = AutoTimer.assign(cues, Arrays.asList(segment(1000, 2000), segment(3000, 4500)),
+            new AutoTimer.Rules(), 10_000);
+        assertEquals(2, assigned);
+        assertEquals(1000, cues.get(0).getStartMillis());
+        assertEquals(2000, cues.get(0).getEndMillis());
+        assertEquals(3000, cues.get(1).getStartMillis());
+        assertEquals(4500, cues.get(1).getEndMillis());
+    }
+
+    @Test
+    void mergesShortestPauseWhenSegmentsOutnumberCues() {
+        List<Subtitle> cues = untimed(2);
+        AutoTimer.assign(cues, Arrays.asList(segment(0, 1000), segment(1100, 2000), segment(4000, 5000)),
+            new AutoTimer.Rules(), 10_000);
+        assertEquals(0, cues.get(0).getStartMillis());
+        assertEquals(2000, cues.get(0).getEndMillis());
+        assertEquals(4000, cues.get(1).getStartMillis());
+    }
+
+    @Test
+    void splitsLongestSegmentWhenCuesOutnumberSegments() {
+        List<Subtitle> cues = untimed(2);
+        AutoTimer.assign(cues, Arrays.asList(segment(0, 4000)), new AutoTimer.Rules(), 10_000);
+        assertEquals(0, cues.get(0).getStartMillis());
+        assertEquals(2000, cues.get(1).getStartMillis());
+        // 两句之间留出最小间隔
+        assertTrue(cues.get(0).getEndMillis() <= 2000 - 100);
+    }
+
+    @Test
+    void appliesDurationRules() {
+        AutoTimer.Rules rules = new AutoTimer.Rules().setMinDurationMillis(800).setMaxDurationMillis(3000);
+        List<Subtitle> cues = untimed(2);
+        AutoTimer.assign(cues, Arrays.asList(segment(0, 200), segment(5000, 15_000)), rules, 20_000);
+        assertEquals(800, cues.get(0).getEndMillis());
+        assertEquals(8000, cues.get(1).getEndMillis());
+    }
+
+    @Test
+    void timedCuesBoundUntimedRuns() {
+        List<Subtitle> cues = untimed(3);
+        cues.set(1, new Subtitle("timed", 5000, 6000));
+        int assigned = AutoTimer.assign(cues,
+            Arrays.asList(segment(1000, 2000), segment(5200, 5800), segment(7000, 8000)), new AutoTimer.Rules(), 10_000);
+        assertEquals(2, assigned);
+        assertEquals(1000, cues.get(0).getStartMillis());
+        assertEquals(5000, cues.get(1).getStartMillis());
+        assertEquals(7000, cues.get(2).getStartMillis());
+    }
+
+    @Test
+    void leavesCuesUntouchedWithoutSpeech() {
+        List<Subtitle> cues = untimed(1);
+        assertEquals(0, AutoTimer.assign(cues, new ArrayList<>(), new AutoTimer.Rules(), 10_000));
+        assertEquals(SubtitleTime.NONE, cues.get(0).getStartMillis());
+    }
+}
@@ -0,0 +1,54 @@
+package com.subtitler;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CharsetDetectorTest {
+    private static CharsetDetector.Result detect(byte[] data) {
+        return CharsetDetector.detect(data, data.length);
+    }
+
+    @Test
+    void detectsBom() {
+        CharsetDetector.Result utf8 = detect(new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'a'});
+        assertEquals(StandardCharsets.UTF_8, utf8.getCharset());
+        assertEquals(3, utf8.getBomLength());
+        assertEquals(StandardCharsets.UTF_16LE, detect(new byte[] {(byte) 0xFF, (byte) 0xFE, 'a', 0}).getCharset());
+        assertEquals(StandardCharsets.UTF_16BE, detect(new byte[] {(byte) 0xFE, (byte) 0xFF, 0, 'a'}).getCharset());
+    }
+
+    @Test
+    void detectsUtf8WithoutBom() {
+        CharsetDetector.Result result = detect("字幕文件".getBytes(StandardCharsets.UTF_8));
+        assertEquals(StandardCharsets.UTF_8, result.getCharset());
+        assertEquals(0, result.getBomLength());
+    }
+
+    @Test
+    void truncatedUtf8TailIsAccepted() {
+        byte[] data = "字幕".getBytes(StandardCharsets.UTF_8);
+        assertTrue(CharsetDetector.isValidUtf8(data, data.length - 1));
+        assertFalse(CharsetDetector.isValidUtf8(new byte[] {(byte) 0xC0, 'a'}, 2));
+    }
+
+    @Test
+    void distinguishesGbkFromBig5() {
+        String simplified = "这是一个简体中文字幕文件，我们说话的时候会显示这些内容。";
+        String traditional = "這是一個繁體中文字幕檔案，我們說話的時候會顯示這些內容。";
+        assertEquals(CharsetDetector.GB18030, detect(simplified.getBytes(CharsetDetector.GB18030)).getCharset());
+        assertEquals(CharsetDetector.BIG5, detect(traditional.getBytes(CharsetDetector.BIG5)).getCharset());
+    }
+
+    @Test
+    void onlyInspectsGivenLength() {
+        byte[] data = Arrays.copyOf("abc".getBytes(StandardCharsets.US_ASCII), 16);
+        Arrays.fill(data, 3, 16, (byte) 0xFF);
+        assertEquals(StandardCharsets.UTF_8, CharsetDetector.detect(data, 3).getCharset());
+    }
+}
@@ -0,0 +1,60 @@
+package com.subtitler;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.List;
+
+// CueIndex 与逐条扫描的查找耗时对比。8000 条短字幕外加一条贯穿全片的长字幕，
+// 模拟三小时直播的字幕和一直显示的台标、说明之类的长句。
+// 运行：mvn test-compile 后以测试类路径执行 com.subtitler.CueIndexBenchmark
+public final class CueIndexBenchmark {
+    private static final int CUES = 8000;
+    private static final int LOOKUPS = 2_000_000;
+
+    private CueIndexBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        ObservableList<Subtitle> list = FXCollections.observableArrayList();
+        list.add(new Subtitle("long", 0, 3 * 3_600_000));
+        for (int i = 0; i < CUES; i++) {
+            list.add(new Subtitle("cue " + i, i * 1350, i * 1350 + 1000));
+        }
+        CueIndex index = new CueIndex(list);
+        CueIndex.Lookup result = new CueIndex.Lookup();
+        int span = CUES * 1350;
+
+        for (int round = 0; round < 3; round++) {
+            long found = 0;
+            long begin = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                index.lookup((i * 7919L % span) / 1000.0, result);
+                found += result.current != null ? 1 : 0;
+            }
+            long indexed = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            int scans = LOOKUPS / 100;
+            for (int i = 0; i < scans; i++) {
+                found += linearScan(list, (int) (i * 7919L % span)) != null ? 1 : 0;
+            }
+            long scanned = System.nanoTime() - begin;
+
+            System.out.printf("CueIndex: %.1f ns/次, 逐条扫描: %.1f ns/次 (%d)%n",
+                (double) indexed / LOOKUPS, (double) scanned / scans, found);
+        }
+    }
+
+    // 原先 updateSubtitlePreview 的做法：从头扫描，取覆盖该时刻、开始时间最晚的一句
+    private static Subtitle linearScan(List<Subtitle> list, int time) {
+        Subtitle current = null;
+        for (Subtitle subtitle : list) {
+            if (subtitle.getStartMillis() <= time && subtitle.getEndMillis() >= time
+                    && (current == null || subtitle.getStartMillis() >= current.getStartMillis())) {
+                current = subtitle;
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,176 @@
+package com.subtitler;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CueIndexTest {
+    @Test
+    void findsCurrentPreviousAndNext() {
+        Subtitle a = new Subtitle("a", 1000, 2000);
+        Subtitle b = new Subtitle("b", 3000, 4000);
+        Subtitle c = new Subtitle("c", 5000, 6000);
+        CueIndex index = new CueIndex(FXCollections.observableArrayList(a, b, c));
+        CueIndex.Lookup result = new CueIndex.Lookup();
+
+        index.lookup(3.5, result);
+        assertSame(a, result.previous);
+        assertSame(b, result.current);
+        assertSame(c, result.next);
+
+        // 两句之间没有当前句
+        index.lookup(4.5, result);
+        assertSame(b, result.previous);
+        assertNull(result.current);
+        assertSame(c, result.next);
+
+        index.lookup(0.5, result);
+        assertNull(result.previous);
+        assertNull(result.current);
+        assertSame(a, result.next);
+    }
+
+    @Test
+    void reportsPositionAndVersion() {
+        Subtitle a = new Subtitle("a", 1000, 2000);
+        Subtitle b = new Subtitle("b", 3000, 4000);
+        ObservableList<Subtitle> list = FXCollections.observableArrayList(a, b);
+        CueIndex index = new CueIndex(list);
+        CueIndex.Lookup result = new CueIndex.Lookup();
+
+        index.lookup(3.5, result);
+        assertEquals(1, result.position);
+        index.lookup(2.5, result);
+        assertEquals(-1, result.position);
+
+        // 修改时间和列表都会让版本变化
+        int version = index.version();
+        b.setStartMillis(500);
+        index.update(b);
+        assertNotEquals(version, index.version());
+        version = index.version();
+        list.remove(a);
+        assertNotEquals(version, index.version());
+    }
+
+    @Test
+    void overlappingCuesPreferLatestStart() {
+        Subtitle longCue = new Subtitle("long", 0, 10_000);
+        Subtitle shortCue = new Subtitle("short", 2000, 3000);
+        CueIndex index = new CueIndex(FXCollections.observableArrayList(longCue, shortCue));
+        CueIndex.Lookup result = new CueIndex.Lookup();
+
+        index.lookup(2.5, result);
+        assertSame(shortCue, result.current);
+        // 短句结束后仍在长句之内
+        index.lookup(5, result);
+        assertSame(longCue, result.current);
+    }
+
+    @Test
+    void followsListChangesAndUpdates() {
+        Subtitle a = new Subtitle("a", 1000, 2000);
+        Subtitle untimed = new Subtitle("untimed", SubtitleTime.NONE, SubtitleTime.NONE);
+        ObservableList<Subtitle> list = FXCollections.observableArrayList(a, untimed);
+        CueIndex index = new CueIndex(list);
+        CueIndex.Lookup result = new CueIndex.Lookup();
+        assertEquals(1, index.size());
+
+        Subtitle b = new Subtitle("b", 3000, 4000);
+        list.add(b);
+        index.lookup(3.2, result);
+        assertSame(b, result.current);
+
+        b.setStartMillis(5000);
+        b.setEndMillis(6000);
+        index.update(b);
+        index.lookup(3.2, result);
+        assertNull(result.current);
+        assertSame(b, result.next);
+
+        list.remove(a);
+        index.lookup(1.5, result);
+        assertNull(result.current);
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void longCueDoesNotHideLaterShortCues() {
+        ObservableList<Subtitle> list = FXCollections.observableArrayList();
+        Subtitle longCue = new Subtitle("long", 0, 3_600_000);
+        list.add(longCue);
+        for (int i = 0; i < 1000; i++) {
+            list.add(new Subtitle("short " + i, 1000 + i * 3000, 2000 + i * 3000));
+        }
+        CueIndex index = new CueIndex(list);
+        CueIndex.Lookup result = new CueIndex.Lookup();
+        index.lookup(1501.5, result);
+        assertSame(list.get(501), result.current);
+        // 两句短字幕之间落回长字幕
+        index.lookup(1502.5, result);
+        assertSame(longCue, result.current);
+    }
+
+    // 随机增删改后与逐条扫描的结果比较：覆盖该时刻、开始时间最晚（相同时取列表中靠后）的一句
+    @Test
+    void matchesLinearScanAfterRandomEdits() {
+        Random random = new Random(7);
+        ObservableList<Subtitle> list = FXCollections.observableArrayList();
+        CueIndex index = new CueIndex(list);
+        CueIndex.Lookup result = new CueIndex.Lookup();
+        for (int round = 0; round < 2000; round++) {
+            int action = random.nextInt(4);
+            if (action < 2 || list.isEmpty()) {
+                list.add(random.nextInt(list.size() + 1), randomCue(random));
+            } else if (action == 2) {
+                list.remove(random.nextInt(list.size()));
+            } else {
+                Subtitle cue = list.get(random.nextInt(list.size()));
+                Subtitle changed = randomCue(random);
+                cue.setStartMillis(changed.getStartMillis());
+                cue.setEndMillis(changed.getEndMillis());
+                index.update(cue);
+            }
+            if (round % 50 == 0) {
+                list.setAll(new ArrayList<>(list));
+            }
+            int time = random.nextInt(110_000);
+            index.lookup(time / 1000.0, result);
+            assertSame(linearCurrent(list, time), result.current, "round " + round);
+        }
+    }
+
+    private static Subtitle randomCue(Random random) {
+        int start = random.nextInt(10) == 0 ? SubtitleTime.NONE : random.nextInt(100_000);
+        int length = random.nextInt(20) == 0 ? 60_000 : random.nextInt(3000);
+        int end = random.nextInt(10) == 0 ? SubtitleTime.NONE : Math.max(start, 0) + length;
+        return new Subtitle("cue", start, end);
+    }
+
+    private static Subtitle linearCurrent(List<Subtitle> list, int time) {
+        List<Subtitle> timed = new ArrayList<>();
+        for (Subtitle subtitle : list) {
+            if (subtitle.getStartMillis() >= 0) {
+                timed.add(subtitle);
+            }
+        }
+        timed.sort(Comparator.comparingInt(Subtitle::getStartMillis));
+        for (int i = timed.size() - 1; i >= 0; i--) {
+            Subtitle subtitle = timed.get(i);
+            if (subtitle.getStartMillis() <= time && subtitle.getEndMillis() >= time) {
+                return subtitle;
+            }
+        }
+        return null;
+    }
+}
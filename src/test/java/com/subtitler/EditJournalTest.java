@@ -0,0 +1,110 @@
+package com.subtitler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EditJournalTest {
+    private static String apply(String text, EditJournal.Edit edit) {
+        return text.substring(0, edit.offset) + edit.insert + text.substring(edit.offset + edit.removeLength);
+    }
+
+    @Test
+    void diffFindsMinimalReplacement() {
+        EditJournal.Edit edit = EditJournal.diff("abcdef", "abXYef");
+        assertEquals(2, edit.offset);
+        assertEquals(2, edit.removeLength);
+        assertEquals("XY", edit.insert);
+        assertNull(EditJournal.diff("same", "same"));
+    }
+
+    @Test
+    void diffHandlesRepeatedCharacters() {
+        EditJournal.Edit edit = EditJournal.diff("aaa", "aaaa");
+        assertEquals("aaaa", apply("aaa", edit));
+        assertEquals(0, edit.removeLength);
+    }
+
+    @Test
+    void undoAndRedoRestoreText() {
+        EditJournal journal = new EditJournal();
+        journal.record("line1\nline2", "line1\nLINE2", false);
+        journal.record("line1\nLINE2", "line1\nLINE2\nline3", false);
+
+        String text = "line1\nLINE2\nline3";
+        text = apply(text, journal.undo());
+        assertEquals("line1\nLINE2", text);
+        text = apply(text, journal.undo());
+        assertEquals("line1\nline2", text);
+        assertFalse(journal.canUndo());
+
+        text = apply(text, journal.redo());
+        assertEquals("line1\nLINE2", text);
+        assertTrue(journal.canRedo());
+    }
+
+    @Test
+    void consecutiveTypingCoalesces() {
+        EditJournal journal = new EditJournal();
+        journal.record("", "a", true);
+        journal.record("a", "ab", true);
+        journal.record("ab", "abc", true);
+        assertEquals("", apply("abc", journal.undo()));
+        assertFalse(journal.canUndo());
+    }
+
+    @Test
+    void breakCoalescingStartsNewStep() {
+        EditJournal journal = new EditJournal();
+        journal.record("", "a", true);
+        journal.breakCoalescing();
+        journal.record("a", "ab", true);
+        assertEquals("a", apply("ab", journal.undo()));
+        assertTrue(journal.canUndo());
+    }
+
+    @Test
+    void newEditClearsRedo() {
+        EditJournal journal = new EditJournal();
+        journal.record("a", "b", false);
+        journal.undo();
+        journal.record("a", "c", false);
+        assertFalse(journal.canRedo());
+    }
+
+    @Test
+    void budgetDropsOldestEntries() {
+        EditJournal journal = new EditJournal(1024);
+        String text = "";
+        for (int i = 0; i < 100; i++) {
+            String next = text + "line " + i + "\n";
+            journal.record(text, next, false);
+            text = next;
+        }
+        assertTrue(journal.getUsedBytes() <= 1024);
+        int undone = 0;
+        while (journal.canUndo()) {
+            text = apply(text, journal.undo());
+            undone++;
+        }
+        assertTrue(undone > 0 && undone < 100);
+        journal.clear();
+        assertEquals(0, journal.getUsedBytes());
+    }
+
+    @Test
+    void oversizedEntryIsDropped() {
+        EditJournal journal = new EditJournal(1024);
+        journal.record("a", "b", false);
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            large.append("line ").append(i).append('\n');
+        }
+        journal.record("b", large.toString(), false);
+        assertFalse(journal.canUndo());
+        assertEquals(0, journal.getUsedBytes());
+    }
+}
@@ -0,0 +1,60 @@
+package com.subtitler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EncodingSchedulerTest {
+    // 任务自己的槽位加上家族剩余的空闲槽位，超出后等待归还
+    @Test
+    void sessionsBorrowFamilySlots() throws Exception {
+        EncodingScheduler scheduler = new EncodingScheduler(4);
+        scheduler.setSlots(EncodingScheduler.EncoderFamily.NVENC, 2);
+        EncodingScheduler.Sessions sessions = scheduler.newSessions(EncodingScheduler.EncoderFamily.NVENC);
+        sessions.acquire();
+        sessions.acquire();
+        sessions.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                sessions.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        sessions.release();
+        assertTrue(acquired.await(2, TimeUnit.SECONDS));
+        scheduler.shutdown();
+    }
+
+    @Test
+    void waitingSessionIsInterruptible() throws Exception {
+        EncodingScheduler scheduler = new EncodingScheduler(4);
+        scheduler.setSlots(EncodingScheduler.EncoderFamily.QSV, 1);
+        EncodingScheduler.Sessions sessions = scheduler.newSessions(EncodingScheduler.EncoderFamily.QSV);
+        sessions.acquire();
+        sessions.acquire();
+
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                sessions.acquire();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        waiter.start();
+        Thread.sleep(100);
+        waiter.interrupt();
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,62 @@
+package com.subtitler;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FfmpegProgressParserTest {
+    // 回调拿到的是复用对象，这里只拷贝用到的字段
+    private static List<long[]> parse(String output) throws IOException {
+        List<long[]> result = new ArrayList<>();
+        new FfmpegProgressParser().parse(new ByteArrayInputStream(output.getBytes(StandardCharsets.US_ASCII)),
+            progress -> result.add(new long[] {progress.getFrame(), progress.getOutTimeMicros(),
+                Math.round(progress.getSpeed() * 100), Math.round(progress.getFps() * 10), progress.isEnd() ? 1 : 0}));
+        return result;
+    }
+
+    @Test
+    void reportsEachProgressBlock() throws IOException {
+        List<long[]> blocks = parse("frame=120\nfps=29.9\nbitrate=1024.5kbits/s\ntotal_size=4096\n"
+            + "out_time_us=4000000\nspeed=1.25x\nprogress=continue\n"
+            + "frame=240\r\nout_time_ms=8000000\r\nspeed=N/A\r\nprogress=end");
+        assertEquals(2, blocks.size());
+        assertEquals(120, blocks.get(0)[0]);
+        assertEquals(4_000_000, blocks.get(0)[1]);
+        assertEquals(125, blocks.get(0)[2]);
+        assertEquals(299, blocks.get(0)[3]);
+        assertEquals(0, blocks.get(0)[4]);
+
+        assertEquals(240, blocks.get(1)[0]);
+        assertEquals(8_000_000, blocks.get(1)[1]);
+        assertEquals(-100, blocks.get(1)[2]);
+        assertEquals(1, blocks.get(1)[4]);
+    }
+
+    @Test
+    void ignoresUnknownAndMalformedLines() throws IOException {
+        List<long[]> blocks = parse("garbage\n=1\nstream_0_0_q=28.0\nframe=7\nprogress=continue\n");
+        assertEquals(1, blocks.size());
+        assertEquals(7, blocks.get(0)[0]);
+    }
+
+    @Test
+    void parsesNumbersWithSuffixesAndPlaceholders() {
+        assertEquals(1024.5, FfmpegProgressParser.parseDouble(bytes(" 1024.5kbits/s"), 0, 14));
+        assertEquals(-1, FfmpegProgressParser.parseDouble(bytes("N/A"), 0, 3));
+        assertEquals(42, FfmpegProgressParser.parseLong(bytes("42"), 0, 2));
+        assertEquals(-7, FfmpegProgressParser.parseLong(bytes("-7"), 0, 2));
+        assertEquals(-1, FfmpegProgressParser.parseLong(bytes("N/A"), 0, 3));
+        // 只解析给定范围
+        assertEquals(12, FfmpegProgressParser.parseLong(bytes("1234"), 0, 2));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
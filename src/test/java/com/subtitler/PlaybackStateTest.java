@@ -0,0 +1,87 @@
+package com.subtitler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlaybackStateTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void pausedPositionStaysAtAnchor() {
+        PlaybackState state = PlaybackState.INITIAL.withDuration(60_000).withTime(1000, 0);
+        assertEquals(1000, state.positionMillisAt(500 * MS));
+    }
+
+    @Test
+    void playingPositionExtrapolatesWithRate() {
+        PlaybackState state = PlaybackState.INITIAL.withDuration(60_000).withTime(1000, 0)
+            .withPlaying(true, 0).withRate(2.0, 0);
+        assertEquals(1000, state.positionMillisAt(0));
+        assertEquals(1500, state.positionMillisAt(250 * MS));
+        // 锚点之前的时刻不往回推
+        assertEquals(1000, state.positionMillisAt(-10 * MS));
+    }
+
+    @Test
+    void positionIsClampedToDuration() {
+        PlaybackState state = PlaybackState.INITIAL.withDuration(2000).withTime(1900, 0).withPlaying(true, 0);
+        assertEquals(2000, state.positionMillisAt(1000 * MS));
+    }
+
+    @Test
+    void pausingFreezesExtrapolatedPosition() {
+        PlaybackState state = PlaybackState.INITIAL.withDuration(60_000).withPlaying(true, 0);
+        PlaybackState paused = state.withPlaying(false, 300 * MS);
+        assertEquals(300, paused.getTimeMillis());
+        assertEquals(300, paused.positionMillisAt(5000 * MS));
+    }
+
+    @Test
+    void repeatedReportKeepsAnchor() {
+        PlaybackState state = PlaybackState.INITIAL.withTime(1000, 10 * MS);
+        assertSame(state, state.withTime(1000, 20 * MS));
+        assertSame(state, state.withRate(1.0, 20 * MS));
+    }
+
+    @Test
+    void switchedSourceKeepsPosition() {
+        PlaybackState state = PlaybackState.INITIAL.withDuration(60_000).withTime(1000, 0).withPlaying(true, 0);
+        PlaybackState switched = state.switchedSource(400 * MS);
+        assertEquals(state.getGeneration() + 1, switched.getGeneration());
+        assertEquals(1400, switched.getTimeMillis());
+        assertTrue(switched.isPlaying());
+        assertEquals(60_000, switched.getDurationMillis());
+
+        PlaybackState next = switched.nextGeneration(500 * MS);
+        assertEquals(0, next.getTimeMillis());
+        assertEquals(0, next.getDurationMillis());
+    }
+
+    // VLC 大约每 250 毫秒报告一次时间，报告的值落后真实位置一段随机的解码、投递延迟，
+    // 而且只按整毫秒上报。按报告重新锚定后，任意时刻外推的位置与真实位置之差应在一帧左右。
+    @Test
+    void interpolationErrorStaysWithinAboutOneFrame() {
+        Random random = new Random(42);
+        long frameMillis = 40;
+        long durationMillis = 10 * 60_000;
+        PlaybackState state = PlaybackState.INITIAL.withDuration(durationMillis).withPlaying(true, 0);
+        long nextReportNanos = 250 * MS;
+        long maxError = 0;
+        for (long now = 0; now < 60_000 * MS; now += 16_666_667L) {
+            while (nextReportNanos <= now) {
+                long lateMillis = random.nextInt(20);
+                long reported = (nextReportNanos / MS) - lateMillis;
+                state = state.withTime(reported, nextReportNanos);
+                nextReportNanos += (230 + random.nextInt(41)) * MS;
+            }
+            long truth = now / MS;
+            maxError = Math.max(maxError, Math.abs(state.positionMillisAt(now) - truth));
+        }
+        assertTrue(maxError <= frameMillis, "最大误差 " + maxError + " 毫秒");
+    }
+}
@@ -0,0 +1,60 @@
+package com.subtitler;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SrtReaderTest {
+    private static List<Subtitle> readAll(String text) throws IOException {
+        List<Subtitle> result = new ArrayList<>();
+        try (SrtReader reader = new SrtReader(new StringReader(text))) {
+            Subtitle subtitle;
+            while ((subtitle = reader.read()) != null) {
+                result.add(subtitle);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void readsBlocks() throws IOException {
+        List<Subtitle> cues = readAll("1\n00:00:01,000 --> 00:00:02,500\n第一行\n第二行\n\n"
+            + "2\n00:00:03,000 --> 00:00:04,000 X1:10 Y1:20\n下一句\n");
+        assertEquals(2, cues.size());
+        assertEquals("第一行\n第二行", cues.get(0).getContent());
+        assertEquals(1000, cues.get(0).getStartMillis());
+        assertEquals(2500, cues.get(0).getEndMillis());
+        // 结束时间后的坐标被忽略
+        assertEquals(4000, cues.get(1).getEndMillis());
+    }
+
+    @Test
+    void splitsBlocksWithoutBlankLines() throws IOException {
+        List<Subtitle> cues = readAll("﻿1\n00:00:01,000 --> 00:00:02,000\n一\n2\n"
+            + "00:00:03,000 --> 00:00:04,000\n二\n\n\n");
+        assertEquals(2, cues.size());
+        assertEquals("一", cues.get(0).getContent());
+        assertEquals("二", cues.get(1).getContent());
+        assertEquals(3000, cues.get(1).getStartMillis());
+    }
+
+    @Test
+    void keepsNumericContentLine() throws IOException {
+        List<Subtitle> cues = readAll("1\n00:00:01,000 --> 00:00:02,000\n2024\n\n");
+        assertEquals(1, cues.size());
+        assertEquals("2024", cues.get(0).getContent());
+    }
+
+    @Test
+    void concatenatedFilesWithBom() throws IOException {
+        List<Subtitle> cues = readAll("1\r\n00:00:01,000 --> 00:00:02,000\r\n一\r\n\r\n"
+            + "﻿1\r\n00:10:01,000 --> 00:10:02,000\r\n二\r\n");
+        assertEquals(2, cues.size());
+        assertEquals(601_000, cues.get(1).getStartMillis());
+    }
+}
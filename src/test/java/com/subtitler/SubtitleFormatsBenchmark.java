@@ -0,0 +1,90 @@
+package com.subtitler;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// 各字幕格式的读写吞吐量。生成 8000 条字幕（约三小时直播的量），每种格式先写出再读回，
+// 最后测一遍 SRT -> WebVTT -> ASS -> LRC -> SRT 的连续转换。
+// 运行：mvn test-compile 后以测试类路径执行 com.subtitler.SubtitleFormatsBenchmark
+public final class SubtitleFormatsBenchmark {
+    private static final int CUES = 8000;
+    private static final int ROUNDS = 20;
+
+    private SubtitleFormatsBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Subtitle> cues = new ArrayList<>(CUES);
+        for (int i = 0; i < CUES; i++) {
+            String content = i % 5 == 0 ? "第 " + i + " 句字幕\n第二行 line two" : "第 " + i + " 句字幕 subtitle line";
+            cues.add(new Subtitle(content, i * 1350, i * 1350 + 1200));
+        }
+        SubtitleFormat[] chain = {SubtitleFormats.SRT, SubtitleFormats.WEBVTT, SubtitleFormats.ASS, SubtitleFormats.LRC};
+
+        for (int round = 0; round < 3; round++) {
+            for (SubtitleFormat format : chain) {
+                String text = write(format, cues);
+                long writeNanos = 0;
+                long readNanos = 0;
+                int read = 0;
+                for (int r = 0; r < ROUNDS; r++) {
+                    long begin = System.nanoTime();
+                    text = write(format, cues);
+                    writeNanos += System.nanoTime() - begin;
+                    begin = System.nanoTime();
+                    read = read(format, text).size();
+                    readNanos += System.nanoTime() - begin;
+                }
+                // 吞吐量按 UTF-8 编码后的文件大小计算
+                double megabytes = text.getBytes(StandardCharsets.UTF_8).length / 1e6;
+                System.out.printf("%-8s %6.1f KB  写出 %8.0f 条/秒 %6.1f MB/s  读取 %8.0f 条/秒 %6.1f MB/s (%d 条)%n",
+                    format.getExtensions().get(0), megabytes * 1e6 / 1024,
+                    perSecond(CUES, writeNanos), perSecond(megabytes, writeNanos),
+                    perSecond(CUES, readNanos), perSecond(megabytes, readNanos), read);
+            }
+
+            long begin = System.nanoTime();
+            List<Subtitle> current = cues;
+            for (int r = 0; r < ROUNDS; r++) {
+                current = cues;
+                for (SubtitleFormat format : chain) {
+                    current = read(format, write(format, current));
+                }
+                current = read(SubtitleFormats.SRT, write(SubtitleFormats.SRT, current));
+            }
+            System.out.printf("连续转换 srt->vtt->ass->lrc->srt: %.1f 毫秒/次 (%d 条)%n",
+                (System.nanoTime() - begin) / 1e6 / ROUNDS, current.size());
+        }
+    }
+
+    private static double perSecond(double amount, long nanos) {
+        return amount * ROUNDS / (nanos / 1e9);
+    }
+
+    private static String write(SubtitleFormat format, List<Subtitle> cues) throws IOException {
+        StringWriter out = new StringWriter(cues.size() * 64);
+        try (SubtitleWriter writer = format.newWriter(out)) {
+            writer.writeHeader();
+            for (Subtitle subtitle : cues) {
+                writer.write(subtitle);
+            }
+            writer.finish();
+        }
+        return out.toString();
+    }
+
+    private static List<Subtitle> read(SubtitleFormat format, String text) throws IOException {
+        List<Subtitle> cues = new ArrayList<>(CUES);
+        try (SubtitleReader reader = format.newReader(new StringReader(text))) {
+            Subtitle subtitle;
+            while ((subtitle = reader.read()) != null) {
+                cues.add(subtitle);
+            }
+        }
+        return cues;
+    }
+}
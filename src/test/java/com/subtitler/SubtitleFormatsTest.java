@@ -0,0 +1,109 @@
+package com.subtitler;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SubtitleFormatsTest {
+    // ASS 和 LRC 只精确到百分之一秒，样例时间都取 10 毫秒的整数倍
+    private static List<Subtitle> sample() {
+        return Arrays.asList(
+            new Subtitle("第一句", 1000, 2500),
+            new Subtitle("两行\n字幕", 3000, 4210),
+            new Subtitle("最后", 3_600_000 + 5000, 3_600_000 + 7000));
+    }
+
+    private static List<Subtitle> roundTrip(SubtitleFormat format, List<Subtitle> cues) throws IOException {
+        StringWriter out = new StringWriter();
+        try (SubtitleWriter writer = format.newWriter(out)) {
+            writer.writeHeader();
+            for (Subtitle subtitle : cues) {
+                writer.write(subtitle);
+            }
+            writer.finish();
+        }
+        List<Subtitle> result = new ArrayList<>();
+        try (SubtitleReader reader = format.newReader(new StringReader(out.toString()))) {
+            Subtitle subtitle;
+            while ((subtitle = reader.read()) != null) {
+                result.add(subtitle);
+            }
+        }
+        return result;
+    }
+
+    private static void assertSameCues(List<Subtitle> expected, List<Subtitle> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getContent(), actual.get(i).getContent());
+            assertEquals(expected.get(i).getStartMillis(), actual.get(i).getStartMillis());
+            assertEquals(expected.get(i).getEndMillis(), actual.get(i).getEndMillis());
+        }
+    }
+
+    @Test
+    void srtRoundTrip() throws IOException {
+        assertSameCues(sample(), roundTrip(SubtitleFormats.SRT, sample()));
+    }
+
+    @Test
+    void webVttRoundTrip() throws IOException {
+        assertSameCues(sample(), roundTrip(SubtitleFormats.WEBVTT, sample()));
+    }
+
+    @Test
+    void assRoundTrip() throws IOException {
+        assertSameCues(sample(), roundTrip(SubtitleFormats.ASS, sample()));
+    }
+
+    @Test
+    void lrcRoundTripKeepsStarts() throws IOException {
+        List<Subtitle> lyrics = Arrays.asList(
+            new Subtitle("一", 1000, 3000),
+            new Subtitle("二", 3000, 5000),
+            new Subtitle("三", 5000, 7000));
+        List<Subtitle> read = roundTrip(SubtitleFormats.LRC, lyrics);
+        assertEquals(3, read.size());
+        for (int i = 0; i < lyrics.size(); i++) {
+            assertEquals(lyrics.get(i).getContent(), read.get(i).getContent());
+            assertEquals(lyrics.get(i).getStartMillis(), read.get(i).getStartMillis());
+        }
+        // 结束时间由下一行的开始时间推出
+        assertEquals(3000, read.get(0).getEndMillis());
+        assertEquals(5000, read.get(1).getEndMillis());
+    }
+
+    @Test
+    void lrcRepeatedTagsAreOrderedByTime() throws IOException {
+        List<Subtitle> read = new ArrayList<>();
+        try (SubtitleReader reader = SubtitleFormats.LRC.newReader(new StringReader(
+                "[ti:song]\n[00:10.00][00:50.00]chorus\n[00:20.00]verse\n[00:30.00]\n[00:40.00]bridge\n[01:00.00]\n"))) {
+            Subtitle subtitle;
+            while ((subtitle = reader.read()) != null) {
+                read.add(subtitle);
+            }
+        }
+        assertSameCues(Arrays.asList(
+            new Subtitle("chorus", 10_000, 20_000),
+            new Subtitle("verse", 20_000, 30_000),
+            new Subtitle("bridge", 40_000, 50_000),
+            new Subtitle("chorus", 50_000, 60_000)), read);
+    }
+
+    @Test
+    void formatChosenByExtension() {
+        assertSame(SubtitleFormats.SRT, SubtitleFormats.forPath(Paths.get("a.SRT")));
+        assertSame(SubtitleFormats.WEBVTT, SubtitleFormats.forPath(Paths.get("dir/b.vtt")));
+        assertSame(SubtitleFormats.ASS, SubtitleFormats.forPath(Paths.get("c.ass")));
+        assertSame(SubtitleFormats.LRC, SubtitleFormats.forPath(Paths.get("d.lrc")));
+    }
+}
@@ -0,0 +1,71 @@
+package com.subtitler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SubtitleTimeTest {
+    @Test
+    void parsesFullTime() {
+        assertEquals(((1 * 60 + 2) * 60 + 3) * 1000 + 456, SubtitleTime.parse("01:02:03,456"));
+        assertEquals(((1 * 60 + 2) * 60 + 3) * 1000 + 456, SubtitleTime.parse("01:02:03.456"));
+    }
+
+    @Test
+    void ignoresSurroundingWhitespace() {
+        assertEquals(5909, SubtitleTime.parse("  00:00:05,909 \t"));
+        assertEquals(5909, SubtitleTime.parse("x00:00:05,909x", 1, 13));
+    }
+
+    @Test
+    void hoursMayBeOmitted() {
+        assertEquals(75_500, SubtitleTime.parse("01:15.50"));
+        // 没有小时时分钟可以超过 59
+        assertEquals(90 * 60_000, SubtitleTime.parse("90:00"));
+    }
+
+    @Test
+    void shortFractionIsDecimal() {
+        assertEquals(1500, SubtitleTime.parse("00:00:01,5"));
+        assertEquals(1050, SubtitleTime.parse("00:00:01,05"));
+    }
+
+    @Test
+    void rejectsMalformedText() {
+        assertEquals(SubtitleTime.NONE, SubtitleTime.parse(null));
+        assertEquals(SubtitleTime.NONE, SubtitleTime.parse(""));
+        assertEquals(SubtitleTime.NONE, SubtitleTime.parse("   "));
+        assertEquals(SubtitleTime.NONE, SubtitleTime.parse("12"));
+        assertEquals(SubtitleTime.NONE, SubtitleTime.parse("00:00:60,000"));
+        assertEquals(SubtitleTime.NONE, SubtitleTime.parse("00:60:00,000"));
+        assertEquals(SubtitleTime.NONE, SubtitleTime.parse("00:00:01,0000"));
+        assertEquals(SubtitleTime.NONE, SubtitleTime.parse("00:00:01:00"));
+        assertEquals(SubtitleTime.NONE, SubtitleTime.parse("00:0a:01,000"));
+    }
+
+    @Test
+    void rejectsTimesBeyondIntMillis() {
+        assertEquals(596 * 3_600_000 + 31 * 60_000 + 23 * 1000 + 647, SubtitleTime.parse("596:31:23,647"));
+        assertEquals(SubtitleTime.NONE, SubtitleTime.parse("596:31:23,648"));
+        assertEquals(SubtitleTime.NONE, SubtitleTime.parse("999999:00:00,000"));
+        // 省略小时时分钟同样受限
+        assertEquals(SubtitleTime.NONE, SubtitleTime.parse("999999:00"));
+    }
+
+    @Test
+    void formatRoundTrips() {
+        int millis = ((2 * 60 + 3) * 60 + 4) * 1000 + 5;
+        String text = SubtitleTime.format(millis);
+        assertEquals("02:03:04,005", text);
+        assertEquals(millis, SubtitleTime.parse(text));
+        assertEquals("", SubtitleTime.format(SubtitleTime.NONE));
+    }
+
+    @Test
+    void convertsSeconds() {
+        assertEquals(1235, SubtitleTime.fromSeconds(1.2345));
+        assertEquals(0, SubtitleTime.fromSeconds(-3));
+        assertEquals(0, SubtitleTime.fromSeconds(Double.NaN));
+        assertEquals(1.5, SubtitleTime.toSeconds(1500));
+    }
+}